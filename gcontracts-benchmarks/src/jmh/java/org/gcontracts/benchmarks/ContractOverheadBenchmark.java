@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) 2013, Andre Steingress
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1.) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 2.) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 3.) Neither the name of Andre Steingress nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.gcontracts.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the per-call overhead of the contract code GContracts generates for <tt>@Requires</tt>,
+ * <tt>@Ensures</tt> (with and without <tt>old</tt> and <tt>result</tt>), <tt>@Invariant</tt> and inherited
+ * contracts, compared to the uncontracted <tt>PlainAccount</tt> baseline.<p/>
+ *
+ * Allocations per call are reported by the <tt>gc</tt> profiler as <tt>gc.alloc.rate.norm</tt>.
+ *
+ * @author ast
+ */
+@State(Scope.Thread)
+public class ContractOverheadBenchmark {
+
+    @Param({
+            "PlainAccount",
+            "RequiresAccount",
+            "TrackedRequiresAccount",
+            "EnsuresAccount",
+            "EnsuresResultAccount",
+            "EnsuresOldAccount",
+            "InvariantAccount",
+            "InheritedContractsAccount"
+    })
+    public String variant;
+
+    private Account account;
+
+    @Setup
+    public void setup() throws Exception  {
+        account = GroovySources.newInstance(Account.class, variant);
+    }
+
+    @Benchmark
+    public long deposit()  {
+        return account.deposit(1L);
+    }
+
+    @Benchmark
+    public long getBalance()  {
+        return account.getBalance();
+    }
+}
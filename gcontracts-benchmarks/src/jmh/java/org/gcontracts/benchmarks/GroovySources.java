@@ -0,0 +1,80 @@
+/**
+ * Copyright (c) 2013, Andre Steingress
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1.) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 2.) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 3.) Neither the name of Andre Steingress nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.gcontracts.benchmarks;
+
+import groovy.lang.GroovyClassLoader;
+import org.codehaus.groovy.control.CompilerConfiguration;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+
+/**
+ * Compiles the Groovy sources found next to this class. As gcontracts-core is on the classpath, the
+ * {@link org.gcontracts.ast.ClosureExpressionEvaluationASTTransformation} and
+ * {@link org.gcontracts.ast.GContractsASTTransformation} global transformations are applied
+ * the very same way they are applied to production code.
+ *
+ * @author ast
+ */
+public final class GroovySources {
+
+    private static final String PACKAGE_NAME = GroovySources.class.getPackage().getName();
+
+    private GroovySources() {}
+
+    /**
+     * Compiles the Groovy source file <tt>&lt;className&gt;.groovy</tt> and creates a new instance of
+     * the class with the same name.
+     *
+     * @param type the interface the compiled class implements
+     * @param className the simple name of the Groovy source file and class
+     * @return a new instance of the compiled class
+     */
+    public static <T> T newInstance(Class<T> type, String className) throws Exception  {
+        final GroovyClassLoader classLoader = new GroovyClassLoader(type.getClassLoader(), new CompilerConfiguration());
+        classLoader.parseClass(read(className + ".groovy"), className + ".groovy");
+
+        return type.cast(classLoader.loadClass(PACKAGE_NAME + "." + className).newInstance());
+    }
+
+    private static String read(String resourceName) throws IOException  {
+        final InputStream inputStream = GroovySources.class.getResourceAsStream(resourceName);
+        if (inputStream == null) throw new IllegalArgumentException("Groovy source " + resourceName + " could not be found!");
+
+        final Reader reader = new InputStreamReader(inputStream, "UTF-8");
+        try {
+            final StringWriter writer = new StringWriter();
+            final char[] buffer = new char[4096];
+
+            int count;
+            while ((count = reader.read(buffer)) != -1) writer.write(buffer, 0, count);
+
+            return writer.toString();
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright (c) 2013, Andre Steingress
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1.) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 2.) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 3.) Neither the name of Andre Steingress nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.gcontracts.benchmarks;
+
+import org.gcontracts.ViolationTracker;
+import org.gcontracts.generation.ContractExecutionTracker;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the runtime support calls every non-inlined contract check executes, in isolation from
+ * the assertion itself.
+ *
+ * @author ast
+ */
+@State(Scope.Thread)
+public class RuntimeSupportBenchmark {
+
+    private static final String CLASS_NAME = "org.gcontracts.benchmarks.TrackedRequiresAccount";
+    private static final String METHOD_IDENTIFIER = "long deposit(long)";
+
+    private static final int SITE_ID = ContractExecutionTracker.register(CLASS_NAME, METHOD_IDENTIFIER, "precondition", false);
+
+    @Benchmark
+    public boolean contractExecutionTracker()  {
+        try {
+            return ContractExecutionTracker.track(SITE_ID);
+        } finally {
+            ContractExecutionTracker.clear(SITE_ID);
+        }
+    }
+
+    @Benchmark
+    public boolean violationTracker()  {
+        final int mark = ViolationTracker.begin();
+        try {
+            return ViolationTracker.violationsOccured(mark);
+        } finally {
+            ViolationTracker.end(mark);
+        }
+    }
+}
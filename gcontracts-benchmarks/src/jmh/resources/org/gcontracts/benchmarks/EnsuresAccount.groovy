@@ -0,0 +1,16 @@
+package org.gcontracts.benchmarks
+
+import org.gcontracts.annotations.Ensures
+
+class EnsuresAccount implements Account {
+
+    private long balance
+
+    @Ensures({ balance > 0 })
+    long deposit(long amount) {
+        balance += amount
+        return balance
+    }
+
+    long getBalance() { balance }
+}
@@ -0,0 +1,16 @@
+package org.gcontracts.benchmarks
+
+import org.gcontracts.annotations.Ensures
+
+class EnsuresOldAccount implements Account {
+
+    private long balance
+
+    @Ensures({ balance == old.balance + amount })
+    long deposit(long amount) {
+        balance += amount
+        return balance
+    }
+
+    long getBalance() { balance }
+}
@@ -0,0 +1,16 @@
+package org.gcontracts.benchmarks
+
+import org.gcontracts.annotations.Ensures
+
+class EnsuresResultAccount implements Account {
+
+    private long balance
+
+    @Ensures({ result == balance })
+    long deposit(long amount) {
+        balance += amount
+        return balance
+    }
+
+    long getBalance() { balance }
+}
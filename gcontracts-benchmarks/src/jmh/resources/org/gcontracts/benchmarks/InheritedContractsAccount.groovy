@@ -0,0 +1,34 @@
+package org.gcontracts.benchmarks
+
+import org.gcontracts.annotations.Ensures
+import org.gcontracts.annotations.Invariant
+import org.gcontracts.annotations.Requires
+
+/**
+ * Overrides a contracted method without declaring a precondition of its own, the inherited
+ * contracts are evaluated through the super class' contract closures.
+ */
+@Invariant({ balance >= 0 })
+class InheritedContractsAccount extends BaseAccount {
+
+    @Ensures({ result >= 0 })
+    long deposit(long amount) {
+        balance += amount
+        return balance
+    }
+}
+
+@Invariant({ balance != null })
+abstract class BaseAccount implements Account {
+
+    protected long balance
+
+    @Requires({ amount > 0 })
+    @Ensures({ balance > 0 })
+    long deposit(long amount) {
+        balance += amount
+        return balance
+    }
+
+    long getBalance() { balance }
+}
@@ -0,0 +1,16 @@
+package org.gcontracts.benchmarks
+
+import org.gcontracts.annotations.Invariant
+
+@Invariant({ balance >= 0 })
+class InvariantAccount implements Account {
+
+    private long balance
+
+    long deposit(long amount) {
+        balance += amount
+        return balance
+    }
+
+    long getBalance() { balance }
+}
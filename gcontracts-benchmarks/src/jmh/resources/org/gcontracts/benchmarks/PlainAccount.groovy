@@ -0,0 +1,13 @@
+package org.gcontracts.benchmarks
+
+class PlainAccount implements Account {
+
+    private long balance
+
+    long deposit(long amount) {
+        balance += amount
+        return balance
+    }
+
+    long getBalance() { balance }
+}
@@ -0,0 +1,16 @@
+package org.gcontracts.benchmarks
+
+import org.gcontracts.annotations.Requires
+
+class RequiresAccount implements Account {
+
+    private long balance
+
+    @Requires({ amount > 0 })
+    long deposit(long amount) {
+        balance += amount
+        return balance
+    }
+
+    long getBalance() { balance }
+}
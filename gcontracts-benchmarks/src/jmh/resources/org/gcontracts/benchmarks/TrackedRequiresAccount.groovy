@@ -0,0 +1,22 @@
+package org.gcontracts.benchmarks
+
+import org.gcontracts.annotations.Requires
+
+/**
+ * The method call in the precondition disables inline mode, assertions are evaluated through the
+ * contract closure and the contract execution/violation trackers.
+ */
+class TrackedRequiresAccount implements Account {
+
+    private long balance
+
+    @Requires({ amount > 0 && isOpen() })
+    long deposit(long amount) {
+        balance += amount
+        return balance
+    }
+
+    long getBalance() { balance }
+
+    boolean isOpen() { true }
+}
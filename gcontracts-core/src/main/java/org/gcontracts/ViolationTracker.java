@@ -24,7 +24,8 @@ package org.gcontracts;
 
 import org.gcontracts.util.Validate;
 
-import java.util.TreeMap;
+import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * <p>
@@ -33,49 +34,151 @@ import java.util.TreeMap;
  * being able to rethrow assertion errors.
  * </p>
  *
+ * <p>
+ * Every thread reuses a single tracker. Generated code opens a tracking scope with {@link #begin()}, which only
+ * returns the current number of tracked violations, and closes it with {@link #end(int)}. The list of violations
+ * is not created before the first {@link AssertionViolation} is actually constructed within a tracking scope.
+ * </p>
+ *
  * @author ast
  */
 public class ViolationTracker {
 
-    public static ThreadLocal<ViolationTracker> INSTANCE = new ThreadLocal<ViolationTracker>();
+    static class ViolationTrackerThreadLocal extends ThreadLocal<ViolationTracker> {
+
+        @Override
+        protected ViolationTracker initialValue() {
+            return new ViolationTracker();
+        }
+    }
+
+    public static final ThreadLocal<ViolationTracker> INSTANCE = new ViolationTrackerThreadLocal();
+
+    /**
+     * Opens a tracking scope on the current thread.
+     *
+     * @return the mark of the new scope, which needs to be passed to {@link #violationsOccured(int)},
+     * {@link #rethrowFirst(int)} and {@link #end(int)}
+     */
+    public static int begin()  {
+        final ViolationTracker violationTracker = INSTANCE.get();
+        violationTracker.depth++;
+
+        return violationTracker.size();
+    }
+
+    /**
+     * Closes the tracking scope with the given <tt>mark</tt> and discards all violations tracked within it.
+     */
+    public static void end(int mark)  {
+        final ViolationTracker violationTracker = INSTANCE.get();
+        violationTracker.truncate(mark);
+        violationTracker.depth--;
+    }
+
+    public static boolean violationsOccured(int mark)  {
+        return INSTANCE.get().size() > mark;
+    }
+
+    public static void rethrowFirst(int mark)  {
+        throw INSTANCE.get().violations.get(mark);
+    }
 
+    /**
+     * Opens a tracking scope for classes compiled with earlier versions of GContracts. Legacy scopes nest with
+     * the scopes opened by {@link #begin()}, {@link #violationsOccured()} and {@link #rethrowFirst()} refer to the
+     * innermost legacy scope.
+     *
+     * @deprecated generated code uses {@link #begin()} and {@link #end(int)}
+     */
+    @Deprecated
     public static void init()  {
-        INSTANCE.set(new ViolationTracker());
+        final ViolationTracker violationTracker = INSTANCE.get();
+        violationTracker.pushLegacyMark(violationTracker.size());
+        violationTracker.depth++;
     }
 
+    /**
+     * Closes the innermost scope opened by {@link #init()} and discards all violations tracked within it.
+     *
+     * @deprecated generated code uses {@link #begin()} and {@link #end(int)}
+     */
+    @Deprecated
     public static void deinit()  {
-        INSTANCE.remove();
+        final ViolationTracker violationTracker = INSTANCE.get();
+        if (violationTracker.legacyDepth == 0) return;
+
+        violationTracker.truncate(violationTracker.popLegacyMark());
+        violationTracker.depth--;
     }
 
     public static boolean violationsOccured()  {
-        return INSTANCE.get().hasViolations();
+        final ViolationTracker violationTracker = INSTANCE.get();
+        return violationTracker.size() > violationTracker.legacyMark();
     }
 
     public static void rethrowFirst()  {
-        throw INSTANCE.get().first();
+        final ViolationTracker violationTracker = INSTANCE.get();
+        throw violationTracker.violations.get(violationTracker.legacyMark());
     }
 
     public static void rethrowLast()  {
         throw INSTANCE.get().last();
     }
 
-    private TreeMap<Long, AssertionViolation> violations = new TreeMap<Long, AssertionViolation>();
+    private int depth;
+    private ArrayList<AssertionViolation> violations;
+
+    private int[] legacyMarks;
+    private int legacyDepth;
 
+    /**
+     * Tracks the given violation, violations constructed outside of a tracking scope are ignored.
+     */
     public void track(final AssertionViolation assertionViolation)  {
         Validate.notNull(assertionViolation);
+        if (depth <= 0) return;
 
-        violations.put(System.nanoTime(), assertionViolation);
+        if (violations == null) violations = new ArrayList<AssertionViolation>();
+        violations.add(assertionViolation);
     }
 
     public boolean hasViolations()  {
-        return violations.size() > 0;
+        return size() > 0;
     }
 
     public AssertionViolation first()  {
-        return violations.firstEntry().getValue();
+        return violations.get(0);
     }
 
     public AssertionViolation last()  {
-        return violations.lastEntry().getValue();
+        return violations.get(violations.size() - 1);
+    }
+
+    private int size()  {
+        return violations != null ? violations.size() : 0;
+    }
+
+    private void pushLegacyMark(int mark)  {
+        if (legacyMarks == null) legacyMarks = new int[4];
+        if (legacyDepth == legacyMarks.length) legacyMarks = Arrays.copyOf(legacyMarks, legacyDepth * 2);
+
+        legacyMarks[legacyDepth++] = mark;
+    }
+
+    private int popLegacyMark()  {
+        return legacyMarks[--legacyDepth];
+    }
+
+    private int legacyMark()  {
+        return legacyDepth > 0 ? legacyMarks[legacyDepth - 1] : 0;
+    }
+
+    private void truncate(int mark)  {
+        if (violations == null) return;
+
+        for (int i = violations.size() - 1; i >= mark; i--)  {
+            violations.remove(i);
+        }
     }
 }
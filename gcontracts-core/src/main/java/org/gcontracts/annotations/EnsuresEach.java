@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) 2013, Andre Steingress
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1.) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 2.) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 3.) Neither the name of Andre Steingress nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.gcontracts.annotations;
+
+import org.gcontracts.annotations.meta.AnnotationProcessorImplementation;
+import org.gcontracts.annotations.meta.Postcondition;
+import org.gcontracts.common.impl.EnsuresAnnotationProcessor;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>
+ * Represents a <b>method postcondition</b> which must hold for every element of an array or {@link Iterable},
+ * either the method's <tt>result</tt> or one of its parameters.
+ * </p>
+ * <p>
+ * The element predicate is compiled like the one of {@link RequiresEach}.
+ * </p>
+ * <p>
+ * Example:
+ *
+ * <pre>
+ *   &#064;EnsuresEach(of = 'result', value = { double balance -> balance >= 0 })
+ *   double[] balances()  {
+ *     ...
+ *   }
+ * </pre>
+ * </p>
+ *
+ * @see Ensures
+ * @see RequiresEach
+ *
+ * @author ast
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.CONSTRUCTOR, ElementType.METHOD})
+
+@Postcondition
+@AnnotationProcessorImplementation(EnsuresAnnotationProcessor.class)
+public @interface EnsuresEach {
+    String of();
+    Class value();
+    int parallelThreshold() default 0;
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2013, Andre Steingress
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1.) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 2.) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 3.) Neither the name of Andre Steingress nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.gcontracts.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>Marks a method whose precondition only depends on the method's arguments and on final fields. The annotation
+ * is added by GContracts if precondition checks are enabled with the
+ * <tt>gcontracts.compile.precondition.checks</tt> property.</p>
+ *
+ * <p>Such a precondition gives the same result as long as the listed arguments and the receiver do not change. The
+ * annotated method is accompanied by two generated methods:</p>
+ *
+ * <ul>
+ *     <li><tt>&lt;method&gt;$pre</tt>, which checks the precondition and throws a
+ *     {@link org.gcontracts.PreconditionViolation} if it is not satisfied</li>
+ *     <li><tt>&lt;method&gt;$unchecked</tt>, which executes the method without checking its precondition,
+ *     postconditions and class-invariants are still checked</li>
+ * </ul>
+ *
+ * <p>Callers may check the precondition once, e.g. before a loop with loop-invariant arguments, and call the
+ * unchecked method within the loop:</p>
+ *
+ * <pre>
+ *   account.debit$pre(amount)
+ *   for (int i = 0; i &lt; count; i++)  {
+ *       account.debit$unchecked(amount)
+ *   }
+ * </pre>
+ *
+ * <p>Only methods which cannot be overridden, that is static or final methods or methods of final classes, are
+ * annotated.</p>
+ *
+ * @author ast
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface PurePrecondition {
+
+    /**
+     * @return the names of the parameters the precondition depends on
+     */
+    String[] parameters() default {};
+
+    /**
+     * @return the names of the final fields the precondition depends on
+     */
+    String[] fields() default {};
+}
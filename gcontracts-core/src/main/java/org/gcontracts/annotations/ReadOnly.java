@@ -0,0 +1,59 @@
+/**
+ * Copyright (c) 2013, Andre Steingress
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1.) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 2.) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 3.) Neither the name of Andre Steingress nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.gcontracts.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>Overrides the write-set analysis deciding whether a method checks the class invariant.</p>
+ *
+ * <p>If enabled with the <tt>gcontracts.compile.invariants.readonly</tt> property, methods which provably do not
+ * write any field of their object, neither directly nor by calling other methods on <tt>this</tt>, do not check the
+ * class invariant. Methods annotated with <tt>&#064;ReadOnly</tt> are treated as read-only even if the analysis is
+ * disabled or cannot prove it, <tt>&#064;ReadOnly(false)</tt> keeps the invariant check of a method considered
+ * read-only.</p>
+ *
+ * For example:
+ * <pre>
+ * &#064;Invariant({ entries != null })
+ * class Cache {
+ *
+ *   private Map entries = [:]
+ *
+ *   &#064;ReadOnly
+ *   def lookup(def key) { entries.get(key) ?: loader.load(key) }
+ * }
+ * </pre>
+ *
+ * @see org.gcontracts.ast.visitor.ReadOnlyMethodVisitor
+ *
+ * @author ast
+ */
+@Target({ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ReadOnly {
+    boolean value() default true;
+}
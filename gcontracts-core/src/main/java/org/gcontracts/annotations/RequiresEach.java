@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2013, Andre Steingress
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1.) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 2.) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 3.) Neither the name of Andre Steingress nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.gcontracts.annotations;
+
+import org.gcontracts.annotations.meta.AnnotationProcessorImplementation;
+import org.gcontracts.annotations.meta.Precondition;
+import org.gcontracts.common.impl.RequiresAnnotationProcessor;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>
+ * Represents a <b>method precondition</b> which must hold for every element of an array or {@link Iterable}
+ * parameter.
+ * </p>
+ * <p>
+ * The annotation closure is an element predicate, its single parameter is the current element. If the parameter
+ * is typed, elements are checked with this type, otherwise the component type of an array or the element type of
+ * a generic {@link Iterable} is used. The predicate is compiled into a statically typed loop, which stops at the
+ * first element not satisfying the predicate. <tt>null</tt> arrays and collections satisfy the precondition.
+ * </p>
+ * <p>
+ * Arrays and {@link java.util.List} instances having at least <tt>parallelThreshold</tt> elements are checked in
+ * parallel, a threshold of <tt>0</tt> disables parallel checks.
+ * </p>
+ * <p>
+ * Example:
+ *
+ * <pre>
+ *   &#064;RequiresEach(of = 'amounts', value = { int amount -> amount > 0 })
+ *   void deposit(int[] amounts)  {
+ *     ...
+ *   }
+ * </pre>
+ * </p>
+ * <p>
+ * If the method has a {@link Requires} annotation too, both preconditions must be satisfied.
+ * </p>
+ *
+ * @see Requires
+ *
+ * @author ast
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.CONSTRUCTOR, ElementType.METHOD})
+
+@Precondition
+@AnnotationProcessorImplementation(RequiresAnnotationProcessor.class)
+public @interface RequiresEach {
+    String of();
+    Class value();
+    int parallelThreshold() default 0;
+}
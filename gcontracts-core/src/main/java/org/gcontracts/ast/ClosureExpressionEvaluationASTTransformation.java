@@ -10,6 +10,7 @@ import org.gcontracts.ast.visitor.AnnotationClosureVisitor;
 import org.gcontracts.ast.visitor.ConfigurationSetup;
 import org.gcontracts.ast.visitor.ContractElementVisitor;
 import org.gcontracts.generation.CandidateChecks;
+import org.gcontracts.util.AnnotationUtils;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -59,7 +60,9 @@ public class ClosureExpressionEvaluationASTTransformation extends BaseASTTransfo
     private void markClassNodeAsContracted(final ClassNode classNode) {
         final ClassNode contractedAnnotationClassNode = ClassHelper.makeWithoutCaching(Contracted.class);
 
-        if (classNode.getAnnotations(contractedAnnotationClassNode).isEmpty())
+        if (classNode.getAnnotations(contractedAnnotationClassNode).isEmpty())  {
             classNode.addAnnotation(new AnnotationNode(contractedAnnotationClassNode));
+            AnnotationUtils.annotationsChanged(classNode);
+        }
     }
 }
@@ -33,13 +33,20 @@ import org.gcontracts.annotations.Contracted;
 import org.gcontracts.ast.visitor.*;
 import org.gcontracts.common.spi.ProcessingContextInformation;
 import org.gcontracts.generation.CandidateChecks;
+import org.gcontracts.generation.ClosureInstanceGenerationUtility;
+import org.gcontracts.generation.DirtyInvariantGenerationUtility;
+import org.gcontracts.generation.OldVariableGenerationUtility;
+import org.gcontracts.generation.OutermostCallGenerationUtility;
+import org.gcontracts.generation.PreconditionCheckGenerationUtility;
+import org.gcontracts.util.ConfigurationProperties;
 
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * <p>
@@ -60,25 +67,165 @@ import java.util.List;
 @GroovyASTTransformation(phase = CompilePhase.INSTRUCTION_SELECTION)
 public class GContractsASTTransformation extends BaseASTTransformation {
 
+    /**
+     * Enables the parallel transformation of independent class hierarchies of a module.
+     */
+    public static final String PARALLEL_PROPERTY = "gcontracts.compile.parallel";
+
     /**
      * {@link org.codehaus.groovy.transform.ASTTransformation#visit(org.codehaus.groovy.ast.ASTNode[], org.codehaus.groovy.control.SourceUnit)}
      */
-    public void visit(ASTNode[] nodes, SourceUnit unit) {
+    public void visit(ASTNode[] nodes, final SourceUnit unit) {
         final ModuleNode moduleNode = unit.getAST();
 
-        ReaderSource source = getReaderSource(unit);
-        final ClassNode contractedAnnotationClassNode = ClassHelper.makeWithoutCaching(Contracted.class);
+        final ReaderSource source = getReaderSource(unit);
+
+        // old variable holders are added to the module while classes are processed
+        final List<ClassNode> classNodes = new ArrayList<ClassNode>(moduleNode.getClasses());
+
+        final List<List<ClassNode>> groups = ConfigurationProperties.getBoolean(PARALLEL_PROPERTY, false) ? getIndependentGroups(classNodes) : null;
+        if (groups == null || groups.size() < 2)  {
+            for (final ClassNode classNode : classNodes)  {
+                processClassNode(unit, source, classNode);
+            }
+
+            return;
+        }
+
+        // classes generated by a group are added to the module afterwards, in a deterministic order
+        for (final ClassNode classNode : classNodes)  {
+            classNode.setNodeMetaData(OldVariableGenerationUtility.META_DATA_PENDING_CLASSES, new ArrayList<ClassNode>());
+        }
 
-        for (final ClassNode classNode : moduleNode.getClasses())  {
-            if (classNode.getAnnotations(contractedAnnotationClassNode).isEmpty()) continue;
+        final List<RecursiveAction> actions = new ArrayList<RecursiveAction>();
+        for (final List<ClassNode> group : groups)  {
+            actions.add(new RecursiveAction() {
+                private static final long serialVersionUID = 1L;
 
-            final ProcessingContextInformation pci = new ProcessingContextInformation(classNode, unit, source);
-            new LifecycleBeforeTransformationVisitor(unit, source, pci).visitClass(classNode);
-            new AnnotationProcessorVisitor(unit, source, pci).visitClass(classNode);
-            new DomainModelInjectionVisitor(unit, source, pci).visitClass(classNode);
-            new LifecycleAfterTransformationVisitor(unit, source, pci).visitClass(classNode);
-            new DynamicSetterInjectionVisitor(unit, source).visitClass(classNode);
+                @Override
+                protected void compute() {
+                    for (final ClassNode classNode : group)  {
+                        processClassNode(unit, source, classNode);
+                    }
+                }
+            });
+        }
+
+        try {
+            ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected void compute() {
+                    invokeAll(actions);
+                }
+            });
+        } finally {
+            for (final ClassNode classNode : classNodes)  {
+                final List<ClassNode> pendingClassNodes = classNode.getNodeMetaData(OldVariableGenerationUtility.META_DATA_PENDING_CLASSES);
+                classNode.removeNodeMetaData(OldVariableGenerationUtility.META_DATA_PENDING_CLASSES);
+
+                for (ClassNode pendingClassNode : pendingClassNodes)  {
+                    moduleNode.addClass(pendingClassNode);
+                }
+            }
         }
     }
-}
 
+    private void processClassNode(final SourceUnit unit, final ReaderSource source, final ClassNode classNode)  {
+        if (classNode.getAnnotations(ClassHelper.makeWithoutCaching(Contracted.class)).isEmpty()) return;
+
+        final ProcessingContextInformation pci = new ProcessingContextInformation(classNode, unit, source);
+        new LifecycleBeforeTransformationVisitor(unit, source, pci).visitClass(classNode);
+        new AnnotationProcessorVisitor(unit, source, pci).visitClass(classNode);
+        if (pci.isOutermostCallsEnabled()) OutermostCallGenerationUtility.markMethods(classNode);
+        new ReadOnlyMethodVisitor(unit, source, pci.isReadOnlyMethodsEnabled()).visitClass(classNode);
+        new DomainModelInjectionVisitor(unit, source, pci).visitClass(classNode);
+        new LifecycleAfterTransformationVisitor(unit, source, pci).visitClass(classNode);
+        if (pci.isDirtyInvariantsEnabled()) DirtyInvariantGenerationUtility.addDirtyTracking(classNode);
+        OutermostCallGenerationUtility.addCallTracking(classNode);
+        PreconditionCheckGenerationUtility.addUncheckedMethods(classNode);
+        new DynamicSetterInjectionVisitor(unit, source).visitClass(classNode);
+
+        ClosureInstanceGenerationUtility.removeUnusedClosureInstanceFields(classNode);
+    }
+
+    /**
+     * Partitions the given classes into groups which do not share a class hierarchy. Classes are in the same group
+     * as their super classes, their interfaces and their outer classes, if those are part of the given classes or
+     * of other modules of the compile unit, since code is generated into them while their heirs are processed.
+     * Groups and the classes within a group keep the order of the given list.
+     */
+    static List<List<ClassNode>> getIndependentGroups(final List<ClassNode> classNodes)  {
+        final Map<String, Integer> indices = new HashMap<String, Integer>();
+        for (int i = 0; i < classNodes.size(); i++)  {
+            indices.put(classNodes.get(i).getName(), i);
+        }
+
+        // classes of other modules get indices after the given classes
+        final List<Set<String>> relatedClassNames = new ArrayList<Set<String>>();
+        for (final ClassNode classNode : classNodes)  {
+            final Set<String> classNames = new LinkedHashSet<String>();
+            addRelatedClassNames(classNode, indices, classNames);
+
+            for (String className : classNames)  {
+                if (!indices.containsKey(className)) indices.put(className, indices.size());
+            }
+            relatedClassNames.add(classNames);
+        }
+
+        final int[] parents = new int[indices.size()];
+        for (int i = 0; i < parents.length; i++) parents[i] = i;
+
+        for (int i = 0; i < classNodes.size(); i++)  {
+            for (String className : relatedClassNames.get(i))  {
+                union(parents, i, indices.get(className));
+            }
+        }
+
+        final Map<Integer, List<ClassNode>> groups = new LinkedHashMap<Integer, List<ClassNode>>();
+        for (int i = 0; i < classNodes.size(); i++)  {
+            final int root = find(parents, i);
+
+            List<ClassNode> group = groups.get(root);
+            if (group == null)  {
+                group = new ArrayList<ClassNode>();
+                groups.put(root, group);
+            }
+            group.add(classNodes.get(i));
+        }
+
+        return new ArrayList<List<ClassNode>>(groups.values());
+    }
+
+    private static void addRelatedClassNames(final ClassNode classNode, final Map<String, Integer> indices, final Set<String> classNames)  {
+        final List<ClassNode> related = new ArrayList<ClassNode>(Arrays.asList(classNode.getInterfaces()));
+        related.add(classNode.getSuperClass());
+        related.add(classNode.getOuterClass());
+
+        for (ClassNode relatedClassNode : related)  {
+            if (relatedClassNode == null) continue;
+            if (!relatedClassNode.isPrimaryClassNode() && !indices.containsKey(relatedClassNode.getName())) continue;
+
+            if (classNames.add(relatedClassNode.getName())) addRelatedClassNames(relatedClassNode, indices, classNames);
+        }
+    }
+
+    private static int find(final int[] parents, int i)  {
+        while (parents[i] != i)  {
+            parents[i] = parents[parents[i]];
+            i = parents[i];
+        }
+
+        return i;
+    }
+
+    private static void union(final int[] parents, final int i, final int j)  {
+        final int rootI = find(parents, i);
+        final int rootJ = find(parents, j);
+
+        // the smaller index is the root, the group order follows the first class of each group
+        if (rootI < rootJ) parents[rootJ] = rootI;
+        else if (rootJ < rootI) parents[rootI] = rootJ;
+    }
+}
@@ -38,6 +38,12 @@ import org.gcontracts.annotations.meta.Postcondition;
 import org.gcontracts.classgen.asm.ContractClosureWriter;
 import org.gcontracts.generation.AssertStatementCreationUtility;
 import org.gcontracts.generation.CandidateChecks;
+import org.gcontracts.generation.DirtyInvariantGenerationUtility;
+import org.gcontracts.generation.ElementContractGenerationUtility;
+import org.gcontracts.generation.FieldAccessorGenerationUtility;
+import org.gcontracts.generation.OldVariableGenerationUtility;
+import org.gcontracts.generation.PreconditionCheckGenerationUtility;
+import org.gcontracts.generation.StaticContractGenerationUtility;
 import org.gcontracts.generation.TryCatchBlockGenerator;
 import org.gcontracts.util.AnnotationUtils;
 import org.gcontracts.util.ExpressionUtils;
@@ -71,6 +77,7 @@ public class AnnotationClosureVisitor extends BaseVisitor implements ASTNodeMeta
 
     private ClassNode classNode;
     private final ContractClosureWriter contractClosureWriter = new ContractClosureWriter();
+    private final Map<ClassNode, MethodNode> contractBodyCandidates = new LinkedHashMap<ClassNode, MethodNode>();
 
     public AnnotationClosureVisitor(final SourceUnit sourceUnit, final ReaderSource source) {
         super(sourceUnit, source);
@@ -118,7 +125,11 @@ public class AnnotationClosureVisitor extends BaseVisitor implements ASTNodeMeta
                 rewrittenClosureExpression.setType(closureExpression.getType());
 
                 ClassNode closureClassNode = contractClosureWriter.createClosureClass(classNode, null, rewrittenClosureExpression, false, false, Opcodes.ACC_PUBLIC);
+                if (ExpressionUtils.getConstantValue(booleanExpressions) != null) closureClassNode.setNodeMetaData(ExpressionUtils.META_DATA_CONSTANT_VALUE, Boolean.TRUE);
+                if (validator.getReadFields() != null) closureClassNode.setNodeMetaData(DirtyInvariantGenerationUtility.META_DATA_READ_FIELDS, validator.getReadFields());
                 classNode.getModule().addClass(closureClassNode);
+                StaticContractGenerationUtility.addContractBodyMethod(classNode, null, closureClassNode);
+                FieldAccessorGenerationUtility.addFieldAccessors(classNode, closureClassNode);
 
                 final ClassExpression value = new ClassExpression(closureClassNode);
                 value.setSourcePosition(annotationNode);
@@ -138,8 +149,24 @@ public class AnnotationClosureVisitor extends BaseVisitor implements ASTNodeMeta
             }
         }
 
+        // element predicates add loop methods, therefore they are replaced before the methods are visited
+        if (CandidateChecks.isContractsCandidate(node))  {
+            final List<MethodNode> methodNodes = new ArrayList<MethodNode>(node.getMethods());
+            methodNodes.addAll(node.getDeclaredConstructors());
+            for (MethodNode methodNode : methodNodes)  {
+                ElementContractGenerationUtility.replaceElementPredicates(node, methodNode, sourceUnit);
+            }
+        }
+
         super.visitClass(node);
 
+        // contract body methods can only be added after all methods have been visited
+        for (Map.Entry<ClassNode, MethodNode> entry : contractBodyCandidates.entrySet())  {
+            StaticContractGenerationUtility.addContractBodyMethod(node, entry.getValue(), entry.getKey());
+            FieldAccessorGenerationUtility.addFieldAccessors(node, entry.getKey());
+        }
+        contractBodyCandidates.clear();
+
         // generate closure classes for the super class and all implemented interfaces
         visitClass(node.getSuperClass());
         for (ClassNode i : node.getInterfaces())  {
@@ -206,8 +233,13 @@ public class AnnotationClosureVisitor extends BaseVisitor implements ASTNodeMeta
 
         boolean isConstructor = methodNode instanceof ConstructorNode;
         ClassNode closureClassNode = contractClosureWriter.createClosureClass(classNode, methodNode, rewrittenClosureExpression, isPostcondition && !isConstructor, isPostcondition && !isConstructor, Opcodes.ACC_PUBLIC);
+        if (ExpressionUtils.getConstantValue(booleanExpressions) != null) closureClassNode.setNodeMetaData(ExpressionUtils.META_DATA_CONSTANT_VALUE, Boolean.TRUE);
+        if (!isPostcondition && !isConstructor && validator.isPure()) closureClassNode.setNodeMetaData(PreconditionCheckGenerationUtility.META_DATA_DEPENDENCIES, validator.getDependencies());
         classNode.getModule().addClass(closureClassNode);
 
+        if (isPostcondition && !isConstructor) OldVariableGenerationUtility.addOldVariableNames(closureClassNode, newClosureBlockStatement);
+        contractBodyCandidates.put(closureClassNode, methodNode);
+
         final ClassExpression value = new ClassExpression(closureClassNode);
         value.setSourcePosition(annotationNode);
 
@@ -278,6 +310,15 @@ public class AnnotationClosureVisitor extends BaseVisitor implements ASTNodeMeta
         private boolean secondPass = false;
         private boolean methodCalls = false;
 
+        // the parameters and fields the closure depends on, it is pure if these are final fields and parameters only
+        private final Set<String> parameterDependencies = new LinkedHashSet<String>();
+        private final Set<String> fieldDependencies = new LinkedHashSet<String>();
+        private boolean pure = true;
+
+        // the fields the closure reads, if it does not depend on anything but fields
+        private final Set<String> readFields = new LinkedHashSet<String>();
+        private boolean fieldReadsOnly = true;
+
         public ClosureExpressionValidator(ClassNode classNode, MethodNode methodNode, AnnotationNode annotationNode, SourceUnit sourceUnit)  {
             this.classNode = classNode;
             this.methodNode = methodNode;
@@ -340,6 +381,8 @@ public class AnnotationClosureVisitor extends BaseVisitor implements ASTNodeMeta
                 }
             }
 
+            if (!secondPass) addDependency(expression, accessedVariable);
+
             expression.setAccessedVariable(accessedVariable);
 
             super.visitVariableExpression(expression);
@@ -399,21 +442,43 @@ public class AnnotationClosureVisitor extends BaseVisitor implements ASTNodeMeta
             super.visitBinaryExpression(expression);
         }
 
+        @Override
+        public void visitPropertyExpression(PropertyExpression expression) {
+            // property access might call arbitrary getters
+            if (!secondPass)  {
+                pure = false;
+                fieldReadsOnly = false;
+            }
+            super.visitPropertyExpression(expression);
+        }
+
         @Override
         public void visitStaticMethodCallExpression(StaticMethodCallExpression call) {
             methodCalls = true;
+            if (!secondPass)  {
+                pure = false;
+                fieldReadsOnly = false;
+            }
             super.visitStaticMethodCallExpression(call);
         }
 
         @Override
         public void visitMethodCallExpression(MethodCallExpression call) {
             methodCalls = true;
+            if (!secondPass)  {
+                pure = false;
+                fieldReadsOnly = false;
+            }
             super.visitMethodCallExpression(call);
         }
 
         @Override
         public void visitConstructorCallExpression(ConstructorCallExpression call) {
             methodCalls = true;
+            if (!secondPass)  {
+                pure = false;
+                fieldReadsOnly = false;
+            }
             super.visitConstructorCallExpression(call);
         }
 
@@ -426,6 +491,32 @@ public class AnnotationClosureVisitor extends BaseVisitor implements ASTNodeMeta
             }
         }
 
+        private void addDependency(VariableExpression expression, Variable variable)  {
+            if (expression.isThisExpression() || expression.isSuperExpression()) return;
+
+            FieldNode fieldNode = null;
+            if (variable instanceof Parameter)  {
+                parameterDependencies.add(variable.getName());
+                return;
+            } else if (variable instanceof FieldNode)  {
+                fieldNode = (FieldNode) variable;
+            } else if (variable instanceof PropertyNode)  {
+                fieldNode = ((PropertyNode) variable).getField();
+            }
+
+            if (fieldNode != null && !(fieldNode.isStatic() && !fieldNode.isFinal()))  {
+                readFields.add(fieldNode.getName());
+            } else {
+                fieldReadsOnly = false;
+            }
+
+            if (fieldNode != null && fieldNode.isFinal())  {
+                fieldDependencies.add(fieldNode.getName());
+            } else {
+                pure = false;
+            }
+        }
+
         private Variable getParameterCandidate(Variable variable)  {
             if (variable == null || methodNode == null) return variable;
             if (variable instanceof Parameter) return variable;
@@ -447,6 +538,21 @@ public class AnnotationClosureVisitor extends BaseVisitor implements ASTNodeMeta
             return methodCalls;
         }
 
+        public boolean isPure() {
+            return pure;
+        }
+
+        /**
+         * @return the instance and final fields read by the closure, or <tt>null</tt> if it depends on anything else
+         */
+        public Set<String> getReadFields()  {
+            return fieldReadsOnly ? readFields : null;
+        }
+
+        public PreconditionCheckGenerationUtility.Dependencies getDependencies()  {
+            return new PreconditionCheckGenerationUtility.Dependencies(parameterDependencies, fieldDependencies);
+        }
+
         @Override
         protected SourceUnit getSourceUnit() {
             return sourceUnit;
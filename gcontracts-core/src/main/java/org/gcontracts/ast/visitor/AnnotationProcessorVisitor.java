@@ -32,6 +32,8 @@ import org.gcontracts.annotations.meta.ContractElement;
 import org.gcontracts.common.spi.AnnotationProcessor;
 import org.gcontracts.common.spi.ProcessingContextInformation;
 import org.gcontracts.generation.CandidateChecks;
+import org.gcontracts.generation.ClosureInstanceGenerationUtility;
+import org.gcontracts.generation.ContractMethodGenerationUtility;
 import org.gcontracts.util.AnnotationUtils;
 import org.gcontracts.util.Validate;
 
@@ -76,6 +78,9 @@ public class AnnotationProcessorVisitor extends BaseVisitor {
         // visit all interfaces of this class
         visitInterfaces(type, type.getInterfaces());
         visitAbstractBaseClassesForInterfaceMethodNodes(type, type.getSuperClass());
+
+        // contract methods generated for heirs need to reflect the marker annotations added above
+        ContractMethodGenerationUtility.refreshContractMethods(type);
     }
 
     private void visitAbstractBaseClassesForInterfaceMethodNodes(ClassNode origin, ClassNode superClass) {
@@ -131,12 +136,7 @@ public class AnnotationProcessorVisitor extends BaseVisitor {
             if (annotationProcessor != null && annotationNode.getMember(CLOSURE_ATTRIBUTE_NAME) instanceof ClassExpression)  {
                 final ClassExpression closureClassExpression = (ClassExpression) annotationNode.getMember(CLOSURE_ATTRIBUTE_NAME);
 
-                MethodCallExpression doCall = new MethodCallExpression(
-                        new ConstructorCallExpression(closureClassExpression.getType(), new ArgumentListExpression(VariableExpression.THIS_EXPRESSION, VariableExpression.THIS_EXPRESSION)),
-                        "doCall",
-                        ArgumentListExpression.EMPTY_ARGUMENTS
-                );
-                doCall.setMethodTarget(closureClassExpression.getType().getMethods("doCall").get(0));
+                MethodCallExpression doCall = ClosureInstanceGenerationUtility.doCall(classNode, closureClassExpression.getType(), false, ArgumentListExpression.EMPTY_ARGUMENTS);
 
                 final BooleanExpression booleanExpression = new BooleanExpression(doCall);
                 booleanExpression.setSourcePosition(annotationNode);
@@ -181,13 +181,7 @@ public class AnnotationProcessorVisitor extends BaseVisitor {
                     closureArgumentList.addExpression(variableExpression);
                 }
 
-                MethodCallExpression doCall = new MethodCallExpression(
-                        new ConstructorCallExpression(annotationNode.getMember(CLOSURE_ATTRIBUTE_NAME).getType(), new ArgumentListExpression(VariableExpression.THIS_EXPRESSION, VariableExpression.THIS_EXPRESSION)),
-                        "doCall",
-                        closureArgumentList
-                );
-                ClassNode type = annotationNode.getMember(CLOSURE_ATTRIBUTE_NAME).getType();
-                doCall.setMethodTarget(type.getMethods("doCall").get(0));
+                MethodCallExpression doCall = ClosureInstanceGenerationUtility.doCall(methodNode.getDeclaringClass(), closureClassExpression.getType(), methodNode.isStatic(), closureArgumentList);
 
                 final BooleanExpression booleanExpression = new BooleanExpression(doCall);
                 booleanExpression.setSourcePosition(annotationNode);
@@ -202,6 +196,7 @@ public class AnnotationProcessorVisitor extends BaseVisitor {
                     annotationMarker.setSourceRetention(false);
 
                     methodNode.addAnnotation(annotationMarker);
+                    AnnotationUtils.annotationsChanged(methodNode.getDeclaringClass());
                 }
             }
         }
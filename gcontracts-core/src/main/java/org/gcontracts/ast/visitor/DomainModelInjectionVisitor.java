@@ -63,6 +63,8 @@ public class DomainModelInjectionVisitor extends BaseVisitor {
 
     @Override
     public void visitClass(ClassNode type) {
+        contract.simplify();
+
         injectClassInvariant(type, contract.classInvariant());
 
         for (Map.Entry<MethodNode, Precondition> entry : contract.preconditions())  {
@@ -90,6 +92,8 @@ public class DomainModelInjectionVisitor extends BaseVisitor {
         final PreconditionGenerator preconditionGenerator = new PreconditionGenerator(source);
 
         preconditionGenerator.generatePreconditionAssertionStatement(method, precondition);
+        // check methods split the precondition from the method code, which is wrapped as a whole in outermost mode
+        if (pci.isPreconditionChecksEnabled() && !pci.isOutermostCallsEnabled()) preconditionGenerator.generatePreconditionCheckMethod(method, precondition);
     }
 
     public void injectPostcondition(final MethodNode method, final Postcondition postcondition) {
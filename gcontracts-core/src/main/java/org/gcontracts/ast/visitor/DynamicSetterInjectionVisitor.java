@@ -34,6 +34,7 @@ import org.codehaus.groovy.syntax.Token;
 import org.codehaus.groovy.syntax.Types;
 import org.gcontracts.generation.BaseGenerator;
 import org.gcontracts.generation.CandidateChecks;
+import org.gcontracts.generation.DirtyInvariantGenerationUtility;
 import org.gcontracts.util.AnnotationUtils;
 import org.objectweb.asm.Opcodes;
 
@@ -50,7 +51,7 @@ import java.util.List;
  */
 public class DynamicSetterInjectionVisitor extends BaseVisitor {
 
-    private static final String SPRING_STEREOTYPE_PACKAGE = "org.springframework.stereotype";
+    public static final String SPRING_STEREOTYPE_PACKAGE = "org.springframework.stereotype";
 
     private BlockStatement invariantAssertionBlockStatement;
 
@@ -68,6 +69,8 @@ public class DynamicSetterInjectionVisitor extends BaseVisitor {
         BinaryExpression fieldAssignment = new BinaryExpression(new FieldExpression(field), Token.newSymbol(Types.ASSIGN, -1, -1), new VariableExpression(parameter));
         setterMethodBlock.addStatement(new org.codehaus.groovy.ast.stmt.ExpressionStatement(fieldAssignment));
 
+        final Statement markDirty = DirtyInvariantGenerationUtility.markDirty(field);
+        if (markDirty != null) setterMethodBlock.addStatement(markDirty);
 
         // check invariant after assignment
         setterMethodBlock.addStatement(invariantAssertionBlockStatement);
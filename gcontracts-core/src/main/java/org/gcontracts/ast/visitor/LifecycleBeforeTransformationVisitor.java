@@ -59,7 +59,7 @@ public class LifecycleBeforeTransformationVisitor extends BaseVisitor {
         ArrayList<MethodNode> methods = new ArrayList<MethodNode>(node.getMethods());
         ArrayList<MethodNode> constructors = new ArrayList<MethodNode>(node.getDeclaredConstructors());
 
-        for (Lifecycle lifecyle : LifecycleImplementationLoader.load(Lifecycle.class, getClass().getClassLoader()))  {
+        for (Lifecycle lifecyle : LifecycleImplementationLoader.loadCached(Lifecycle.class, getClass().getClassLoader()))  {
             lifecyle.beforeProcessingClassNode(pci, node);
 
             for (MethodNode constructor : constructors)  {
@@ -0,0 +1,469 @@
+/**
+ * Copyright (c) 2013, Andre Steingress
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1.) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 2.) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 3.) Neither the name of Andre Steingress nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.gcontracts.ast.visitor;
+
+import org.codehaus.groovy.ast.*;
+import org.codehaus.groovy.ast.expr.*;
+import org.codehaus.groovy.ast.stmt.ForStatement;
+import org.codehaus.groovy.control.SourceUnit;
+import org.codehaus.groovy.control.io.ReaderSource;
+import org.codehaus.groovy.runtime.MetaClassHelper;
+import org.codehaus.groovy.syntax.Types;
+import org.gcontracts.annotations.ReadOnly;
+import org.gcontracts.generation.CandidateChecks;
+
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * <p>Computes which methods of a class do not write any field of their object and marks them as read-only,
+ * read-only methods do not check the class invariant.</p>
+ *
+ * <p>A method is read-only if neither the method nor its closures write a field or property of <tt>this</tt> or of
+ * an object reachable from one of its fields, and if all methods it calls on <tt>this</tt> are read-only. The
+ * analysis is conservative: values taken from fields, directly, through local variables or as closure parameters of
+ * their iteration methods, are treated as part of the object. Calling unknown methods on <tt>this</tt>, calling
+ * methods on such values other than well-known queries of <tt>java.lang</tt> and <tt>java.util</tt> types, writing
+ * their properties or elements, and passing <tt>this</tt> or such values to other methods are considered writes.
+ * The result can be overridden with {@link org.gcontracts.annotations.ReadOnly}.</p>
+ *
+ * <p>The analysis is opt-in with the <tt>gcontracts.compile.invariants.readonly</tt> property, the annotation is
+ * always taken into account.</p>
+ *
+ * @see org.gcontracts.annotations.ReadOnly
+ *
+ * @author ast
+ */
+public class ReadOnlyMethodVisitor extends BaseVisitor {
+
+    public static final String META_DATA_READ_ONLY = "org.gcontracts.READ_ONLY";
+
+    private static final Set<String> QUERY_METHOD_NAMES = new HashSet<String>(Arrays.asList(
+            "equals", "hashCode", "toString", "compareTo", "getClass", "is", "asBoolean",
+            "size", "length", "isEmpty", "contains", "containsKey", "containsValue", "get", "getAt",
+            "each", "eachWithIndex", "any", "every", "find", "findAll", "collect", "count", "sum", "inject", "join", "min", "max"
+    ));
+
+    private static final Set<String> OBJECT_METHOD_NAMES = new HashSet<String>(Arrays.asList(
+            "equals", "hashCode", "toString", "getClass", "is", "getMetaClass"
+    ));
+
+    private static final Set<String> QUERY_CLASS_NAMES = new HashSet<String>(Arrays.asList(
+            "java.util.Objects", "java.lang.Math", "java.lang.String", "java.lang.System",
+            "org.codehaus.groovy.util.HashCodeHelper", "org.codehaus.groovy.runtime.InvokerHelper"
+    ));
+
+    private static final Set<String> IMMUTABLE_TYPE_NAMES = new HashSet<String>(Arrays.asList(
+            "java.lang.String", "java.lang.Boolean", "java.lang.Character", "java.lang.Byte", "java.lang.Short",
+            "java.lang.Integer", "java.lang.Long", "java.lang.Float", "java.lang.Double", "java.lang.Class",
+            "java.math.BigDecimal", "java.math.BigInteger"
+    ));
+
+    private final boolean analyze;
+
+    private ClassNode type;
+    private boolean writes;
+    private Set<String> calledMethodNames;
+    private Set<String> derivedVariableNames;
+
+    /**
+     * @param analyze whether the write sets are analyzed, otherwise only methods annotated with
+     *                {@link org.gcontracts.annotations.ReadOnly} are marked
+     */
+    public ReadOnlyMethodVisitor(final SourceUnit sourceUnit, final ReaderSource source, final boolean analyze) {
+        super(sourceUnit, source);
+        this.analyze = analyze;
+    }
+
+    @Override
+    public void visitClass(ClassNode node) {
+        type = node;
+
+        final Map<MethodNode, Set<String>> calls = new LinkedHashMap<MethodNode, Set<String>>();
+        final Set<MethodNode> writingMethods = new HashSet<MethodNode>();
+
+        for (MethodNode methodNode : node.getMethods())  {
+            if (methodNode.getCode() == null) continue;
+
+            writes = false;
+            calledMethodNames = new HashSet<String>();
+            derivedVariableNames = new HashSet<String>();
+
+            // variables holding values taken from fields, until no more are found
+            int derivedVariables;
+            do {
+                derivedVariables = derivedVariableNames.size();
+                methodNode.getCode().visit(new DerivedVariableCollector());
+            } while (derivedVariables < derivedVariableNames.size());
+
+            methodNode.getCode().visit(this);
+
+            calls.put(methodNode, calledMethodNames);
+            if (writes) writingMethods.add(methodNode);
+        }
+
+        // methods calling writing methods on this are writing methods too
+        boolean changed = true;
+        while (changed)  {
+            changed = false;
+            for (Map.Entry<MethodNode, Set<String>> entry : calls.entrySet())  {
+                if (writingMethods.contains(entry.getKey()) || !callsWritingMethod(entry.getValue(), writingMethods)) continue;
+
+                writingMethods.add(entry.getKey());
+                changed = true;
+            }
+        }
+
+        for (MethodNode methodNode : calls.keySet())  {
+            if (!CandidateChecks.isClassInvariantCandidate(node, methodNode)) continue;
+
+            final Boolean readOnly = getReadOnlyAnnotationValue(methodNode);
+            if (readOnly != null ? readOnly : analyze && !writingMethods.contains(methodNode))  {
+                methodNode.putNodeMetaData(META_DATA_READ_ONLY, Boolean.TRUE);
+            }
+        }
+    }
+
+    private boolean callsWritingMethod(final Set<String> methodNames, final Set<MethodNode> writingMethods)  {
+        for (String methodName : methodNames)  {
+            for (MethodNode methodNode : type.getDeclaredMethods(methodName))  {
+                if (methodNode.getCode() == null || writingMethods.contains(methodNode)) return true;
+
+                // heirs might override the method without checking the invariant
+                if (!methodNode.isPublic() && !methodNode.isPrivate() && !methodNode.isFinal() && !Modifier.isFinal(type.getModifiers())) return true;
+            }
+        }
+
+        return false;
+    }
+
+    private Boolean getReadOnlyAnnotationValue(final MethodNode methodNode)  {
+        final List<AnnotationNode> annotationNodes = methodNode.getAnnotations(ClassHelper.makeWithoutCaching(ReadOnly.class));
+        if (annotationNodes.isEmpty()) return null;
+
+        final Expression value = annotationNodes.get(0).getMember("value");
+        return !(value instanceof ConstantExpression) || !Boolean.FALSE.equals(((ConstantExpression) value).getValue());
+    }
+
+    @Override
+    public void visitBinaryExpression(BinaryExpression expression) {
+        final int operationType = expression.getOperation().getType();
+
+        if (Types.ofType(operationType, Types.ASSIGNMENT_OPERATOR))  {
+            if (!(expression instanceof DeclarationExpression)) checkWrite(expression.getLeftExpression());
+            if (isThis(expression.getRightExpression())) writes = true;
+        } else if (operationType == Types.LEFT_SHIFT && isDerived(expression.getLeftExpression()))  {
+            writes = true;
+        }
+
+        super.visitBinaryExpression(expression);
+    }
+
+    @Override
+    public void visitPostfixExpression(PostfixExpression expression) {
+        checkWrite(expression.getExpression());
+        super.visitPostfixExpression(expression);
+    }
+
+    @Override
+    public void visitPrefixExpression(PrefixExpression expression) {
+        checkWrite(expression.getExpression());
+        super.visitPrefixExpression(expression);
+    }
+
+    @Override
+    public void visitMethodCallExpression(MethodCallExpression call) {
+        final Expression receiver = call.getObjectExpression();
+        final String methodName = call.getMethodAsString();
+
+        if (methodName == null)  {
+            writes = true;
+        } else if (call.isImplicitThis() || isThis(receiver))  {
+            checkCallOnThis(methodName);
+        } else if (receiver instanceof VariableExpression && ((VariableExpression) receiver).isSuperExpression())  {
+            if (!isObjectMethod(type.getSuperClass(), methodName)) writes = true;
+        } else if (receiver instanceof ClassExpression)  {
+            checkStaticCall(receiver.getType(), methodName, call.getArguments());
+        } else if (isDerived(receiver))  {
+            final ClassNode receiverType = getStaticType(receiver);
+            if (!QUERY_METHOD_NAMES.contains(methodName) || !isTrustedType(receiverType)) writes = true;
+            if (hasMutableArguments(call.getArguments())) writes = true;
+        } else if (isFieldReference(receiver))  {
+            // immutable field values
+            if (hasMutableArguments(call.getArguments())) writes = true;
+        } else if (!type.getDeclaredMethods(methodName).isEmpty())  {
+            // the receiver might be this, e.g. a parameter of the declaring type
+            calledMethodNames.add(methodName);
+        } else if (!QUERY_METHOD_NAMES.contains(methodName) && hasMutableArguments(call.getArguments()))  {
+            writes = true;
+        }
+
+        super.visitMethodCallExpression(call);
+    }
+
+    @Override
+    public void visitStaticMethodCallExpression(StaticMethodCallExpression call) {
+        checkStaticCall(call.getOwnerType(), call.getMethod(), call.getArguments());
+        super.visitStaticMethodCallExpression(call);
+    }
+
+    @Override
+    public void visitConstructorCallExpression(ConstructorCallExpression call) {
+        if (call.getArguments() instanceof TupleExpression)  {
+            for (Expression argument : ((TupleExpression) call.getArguments()).getExpressions())  {
+                if (isThis(argument)) writes = true;
+                // e.g. copies of collections
+                if (isDerived(argument) && !isTrustedType(call.getType())) writes = true;
+            }
+        }
+
+        super.visitConstructorCallExpression(call);
+    }
+
+    @Override
+    public void visitListExpression(ListExpression expression) {
+        for (Expression element : expression.getExpressions())  {
+            if (isThis(element)) writes = true;
+        }
+
+        super.visitListExpression(expression);
+    }
+
+    @Override
+    public void visitMapEntryExpression(MapEntryExpression expression) {
+        if (isThis(expression.getValueExpression())) writes = true;
+        super.visitMapEntryExpression(expression);
+    }
+
+    private void checkWrite(final Expression expression)  {
+        if (expression instanceof TupleExpression)  {
+            for (Expression element : ((TupleExpression) expression).getExpressions())  {
+                checkWrite(element);
+            }
+        } else if (expression instanceof BinaryExpression && ((BinaryExpression) expression).getOperation().getType() == Types.LEFT_SQUARE_BRACKET)  {
+            if (isDerived(((BinaryExpression) expression).getLeftExpression())) writes = true;
+        } else if (isFieldReference(expression))  {
+            writes = true;
+        } else if (expression instanceof PropertyExpression)  {
+            final Expression objectExpression = ((PropertyExpression) expression).getObjectExpression();
+            if (isSuper(objectExpression) || isDerived(objectExpression)) writes = true;
+        }
+    }
+
+    private void checkCallOnThis(final String methodName)  {
+        if (!type.getDeclaredMethods(methodName).isEmpty())  {
+            calledMethodNames.add(methodName);
+            return;
+        }
+
+        // getters and setters of properties are generated later on
+        if (methodName.length() > 3 && methodName.startsWith("get") && type.getProperty(MetaClassHelper.convertPropertyName(methodName.substring(3))) != null) return;
+        if (methodName.length() > 2 && methodName.startsWith("is") && type.getProperty(MetaClassHelper.convertPropertyName(methodName.substring(2))) != null) return;
+
+        if (!isObjectMethod(type, methodName)) writes = true;
+    }
+
+    private void checkStaticCall(final ClassNode ownerType, final String methodName, final Expression arguments)  {
+        if (ownerType.getName().equals(type.getName()))  {
+            calledMethodNames.add(methodName);
+        } else if (!QUERY_CLASS_NAMES.contains(ownerType.getName()) && hasMutableArguments(arguments))  {
+            writes = true;
+        }
+    }
+
+    private boolean isObjectMethod(final ClassNode classNode, final String methodName)  {
+        final List<MethodNode> methodNodes = classNode != null ? classNode.getMethods(methodName) : Collections.<MethodNode>emptyList();
+        if (methodNodes.isEmpty()) return OBJECT_METHOD_NAMES.contains(methodName);
+
+        for (MethodNode methodNode : methodNodes)  {
+            if (!methodNode.getDeclaringClass().equals(ClassHelper.OBJECT_TYPE)) return false;
+        }
+
+        return true;
+    }
+
+    private boolean hasMutableArguments(final Expression arguments)  {
+        if (!(arguments instanceof TupleExpression)) return false;
+
+        for (Expression argument : ((TupleExpression) arguments).getExpressions())  {
+            if (isThis(argument) || isDerived(argument)) return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @return whether the given expression evaluates to a possibly mutable value taken from a field
+     */
+    private boolean isDerived(final Expression expression)  {
+        if (isThis(expression) || isSuper(expression)) return false;
+        if (isFieldReference(expression)) return !isImmutable(getFieldType(expression));
+
+        if (expression instanceof VariableExpression)  {
+            final VariableExpression variableExpression = (VariableExpression) expression;
+            return derivedVariableNames.contains(variableExpression.getName()) && !isImmutable(variableExpression.getOriginType());
+        }
+
+        if (expression instanceof PropertyExpression) return isDerived(((PropertyExpression) expression).getObjectExpression());
+
+        if (expression instanceof MethodCallExpression)  {
+            // e.g. getters of this
+            final MethodCallExpression call = (MethodCallExpression) expression;
+            return call.isImplicitThis() || isThis(call.getObjectExpression()) || isDerived(call.getObjectExpression());
+        }
+
+        if (expression instanceof BinaryExpression && ((BinaryExpression) expression).getOperation().getType() == Types.LEFT_SQUARE_BRACKET)  {
+            return isDerived(((BinaryExpression) expression).getLeftExpression());
+        }
+
+        if (expression instanceof TernaryExpression)  {
+            final TernaryExpression ternaryExpression = (TernaryExpression) expression;
+            return isDerived(ternaryExpression.getTrueExpression()) || isDerived(ternaryExpression.getFalseExpression());
+        }
+
+        if (expression instanceof CastExpression) return isDerived(((CastExpression) expression).getExpression());
+
+        if (expression instanceof ListExpression)  {
+            for (Expression element : ((ListExpression) expression).getExpressions())  {
+                if (isDerived(element)) return true;
+            }
+        }
+
+        if (expression instanceof MapExpression)  {
+            for (MapEntryExpression entry : ((MapExpression) expression).getMapEntryExpressions())  {
+                if (isDerived(entry.getValueExpression())) return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return the declared type of the given field or variable reference, otherwise <tt>null</tt>
+     */
+    private ClassNode getStaticType(final Expression expression)  {
+        if (isFieldReference(expression)) return getFieldType(expression);
+        if (expression instanceof VariableExpression) return ((VariableExpression) expression).getOriginType();
+        if (expression instanceof ListExpression) return ClassHelper.LIST_TYPE;
+        if (expression instanceof MapExpression) return ClassHelper.MAP_TYPE;
+
+        return null;
+    }
+
+    /**
+     * @return whether the query methods of the given type are known not to change its instances
+     */
+    private boolean isTrustedType(final ClassNode classNode)  {
+        if (classNode == null) return false;
+        if (classNode.isArray() || isImmutable(classNode)) return true;
+
+        final String packageName = classNode.getPackageName();
+        return "java.util".equals(packageName) || "java.lang".equals(packageName) || "java.math".equals(packageName);
+    }
+
+    private boolean isFieldReference(final Expression expression)  {
+        if (expression instanceof FieldExpression) return true;
+
+        if (expression instanceof VariableExpression)  {
+            final Variable accessedVariable = ((VariableExpression) expression).getAccessedVariable();
+            return !isThis(expression) && (accessedVariable instanceof FieldNode || accessedVariable instanceof PropertyNode || accessedVariable instanceof DynamicVariable);
+        }
+
+        return expression instanceof PropertyExpression && isThis(((PropertyExpression) expression).getObjectExpression());
+    }
+
+    private ClassNode getFieldType(final Expression expression)  {
+        if (expression instanceof FieldExpression) return ((FieldExpression) expression).getField().getType();
+
+        if (expression instanceof VariableExpression)  {
+            final Variable accessedVariable = ((VariableExpression) expression).getAccessedVariable();
+            return accessedVariable instanceof DynamicVariable ? null : accessedVariable.getType();
+        }
+
+        final FieldNode fieldNode = type.getField(((PropertyExpression) expression).getPropertyAsString());
+        return fieldNode != null ? fieldNode.getType() : null;
+    }
+
+    private boolean isImmutable(final ClassNode fieldType)  {
+        if (fieldType == null) return false;
+
+        return ClassHelper.isPrimitiveType(fieldType) || fieldType.isEnum() || IMMUTABLE_TYPE_NAMES.contains(fieldType.getName());
+    }
+
+    /**
+     * Collects the local variables and closure parameters holding values taken from fields.
+     */
+    private class DerivedVariableCollector extends CodeVisitorSupport {
+
+        @Override
+        public void visitBinaryExpression(BinaryExpression expression) {
+            if (Types.ofType(expression.getOperation().getType(), Types.ASSIGNMENT_OPERATOR) && isDerived(expression.getRightExpression()))  {
+                addVariables(expression.getLeftExpression());
+            }
+
+            super.visitBinaryExpression(expression);
+        }
+
+        @Override
+        public void visitMethodCallExpression(MethodCallExpression call) {
+            // closures iterating or processing the receiver, e.g. items.each { it.clear() }
+            if (isDerived(call.getObjectExpression()) && call.getArguments() instanceof TupleExpression)  {
+                for (Expression argument : ((TupleExpression) call.getArguments()).getExpressions())  {
+                    if (!(argument instanceof ClosureExpression)) continue;
+
+                    final Parameter[] parameters = ((ClosureExpression) argument).getParameters();
+                    if (parameters == null || parameters.length == 0) derivedVariableNames.add("it");
+                    for (Parameter parameter : parameters != null ? parameters : Parameter.EMPTY_ARRAY)  {
+                        derivedVariableNames.add(parameter.getName());
+                    }
+                }
+            }
+
+            super.visitMethodCallExpression(call);
+        }
+
+        @Override
+        public void visitForLoop(ForStatement forLoop) {
+            if (isDerived(forLoop.getCollectionExpression())) derivedVariableNames.add(forLoop.getVariable().getName());
+            super.visitForLoop(forLoop);
+        }
+
+        private void addVariables(final Expression expression)  {
+            if (expression instanceof TupleExpression)  {
+                for (Expression element : ((TupleExpression) expression).getExpressions())  {
+                    addVariables(element);
+                }
+            } else if (expression instanceof VariableExpression && !isFieldReference(expression) && !isThis(expression))  {
+                derivedVariableNames.add(((VariableExpression) expression).getName());
+            }
+        }
+    }
+
+    private boolean isThis(final Expression expression)  {
+        return expression instanceof VariableExpression && ((VariableExpression) expression).isThisExpression();
+    }
+
+    private boolean isSuper(final Expression expression)  {
+        return expression instanceof VariableExpression && ((VariableExpression) expression).isSuperExpression();
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) 2013, Andre Steingress
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1.) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 2.) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 3.) Neither the name of Andre Steingress nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.gcontracts.common.impl;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Snapshot of the metrics of a single contract site.
+ *
+ * @author ast
+ */
+public class ContractSiteMetrics {
+
+    private final int siteId;
+    private final String className;
+    private final String methodIdentifier;
+    private final String assertionType;
+    private final long evaluations;
+    private final long violations;
+    private final long totalNanos;
+    private final long medianNanos;
+    private final long p99Nanos;
+    private final long maxNanos;
+
+    @ConstructorProperties({ "siteId", "className", "methodIdentifier", "assertionType", "evaluations", "violations", "totalNanos", "medianNanos", "p99Nanos", "maxNanos" })
+    public ContractSiteMetrics(int siteId, String className, String methodIdentifier, String assertionType, long evaluations, long violations, long totalNanos, long medianNanos, long p99Nanos, long maxNanos)  {
+        this.siteId = siteId;
+        this.className = className;
+        this.methodIdentifier = methodIdentifier;
+        this.assertionType = assertionType;
+        this.evaluations = evaluations;
+        this.violations = violations;
+        this.totalNanos = totalNanos;
+        this.medianNanos = medianNanos;
+        this.p99Nanos = p99Nanos;
+        this.maxNanos = maxNanos;
+    }
+
+    public int getSiteId() { return siteId; }
+    public String getClassName() { return className; }
+    public String getMethodIdentifier() { return methodIdentifier; }
+    public String getAssertionType() { return assertionType; }
+
+    public long getEvaluations() { return evaluations; }
+    public long getViolations() { return violations; }
+    public long getTotalNanos() { return totalNanos; }
+
+    /**
+     * Latencies are kept in logarithmic buckets, percentiles are the upper bound of their bucket.
+     */
+    public long getMedianNanos() { return medianNanos; }
+    public long getP99Nanos() { return p99Nanos; }
+    public long getMaxNanos() { return maxNanos; }
+
+    @Override
+    public String toString() {
+        return className + " " + methodIdentifier + " " + assertionType + ": " + evaluations + " evaluations, " + violations + " violations, median " + medianNanos + "ns, p99 " + p99Nanos + "ns";
+    }
+}
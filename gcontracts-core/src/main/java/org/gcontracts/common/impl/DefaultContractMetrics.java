@@ -0,0 +1,225 @@
+/**
+ * Copyright (c) 2013, Andre Steingress
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1.) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 2.) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 3.) Neither the name of Andre Steingress nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.gcontracts.common.impl;
+
+import org.gcontracts.common.spi.ContractMetrics;
+import org.gcontracts.generation.ContractExecutionTracker;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Default {@link ContractMetrics} implementation. Evaluations, violations and latencies are counted per contract
+ * site with striped {@link java.util.concurrent.atomic.LongAdder} counters, recording never blocks.</p>
+ *
+ * <p>Latencies are kept in a histogram with four buckets per power of two, which bounds the relative error of
+ * reported percentiles to 25%.</p>
+ *
+ * @author ast
+ */
+public class DefaultContractMetrics implements ContractMetrics, ContractMetricsMXBean {
+
+    public static final String OBJECT_NAME = "org.gcontracts:type=ContractMetrics";
+
+    /**
+     * Log-bucket histogram of latencies in nanoseconds.
+     */
+    static final class LatencyHistogram {
+
+        // values below 4 have their own bucket, 4 sub-buckets for each power of two above
+        static final int SUB_BUCKET_BITS = 2;
+        static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        static final int BUCKETS = (63 - SUB_BUCKET_BITS) * SUB_BUCKETS + SUB_BUCKETS;
+
+        private final AtomicReferenceArray<LongAdder> buckets = new AtomicReferenceArray<LongAdder>(BUCKETS);
+
+        static int bucket(long value)  {
+            if (value < SUB_BUCKETS) return value < 0 ? 0 : (int) value;
+
+            final int exponent = 63 - Long.numberOfLeadingZeros(value);
+            final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        static long lowerBound(int bucket)  {
+            if (bucket < SUB_BUCKETS) return bucket;
+
+            final int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            return ((long) (SUB_BUCKETS | bucket % SUB_BUCKETS)) << (exponent - SUB_BUCKET_BITS);
+        }
+
+        static long upperBound(int bucket)  {
+            return bucket + 1 < BUCKETS ? lowerBound(bucket + 1) - 1 : Long.MAX_VALUE;
+        }
+
+        void record(long value)  {
+            final int index = bucket(value);
+
+            LongAdder adder = buckets.get(index);
+            if (adder == null)  {
+                buckets.compareAndSet(index, null, new LongAdder());
+                adder = buckets.get(index);
+            }
+
+            adder.increment();
+        }
+
+        long[] counts()  {
+            final long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++)  {
+                final LongAdder adder = buckets.get(i);
+                if (adder != null) counts[i] = adder.sum();
+            }
+
+            return counts;
+        }
+
+        static long percentile(long[] counts, double percentile)  {
+            long total = 0;
+            for (long count : counts) total += count;
+            if (total == 0) return 0;
+
+            final long rank = (long) Math.ceil(total * percentile);
+
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++)  {
+                seen += counts[i];
+                if (seen >= rank && counts[i] > 0) return upperBound(i);
+            }
+
+            return 0;
+        }
+
+        static long max(long[] counts)  {
+            for (int i = counts.length - 1; i >= 0; i--)  {
+                if (counts[i] > 0) return upperBound(i);
+            }
+
+            return 0;
+        }
+    }
+
+    static final class SiteMetrics {
+        final String assertionType;
+        final LongAdder evaluations = new LongAdder();
+        final LongAdder violations = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final LatencyHistogram latencies = new LatencyHistogram();
+
+        SiteMetrics(String assertionType)  {
+            this.assertionType = assertionType;
+        }
+    }
+
+    private volatile SiteMetrics[] sites = new SiteMetrics[64];
+
+    public void evaluated(int siteId, String assertionType, long elapsedNanos, boolean satisfied)  {
+        final SiteMetrics siteMetrics = siteMetrics(siteId, assertionType);
+
+        siteMetrics.evaluations.increment();
+        if (!satisfied) siteMetrics.violations.increment();
+        siteMetrics.totalNanos.add(elapsedNanos);
+        siteMetrics.latencies.record(elapsedNanos);
+    }
+
+    private SiteMetrics siteMetrics(int siteId, String assertionType)  {
+        final SiteMetrics[] current = sites;
+        if (siteId < current.length && current[siteId] != null) return current[siteId];
+
+        synchronized (this)  {
+            SiteMetrics[] updated = sites;
+            if (siteId >= updated.length) updated = Arrays.copyOf(updated, Math.max(siteId + 1, updated.length << 1));
+            if (updated[siteId] == null)  {
+                if (updated == sites) updated = updated.clone();
+                updated[siteId] = new SiteMetrics(assertionType);
+            }
+
+            sites = updated;
+            return updated[siteId];
+        }
+    }
+
+    /**
+     * @return a snapshot of the metrics of all contract sites evaluated so far
+     */
+    public List<ContractSiteMetrics> getSites()  {
+        final SiteMetrics[] current = sites;
+
+        final List<ContractSiteMetrics> result = new ArrayList<ContractSiteMetrics>();
+        for (int siteId = 0; siteId < current.length; siteId++)  {
+            final SiteMetrics siteMetrics = current[siteId];
+            if (siteMetrics == null) continue;
+
+            final ContractExecutionTracker.ContractExecution site = ContractExecutionTracker.getContractExecution(siteId);
+            final long[] counts = siteMetrics.latencies.counts();
+
+            result.add(new ContractSiteMetrics(siteId, site.getClassName(), site.getMethodIdentifier(), siteMetrics.assertionType,
+                    siteMetrics.evaluations.sum(), siteMetrics.violations.sum(), siteMetrics.totalNanos.sum(),
+                    LatencyHistogram.percentile(counts, 0.5), LatencyHistogram.percentile(counts, 0.99), LatencyHistogram.max(counts)));
+        }
+
+        return result;
+    }
+
+    public long getEvaluations()  {
+        long result = 0;
+        for (SiteMetrics siteMetrics : sites)  {
+            if (siteMetrics != null) result += siteMetrics.evaluations.sum();
+        }
+
+        return result;
+    }
+
+    public long getViolations()  {
+        long result = 0;
+        for (SiteMetrics siteMetrics : sites)  {
+            if (siteMetrics != null) result += siteMetrics.violations.sum();
+        }
+
+        return result;
+    }
+
+    public synchronized void reset()  {
+        sites = new SiteMetrics[sites.length];
+    }
+
+    /**
+     * Registers this instance with the platform MBean server, unless another instance has already been registered.
+     */
+    public void registerMBean()  {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException ignore)  {
+        } catch (JMException e)  {
+            throw new IllegalStateException("Could not register " + OBJECT_NAME, e);
+        }
+    }
+}
@@ -24,6 +24,7 @@ package org.gcontracts.common.impl.lc;
 
 import org.codehaus.groovy.ast.ClassNode;
 import org.codehaus.groovy.ast.MethodNode;
+import org.gcontracts.ast.visitor.ReadOnlyMethodVisitor;
 import org.gcontracts.common.base.BaseLifecycle;
 import org.gcontracts.common.spi.ProcessingContextInformation;
 import org.gcontracts.generation.CandidateChecks;
@@ -40,6 +41,7 @@ public class ClassInvariantLifecycle extends BaseLifecycle {
     public void afterProcessingMethodNode(ProcessingContextInformation processingContextInformation, ClassNode classNode, MethodNode methodNode) {
          if (!CandidateChecks.isClassInvariantCandidate(classNode, methodNode)) return;
          if (processingContextInformation.contract().hasDefaultClassInvariant()) return;
+         if (methodNode.getNodeMetaData(ReadOnlyMethodVisitor.META_DATA_READ_ONLY) != null) return;
 
          final ClassInvariantGenerator classInvariantGenerator = new ClassInvariantGenerator(processingContextInformation.readerSource());
          classInvariantGenerator.addInvariantAssertionStatement(classNode, methodNode);
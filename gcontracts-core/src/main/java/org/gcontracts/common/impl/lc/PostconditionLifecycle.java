@@ -42,6 +42,8 @@ public class PostconditionLifecycle extends BaseLifecycle {
 
     @Override
     public void beforeProcessingClassNode(ProcessingContextInformation processingContextInformation, ClassNode classNode) {
+        if (!processingContextInformation.isPostconditionsEnabled()) return;
+
         final PostconditionGenerator postconditionGenerator = new PostconditionGenerator(processingContextInformation.readerSource());
         postconditionGenerator.addOldVariablesMethod(classNode);
     }
@@ -59,6 +61,7 @@ public class PostconditionLifecycle extends BaseLifecycle {
     private void generatePostcondition(ProcessingContextInformation processingContextInformation, ClassNode classNode, MethodNode methodNode) {
         if (!processingContextInformation.isPostconditionsEnabled()) return;
         if (!CandidateChecks.isPostconditionCandidate(classNode, methodNode)) return;
+        if (processingContextInformation.contract().postconditions().contains(methodNode)) return;
 
         final PostconditionGenerator postconditionGenerator = new PostconditionGenerator(processingContextInformation.readerSource());
 
@@ -0,0 +1,46 @@
+/**
+ * Copyright (c) 2013, Andre Steingress
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1.) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 2.) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 3.) Neither the name of Andre Steingress nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.gcontracts.common.spi;
+
+/**
+ * <p>Receives the outcome of every evaluated contract site, e.g. to collect metrics about evaluation counts,
+ * latencies and violations.</p>
+ *
+ * <p>An implementation is chosen with the <tt>gcontracts.metrics</tt> property, either <tt>true</tt> for
+ * {@link org.gcontracts.common.impl.DefaultContractMetrics} or the name of an implementation class with a public
+ * no-arg constructor. Implementations are called concurrently and on the hot path of contracted methods.</p>
+ *
+ * @see org.gcontracts.generation.ContractMetricsRecorder
+ *
+ * @author ast
+ */
+public interface ContractMetrics {
+
+    /**
+     * @param siteId the id of the contract site, see {@link org.gcontracts.generation.ContractExecutionTracker#getContractExecution(int)}
+     * @param assertionType the assertion type, e.g. <tt>precondition</tt>
+     * @param elapsedNanos the time spent evaluating the contract site
+     * @param satisfied <tt>false</tt> if the evaluation resulted in a violation
+     */
+    public void evaluated(final int siteId, final String assertionType, final long elapsedNanos, final boolean satisfied);
+}
@@ -30,6 +30,7 @@ import org.codehaus.groovy.control.io.ReaderSource;
 import org.codehaus.groovy.control.messages.SyntaxErrorMessage;
 import org.codehaus.groovy.syntax.SyntaxException;
 import org.gcontracts.domain.Contract;
+import org.gcontracts.util.ConfigurationProperties;
 import org.gcontracts.util.Validate;
 
 import java.util.ArrayList;
@@ -41,10 +42,30 @@ import java.util.Map;
  * <p>Holds all context-specific information which is needed during the transformation
  * phase of a single {@link Contract} and its related {@link ClassNode}.</p>
  *
+ * <p>Whether code is generated for an assertion kind at all is initialized from the
+ * <tt>gcontracts.compile.preconditions</tt>, <tt>gcontracts.compile.postconditions</tt> and
+ * <tt>gcontracts.compile.invariants</tt> properties, see {@link ConfigurationProperties}. Precondition check methods
+ * are opt-in with the <tt>gcontracts.compile.precondition.checks</tt> property, see
+ * {@link org.gcontracts.annotations.PurePrecondition}. Checking contracts only at the outermost call into an object
+ * is opt-in with the <tt>gcontracts.compile.outermost</tt> property, see
+ * {@link org.gcontracts.generation.OutermostCallTracker}. Skipping invariant checks of unchanged objects is opt-in
+ * with the <tt>gcontracts.compile.invariants.dirty</tt> property, see
+ * {@link org.gcontracts.generation.DirtyInvariantGenerationUtility}. Omitting invariant checks on methods proven not to
+ * write fields is opt-in with the <tt>gcontracts.compile.invariants.readonly</tt> property, see
+ * {@link org.gcontracts.ast.visitor.ReadOnlyMethodVisitor}.</p>
+ *
  * @author ast
  */
 public class ProcessingContextInformation {
 
+    public static final String COMPILE_PRECONDITIONS_PROPERTY = "gcontracts.compile.preconditions";
+    public static final String COMPILE_POSTCONDITIONS_PROPERTY = "gcontracts.compile.postconditions";
+    public static final String COMPILE_CLASS_INVARIANTS_PROPERTY = "gcontracts.compile.invariants";
+    public static final String COMPILE_PRECONDITION_CHECKS_PROPERTY = "gcontracts.compile.precondition.checks";
+    public static final String COMPILE_OUTERMOST_CALLS_PROPERTY = "gcontracts.compile.outermost";
+    public static final String COMPILE_DIRTY_INVARIANTS_PROPERTY = "gcontracts.compile.invariants.dirty";
+    public static final String COMPILE_READ_ONLY_METHODS_PROPERTY = "gcontracts.compile.invariants.readonly";
+
     private Contract contract;
     private SourceUnit sourceUnit;
     private ReaderSource source;
@@ -53,6 +74,10 @@ public class ProcessingContextInformation {
     private boolean preconditionsEnabled = true;
     private boolean postconditionsEnabled = true;
     private boolean classInvariantsEnabled = true;
+    private boolean preconditionChecksEnabled = false;
+    private boolean outermostCallsEnabled = false;
+    private boolean dirtyInvariantsEnabled = false;
+    private boolean readOnlyMethodsEnabled = false;
 
     private Map<String, Object> extra = new HashMap<String, Object>();
 
@@ -62,15 +87,40 @@ public class ProcessingContextInformation {
         this.contract = new Contract(classNode);
         this.sourceUnit = sourceUnit;
         this.source = source;
+
+        this.preconditionsEnabled = ConfigurationProperties.getBoolean(COMPILE_PRECONDITIONS_PROPERTY, true);
+        this.postconditionsEnabled = ConfigurationProperties.getBoolean(COMPILE_POSTCONDITIONS_PROPERTY, true);
+        this.classInvariantsEnabled = ConfigurationProperties.getBoolean(COMPILE_CLASS_INVARIANTS_PROPERTY, true);
+        this.preconditionChecksEnabled = ConfigurationProperties.getBoolean(COMPILE_PRECONDITION_CHECKS_PROPERTY, false);
+        this.outermostCallsEnabled = ConfigurationProperties.getBoolean(COMPILE_OUTERMOST_CALLS_PROPERTY, false);
+        this.dirtyInvariantsEnabled = ConfigurationProperties.getBoolean(COMPILE_DIRTY_INVARIANTS_PROPERTY, false);
+        this.readOnlyMethodsEnabled = ConfigurationProperties.getBoolean(COMPILE_READ_ONLY_METHODS_PROPERTY, false);
     }
 
     public void setConstructorAssertionsEnabled(boolean other) { constructorAssertionsEnabled = other; }
     public boolean isConstructorAssertionsEnabled() { return constructorAssertionsEnabled; }
 
+    public void setPreconditionsEnabled(boolean other) { preconditionsEnabled = other; }
     public boolean isPreconditionsEnabled() { return preconditionsEnabled; }
+
+    public void setPostconditionsEnabled(boolean other) { postconditionsEnabled = other; }
     public boolean isPostconditionsEnabled() { return postconditionsEnabled; }
+
+    public void setClassInvariantsEnabled(boolean other) { classInvariantsEnabled = other; }
     public boolean isClassInvariantsEnabled() { return classInvariantsEnabled; }
 
+    public void setPreconditionChecksEnabled(boolean other) { preconditionChecksEnabled = other; }
+    public boolean isPreconditionChecksEnabled() { return preconditionChecksEnabled; }
+
+    public void setOutermostCallsEnabled(boolean other) { outermostCallsEnabled = other; }
+    public boolean isOutermostCallsEnabled() { return outermostCallsEnabled; }
+
+    public void setDirtyInvariantsEnabled(boolean other) { dirtyInvariantsEnabled = other; }
+    public boolean isDirtyInvariantsEnabled() { return dirtyInvariantsEnabled; }
+
+    public void setReadOnlyMethodsEnabled(boolean other) { readOnlyMethodsEnabled = other; }
+    public boolean isReadOnlyMethodsEnabled() { return readOnlyMethodsEnabled; }
+
     public Contract contract() { return contract; }
     public ReaderSource readerSource() { return source; }
     public SourceUnit sourceUnit() { return sourceUnit; }
@@ -91,8 +141,11 @@ public class ProcessingContextInformation {
         int line = expr.getLineNumber();
         int col = expr.getColumnNumber();
         SourceUnit source = sourceUnit();
-        source.getErrorCollector().addErrorAndContinue(
-                new SyntaxErrorMessage(new SyntaxException(msg + '\n', line, col), source)
-        );
+        // classes might be processed in parallel
+        synchronized (source.getErrorCollector())  {
+            source.getErrorCollector().addErrorAndContinue(
+                    new SyntaxErrorMessage(new SyntaxException(msg + '\n', line, col), source)
+            );
+        }
     }
 }
@@ -28,6 +28,7 @@ import org.codehaus.groovy.ast.expr.ConstantExpression;
 import org.codehaus.groovy.ast.stmt.BlockStatement;
 import org.codehaus.groovy.syntax.Token;
 import org.codehaus.groovy.syntax.Types;
+import org.gcontracts.util.ExpressionUtils;
 import org.gcontracts.util.Validate;
 
 /**
@@ -65,6 +66,16 @@ public abstract class Assertion<T extends Assertion> {
         this.booleanExpression = booleanExpression;
     }
 
+    /**
+     * Simplifies constant <tt>&amp;&amp;</tt> and <tt>||</tt> chains of this assertion's boolean expression.
+     *
+     * @see ExpressionUtils#fold(org.codehaus.groovy.ast.expr.BooleanExpression)
+     */
+    public void simplify()  {
+        final BooleanExpression simplified = ExpressionUtils.fold(booleanExpression);
+        if (simplified != booleanExpression) renew(simplified);
+    }
+
     public void and(T other) {
         Validate.notNull(other);
 
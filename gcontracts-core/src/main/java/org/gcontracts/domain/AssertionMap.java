@@ -66,6 +66,12 @@ public class AssertionMap<T extends Assertion<T>> implements Iterable<Map.Entry<
         and(methodNode, assertion);
     }
 
+    public void simplify()  {
+        for (T assertion : internalMap.values())  {
+            assertion.simplify();
+        }
+    }
+
     public boolean contains(final MethodNode methodNode)  {
         return internalMap.containsKey(methodNode);
     }
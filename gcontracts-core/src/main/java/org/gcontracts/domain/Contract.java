@@ -56,6 +56,17 @@ public class Contract {
     public AssertionMap<Precondition> preconditions() { return preconditions; }
     public AssertionMap<Postcondition> postconditions() { return postconditions; }
 
+    /**
+     * Simplifies all assertions of this contract before they are injected. Pre- and postconditions folding to
+     * <tt>true</tt> are kept, as they still affect the assertions of overriding methods.
+     */
+    public void simplify()  {
+        if (classInvariant != ClassInvariant.DEFAULT) classInvariant.simplify();
+
+        preconditions.simplify();
+        postconditions.simplify();
+    }
+
     public boolean hasDefaultClassInvariant() { return classInvariant == ClassInvariant.DEFAULT; }
     public ClassInvariant classInvariant() { return classInvariant; }
 }
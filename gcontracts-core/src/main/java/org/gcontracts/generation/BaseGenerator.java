@@ -26,7 +26,6 @@ import org.codehaus.groovy.ast.*;
 import org.codehaus.groovy.ast.expr.*;
 import org.codehaus.groovy.ast.stmt.*;
 import org.codehaus.groovy.control.io.ReaderSource;
-import org.codehaus.groovy.runtime.InvokerHelper;
 import org.codehaus.groovy.syntax.Token;
 import org.codehaus.groovy.syntax.Types;
 import org.gcontracts.ViolationTracker;
@@ -35,9 +34,12 @@ import org.gcontracts.ast.visitor.AnnotationProcessorVisitor;
 import org.gcontracts.ast.visitor.BaseVisitor;
 import org.gcontracts.util.AnnotationUtils;
 import org.gcontracts.util.ExpressionUtils;
+import org.objectweb.asm.Opcodes;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -52,6 +54,11 @@ public abstract class BaseGenerator {
 
     public static final String INVARIANT_CLOSURE_PREFIX = "invariant";
     public static final String META_DATA_USE_INLINE_MODE = "org.gcontracts.USE_INLINE_MODE";
+    public static final String META_DATA_CONTRACT_SITE_IDS = "org.gcontracts.CONTRACT_SITE_IDS";
+    public static final String META_DATA_CONTRACT_SWITCHES = "org.gcontracts.CONTRACT_SWITCHES";
+
+    public static final String CONTRACT_SITE_ID_PREFIX = "$_gc_site_";
+    public static final String CONTRACT_SWITCH_PREFIX = "$_gc_switch_";
 
     protected final ReaderSource source;
 
@@ -77,72 +84,219 @@ public abstract class BaseGenerator {
         return classNode.getDeclaredMethod(getInvariantMethodName(classNode), Parameter.EMPTY_ARRAY);
     }
 
-    protected BlockStatement getInlineModeBlockStatement(BlockStatement blockStatement)  {
+    protected BlockStatement getInlineModeBlockStatement(ClassNode type, MethodNode methodNode, BlockStatement blockStatement, String assertionType)  {
 
         final BlockStatement result = new BlockStatement();
         final BooleanExpression combinedBooleanExpression = ExpressionUtils.getBooleanExpression(ExpressionUtils.getBooleanExpressionsFromAssertionStatements(blockStatement));
 
+        final VariableExpression $_gc_start = new VariableExpression("$_gc_start", ClassHelper.long_TYPE);
+        $_gc_start.setAccessedVariable($_gc_start);
+
+        final VariableExpression $_gc_result = new VariableExpression("$_gc_result", ClassHelper.boolean_TYPE);
+        $_gc_result.setAccessedVariable($_gc_result);
+
+        final BlockStatement evaluationBlockStatement = new BlockStatement();
+        evaluationBlockStatement.addStatement(new IfStatement(new NotExpression(combinedBooleanExpression), blockStatement, EmptyStatement.INSTANCE));
+        evaluationBlockStatement.addStatement(new ExpressionStatement(new BinaryExpression($_gc_result, Token.newSymbol(Types.ASSIGN, -1, -1), ConstantExpression.TRUE)));
+
         final BlockStatement assertionBlockStatement = new BlockStatement();
-        assertionBlockStatement.addStatement(new IfStatement(new NotExpression(combinedBooleanExpression), blockStatement, EmptyStatement.INSTANCE));
+        assertionBlockStatement.addStatement(new ExpressionStatement(new DeclarationExpression($_gc_start, Token.newSymbol(Types.ASSIGN, -1, -1), callContractMetricsRecorder("start"))));
+        assertionBlockStatement.addStatement(new ExpressionStatement(new DeclarationExpression($_gc_result, Token.newSymbol(Types.ASSIGN, -1, -1), ConstantExpression.FALSE)));
+        assertionBlockStatement.addStatement(new TryCatchStatement(evaluationBlockStatement,
+                new ExpressionStatement(callContractMetricsRecorder("record", getContractSiteId(type, methodNode, assertionType), new ConstantExpression(assertionType), $_gc_start, $_gc_result))));
 
-        result.addStatement(new IfStatement(new BooleanExpression(new VariableExpression(BaseVisitor.GCONTRACTS_ENABLED_VAR, ClassHelper.boolean_TYPE)), assertionBlockStatement, EmptyStatement.INSTANCE));
+        result.addStatement(new IfStatement(new BooleanExpression(getContractGuard(type, methodNode, assertionType)), assertionBlockStatement, EmptyStatement.INSTANCE));
 
         return result;
     }
 
-    protected BlockStatement wrapAssertionBooleanExpression(ClassNode type, MethodNode methodNode, BooleanExpression classInvariantExpression, String assertionType) {
+    /**
+     * Returns the static final field holding the {@link ContractExecutionTracker} site id of the given assertion.
+     * The field is created on first use, its value is interned once during class initialization.
+     *
+     * @param type the {@link org.codehaus.groovy.ast.ClassNode} declaring the given <tt>methodNode</tt>
+     * @param methodNode the {@link org.codehaus.groovy.ast.MethodNode} the assertion belongs to
+     * @param assertionType the assertion type, e.g. <tt>precondition</tt>
+     *
+     * @return a {@link org.codehaus.groovy.ast.expr.FieldExpression} referencing the site id field
+     */
+    protected FieldExpression getContractSiteId(final ClassNode type, final MethodNode methodNode, final String assertionType)  {
+        Map<String, FieldNode> contractSiteIds = type.getNodeMetaData(META_DATA_CONTRACT_SITE_IDS);
+        if (contractSiteIds == null)  {
+            contractSiteIds = new HashMap<String, FieldNode>();
+            type.setNodeMetaData(META_DATA_CONTRACT_SITE_IDS, contractSiteIds);
+        }
+
+        final String contractSite = methodNode.getTypeDescriptor() + " " + assertionType;
+
+        FieldNode fieldNode = contractSiteIds.get(contractSite);
+        if (fieldNode == null)  {
+            final StaticMethodCallExpression registerMethodCall = new StaticMethodCallExpression(ClassHelper.makeWithoutCaching(ContractExecutionTracker.class), "register", new ArgumentListExpression(Arrays.<Expression>asList(new ConstantExpression(type.getName()), new ConstantExpression(methodNode.getTypeDescriptor()), new ConstantExpression(assertionType), methodNode.isStatic() ? ConstantExpression.TRUE : ConstantExpression.FALSE)));
+
+            fieldNode = type.addField(CONTRACT_SITE_ID_PREFIX + contractSiteIds.size(), Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_SYNTHETIC | Opcodes.ACC_FINAL, ClassHelper.int_TYPE, registerMethodCall);
+            fieldNode.setSynthetic(true);
+
+            contractSiteIds.put(contractSite, fieldNode);
+        }
+
+        return new FieldExpression(fieldNode);
+    }
+
+    /**
+     * Creates a check whether contract elements of the given assertion type are enabled in <tt>type</tt>. The check
+     * calls {@link Switchboard#isEnabled(java.lang.invoke.MethodHandle)} with a static final switch field, which is
+     * created on first use.
+     *
+     * @param type the {@link org.codehaus.groovy.ast.ClassNode} the check is generated for
+     * @param assertionType the assertion type, e.g. <tt>precondition</tt>
+     *
+     * @return a boolean {@link org.codehaus.groovy.ast.expr.Expression}
+     */
+    protected Expression isContractEnabled(final ClassNode type, final String assertionType)  {
+        Map<String, FieldNode> contractSwitches = type.getNodeMetaData(META_DATA_CONTRACT_SWITCHES);
+        if (contractSwitches == null)  {
+            contractSwitches = new HashMap<String, FieldNode>();
+            type.setNodeMetaData(META_DATA_CONTRACT_SWITCHES, contractSwitches);
+        }
+
+        final ClassNode switchboardClassNode = ClassHelper.makeWithoutCaching(Switchboard.class);
+
+        FieldNode fieldNode = contractSwitches.get(assertionType);
+        if (fieldNode == null)  {
+            final MethodCallExpression registerMethodCall = new MethodCallExpression(new ClassExpression(switchboardClassNode), "register", new ArgumentListExpression(new ConstantExpression(type.getName()), new ConstantExpression(assertionType)));
+            registerMethodCall.setMethodTarget(switchboardClassNode.getMethod("register", new Parameter[] { new Parameter(ClassHelper.STRING_TYPE, "className"), new Parameter(ClassHelper.STRING_TYPE, "kind") }));
+
+            fieldNode = type.addField(CONTRACT_SWITCH_PREFIX + assertionType, Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_SYNTHETIC | Opcodes.ACC_FINAL, ClassHelper.makeWithoutCaching(MethodHandle.class), registerMethodCall);
+            fieldNode.setSynthetic(true);
+
+            contractSwitches.put(assertionType, fieldNode);
+        }
+
+        final MethodCallExpression isEnabledMethodCall = new MethodCallExpression(new ClassExpression(switchboardClassNode), "isEnabled", new ArgumentListExpression(new FieldExpression(fieldNode)));
+        isEnabledMethodCall.setMethodTarget(switchboardClassNode.getMethod("isEnabled", new Parameter[] { new Parameter(ClassHelper.makeWithoutCaching(MethodHandle.class), "switchHandle") }));
+
+        return isEnabledMethodCall;
+    }
+
+    /**
+     * Creates the check whether the given contract site is evaluated on the current call: contract elements of the
+     * given assertion type must be enabled and the {@link ContractSampler} must select the call. Methods tracked by
+     * {@link OutermostCallGenerationUtility} only check their contracts on the outermost call.
+     *
+     * @param type the {@link org.codehaus.groovy.ast.ClassNode} declaring the given <tt>methodNode</tt>
+     * @param methodNode the {@link org.codehaus.groovy.ast.MethodNode} the assertion belongs to
+     * @param assertionType the assertion type, e.g. <tt>precondition</tt>
+     *
+     * @return a boolean {@link org.codehaus.groovy.ast.expr.Expression}
+     */
+    protected Expression getContractGuard(final ClassNode type, final MethodNode methodNode, final String assertionType)  {
+        final ClassNode contractSamplerClassNode = ClassHelper.makeWithoutCaching(ContractSampler.class);
+
+        final MethodCallExpression sampleMethodCall = new MethodCallExpression(new ClassExpression(contractSamplerClassNode), "sample", new ArgumentListExpression(getContractSiteId(type, methodNode, assertionType)));
+        sampleMethodCall.setMethodTarget(contractSamplerClassNode.getMethod("sample", new Parameter[] { new Parameter(ClassHelper.int_TYPE, "siteId") }));
+
+        final Expression contractGuard = new BinaryExpression(isContractEnabled(type, assertionType), Token.newSymbol(Types.LOGICAL_AND, -1, -1), sampleMethodCall);
+
+        final VariableExpression outermostCall = OutermostCallGenerationUtility.getOutermostCall(methodNode);
+        if (outermostCall == null) return contractGuard;
+
+        return new BinaryExpression(outermostCall, Token.newSymbol(Types.LOGICAL_AND, -1, -1), contractGuard);
+    }
 
+    private MethodCallExpression callViolationTracker(final String methodName, final Expression... arguments)  {
         final ClassNode violationTrackerClassNode = ClassHelper.makeWithoutCaching(ViolationTracker.class);
+
+        final Parameter[] parameters = arguments.length == 0 ? Parameter.EMPTY_ARRAY : new Parameter[] { new Parameter(ClassHelper.int_TYPE, "mark") };
+
+        final MethodCallExpression methodCallExpression = new MethodCallExpression(new ClassExpression(violationTrackerClassNode), methodName, new ArgumentListExpression(arguments));
+        methodCallExpression.setMethodTarget(violationTrackerClassNode.getMethod(methodName, parameters));
+
+        return methodCallExpression;
+    }
+
+    private MethodCallExpression callContractMetricsRecorder(final String methodName, final Expression... arguments)  {
+        final ClassNode contractMetricsRecorderClassNode = ClassHelper.makeWithoutCaching(ContractMetricsRecorder.class);
+
+        final Parameter[] parameters = arguments.length == 0 ? Parameter.EMPTY_ARRAY : new Parameter[] {
+                new Parameter(ClassHelper.int_TYPE, "siteId"),
+                new Parameter(ClassHelper.STRING_TYPE, "assertionType"),
+                new Parameter(ClassHelper.long_TYPE, "start"),
+                new Parameter(ClassHelper.boolean_TYPE, "satisfied") };
+
+        final MethodCallExpression methodCallExpression = new MethodCallExpression(new ClassExpression(contractMetricsRecorderClassNode), methodName, new ArgumentListExpression(arguments));
+        methodCallExpression.setMethodTarget(contractMetricsRecorderClassNode.getMethod(methodName, parameters));
+
+        return methodCallExpression;
+    }
+
+    private MethodCallExpression callContractExecutionTracker(final String methodName, final Expression contractSiteId)  {
+        final ClassNode contractExecutionTrackerClassNode = ClassHelper.makeWithoutCaching(ContractExecutionTracker.class);
+
+        final MethodCallExpression methodCallExpression = new MethodCallExpression(new ClassExpression(contractExecutionTrackerClassNode), methodName, new ArgumentListExpression(contractSiteId));
+        methodCallExpression.setMethodTarget(contractExecutionTrackerClassNode.getMethod(methodName, new Parameter[] { new Parameter(ClassHelper.int_TYPE, "siteId") }));
+
+        return methodCallExpression;
+    }
+
+    protected BlockStatement wrapAssertionBooleanExpression(ClassNode type, MethodNode methodNode, BooleanExpression classInvariantExpression, String assertionType) {
+
         final VariableExpression $_gc_result = new VariableExpression("$_gc_result", ClassHelper.boolean_TYPE);
         $_gc_result.setAccessedVariable($_gc_result);
 
+        final VariableExpression $_gc_violations = new VariableExpression("$_gc_violations", ClassHelper.int_TYPE);
+        $_gc_violations.setAccessedVariable($_gc_violations);
+
+        final FieldExpression contractSiteId = getContractSiteId(type, methodNode, assertionType);
+
         final BlockStatement assertBlockStatement = new BlockStatement();
         final TryCatchStatement lockTryCatchStatement = new TryCatchStatement(assertBlockStatement, new BlockStatement(Arrays.<Statement>asList(
-                new ExpressionStatement(new MethodCallExpression(new ClassExpression(ClassHelper.make(ContractExecutionTracker.class)), "clear", new ArgumentListExpression(Arrays.<Expression>asList(new ConstantExpression(type.getName()), new ConstantExpression(methodNode.getTypeDescriptor()), new ConstantExpression(assertionType), methodNode.isStatic() ? ConstantExpression.TRUE : ConstantExpression.FALSE))))
+                new ExpressionStatement(callContractExecutionTracker("clear", contractSiteId))
         ), new VariableScope()));
         final BlockStatement ifBlockStatement = new BlockStatement();
 
         assertBlockStatement.addStatement(new IfStatement(new BooleanExpression(
-                new MethodCallExpression(new ClassExpression(ClassHelper.make(ContractExecutionTracker.class)), "track", new ArgumentListExpression(Arrays.<Expression>asList(new ConstantExpression(type.getName()), new ConstantExpression(methodNode.getTypeDescriptor()), new ConstantExpression(assertionType), methodNode.isStatic() ? ConstantExpression.TRUE : ConstantExpression.FALSE)))),
+                callContractExecutionTracker("track", contractSiteId)),
                 ifBlockStatement,
                 EmptyStatement.INSTANCE
         ));
 
-
         ifBlockStatement.addStatement(new ExpressionStatement(new DeclarationExpression($_gc_result, Token.newSymbol(Types.ASSIGN, -1, -1), ConstantExpression.FALSE)));
-        ifBlockStatement.addStatement(new ExpressionStatement(
-                new MethodCallExpression(new ClassExpression(violationTrackerClassNode), "init", ArgumentListExpression.EMPTY_ARGUMENTS))
-        );
+        ifBlockStatement.addStatement(new ExpressionStatement(new DeclarationExpression($_gc_violations, Token.newSymbol(Types.ASSIGN, -1, -1), callViolationTracker("begin"))));
 
-        ifBlockStatement.addStatement(
+        final VariableExpression $_gc_start = new VariableExpression("$_gc_start", ClassHelper.long_TYPE);
+        $_gc_start.setAccessedVariable($_gc_start);
+
+        ifBlockStatement.addStatement(new ExpressionStatement(new DeclarationExpression($_gc_start, Token.newSymbol(Types.ASSIGN, -1, -1), callContractMetricsRecorder("start"))));
+
+        final BlockStatement trackedBlockStatement = new BlockStatement();
+        trackedBlockStatement.addStatement(
                 new ExpressionStatement(new BinaryExpression($_gc_result,
                         Token.newSymbol(Types.ASSIGN, -1, -1),
                         classInvariantExpression
                 )
                 ));
 
-        BlockStatement finallyBlockStatement = new BlockStatement();
-        finallyBlockStatement.addStatement(new ExpressionStatement(new MethodCallExpression(new ClassExpression(violationTrackerClassNode), "deinit", ArgumentListExpression.EMPTY_ARGUMENTS)));
-
-        ifBlockStatement.addStatement(
+        trackedBlockStatement.addStatement(
                 new IfStatement(
                         new BooleanExpression(
-                            new NotExpression(new MethodCallExpression($_gc_result, "booleanValue", ArgumentListExpression.EMPTY_ARGUMENTS))
+                                new BinaryExpression(
+                                        new NotExpression($_gc_result),
+                                        Token.newSymbol(Types.LOGICAL_AND, -1, -1),
+                                        callViolationTracker("violationsOccured", $_gc_violations))
                         ),
-
-                        new IfStatement(
-                                new BooleanExpression(
-                                        new MethodCallExpression(new ClassExpression(violationTrackerClassNode), "violationsOccured", ArgumentListExpression.EMPTY_ARGUMENTS)), new TryCatchStatement(
-                                new ExpressionStatement(new MethodCallExpression(new ClassExpression(violationTrackerClassNode), "rethrowFirst", ArgumentListExpression.EMPTY_ARGUMENTS)),
-                                finallyBlockStatement
-                        ), EmptyStatement.INSTANCE)
-                        ,
+                        new ExpressionStatement(callViolationTracker("rethrowFirst", $_gc_violations)),
                         EmptyStatement.INSTANCE
                 )
         );
 
+        // the tracking scope is always closed, violations of passing checks are discarded
+        ifBlockStatement.addStatement(new TryCatchStatement(trackedBlockStatement, new BlockStatement(Arrays.<Statement>asList(
+                new ExpressionStatement(callViolationTracker("end", $_gc_violations)),
+                new ExpressionStatement(callContractMetricsRecorder("record", contractSiteId, new ConstantExpression(assertionType), $_gc_start, $_gc_result))
+        ), new VariableScope())));
+
         final BlockStatement blockStatement = new BlockStatement();
-        blockStatement.addStatement(new IfStatement(new BooleanExpression(new VariableExpression(BaseVisitor.GCONTRACTS_ENABLED_VAR, ClassHelper.boolean_TYPE)), lockTryCatchStatement, EmptyStatement.INSTANCE));
+        blockStatement.addStatement(new IfStatement(new BooleanExpression(getContractGuard(type, methodNode, assertionType)), lockTryCatchStatement, EmptyStatement.INSTANCE));
 
         return blockStatement;
     }
@@ -156,49 +310,28 @@ public abstract class BaseGenerator {
             return booleanExpression;
         }
 
-        for (AnnotationNode nextContractElementAnnotation : nextContractElementAnnotations)  {
-            ClassExpression classExpression = (ClassExpression) nextContractElementAnnotation.getMember(BaseVisitor.CLOSURE_ATTRIBUTE_NAME);
-            if (classExpression == null) continue;
-
-            ArgumentListExpression callArgumentList = new ArgumentListExpression();
-            for (Parameter parameter : methodNode.getParameters())  {
-                callArgumentList.addExpression(new VariableExpression(parameter));
-            }
+        // heirs call the contract method of their ancestor, if it does not provide one the closures are evaluated directly
+        final MethodNode nextContractElementMethodNode = AnnotationUtils.getMethodNodeInHierarchyWithMetaAnnotation(type.getSuperClass(), methodNode, ClassHelper.makeWithoutCaching(annotationType));
+        final MethodNode contractMethodNode = ContractMethodGenerationUtility.getContractMethod(nextContractElementMethodNode.getDeclaringClass(), nextContractElementMethodNode, isPostcondition);
+        if (contractMethodNode != null)  {
+            final MethodCallExpression contractMethodCall = ContractMethodGenerationUtility.callContractMethod(contractMethodNode, getContractArguments(methodNode, isPostcondition));
 
-            if (isPostcondition && methodNode.getReturnType() != ClassHelper.VOID_TYPE && !(methodNode instanceof ConstructorNode))  {
-                VariableExpression variableExpression = new VariableExpression("result", methodNode.getReturnType());
-                variableExpression.setAccessedVariable(variableExpression);
+            final BooleanExpression rightExpression = new BooleanExpression(contractMethodCall);
+            booleanExpression.setSourcePosition(nextContractElementAnnotations.get(0));
 
-                callArgumentList.addExpression(variableExpression);
-            }
-
-            if (isPostcondition && !(methodNode instanceof ConstructorNode)) {
-                VariableExpression variableExpression = new VariableExpression("old", new ClassNode(Map.class));
-                variableExpression.setAccessedVariable(variableExpression);
-
-                callArgumentList.addExpression(variableExpression);
-            }
-
-            ArgumentListExpression newInstanceArguments = new ArgumentListExpression(
-                    classExpression,
-                    new ArrayExpression(
-                            ClassHelper.DYNAMIC_TYPE,
-                            Arrays.<Expression>asList(VariableExpression.THIS_EXPRESSION, VariableExpression.THIS_EXPRESSION)
-                    )
+            return new BooleanExpression(
+                    new BinaryExpression(
+                            booleanExpression,
+                            isPostcondition ? Token.newSymbol(Types.LOGICAL_AND, -1, -1) : Token.newSymbol(Types.LOGICAL_OR, -1, -1),
+                            rightExpression)
             );
+        }
 
-            StaticMethodCallExpression methodCallExpression = new StaticMethodCallExpression(
-                    ClassHelper.makeWithoutCaching(InvokerHelper.class),
-                    "invokeConstructorOf",
-                    newInstanceArguments
-            );
+        for (AnnotationNode nextContractElementAnnotation : nextContractElementAnnotations)  {
+            ClassExpression classExpression = (ClassExpression) nextContractElementAnnotation.getMember(BaseVisitor.CLOSURE_ATTRIBUTE_NAME);
+            if (classExpression == null) continue;
 
-            MethodCallExpression doCall = new MethodCallExpression(
-                    methodCallExpression,
-                    "doCall",
-                    callArgumentList
-            );
-            doCall.setMethodTarget(classExpression.getType().getMethods("doCall").get(0));
+            MethodCallExpression doCall = ClosureInstanceGenerationUtility.doCall(type, classExpression.getType(), methodNode.isStatic(), getContractArguments(methodNode, isPostcondition));
 
             final BooleanExpression rightExpression = new BooleanExpression(doCall);
             booleanExpression.setSourcePosition(nextContractElementAnnotation);
@@ -213,4 +346,27 @@ public abstract class BaseGenerator {
 
         return booleanExpression;
     }
+
+    private ArgumentListExpression getContractArguments(final MethodNode methodNode, final boolean isPostcondition)  {
+        ArgumentListExpression callArgumentList = new ArgumentListExpression();
+        for (Parameter parameter : methodNode.getParameters())  {
+            callArgumentList.addExpression(new VariableExpression(parameter));
+        }
+
+        if (isPostcondition && methodNode.getReturnType() != ClassHelper.VOID_TYPE && !(methodNode instanceof ConstructorNode))  {
+            VariableExpression variableExpression = new VariableExpression("result", methodNode.getReturnType());
+            variableExpression.setAccessedVariable(variableExpression);
+
+            callArgumentList.addExpression(variableExpression);
+        }
+
+        if (isPostcondition && !(methodNode instanceof ConstructorNode)) {
+            VariableExpression variableExpression = new VariableExpression("old", new ClassNode(Map.class));
+            variableExpression.setAccessedVariable(variableExpression);
+
+            callArgumentList.addExpression(variableExpression);
+        }
+
+        return callArgumentList;
+    }
 }
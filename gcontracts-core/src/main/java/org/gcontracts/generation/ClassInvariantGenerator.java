@@ -25,7 +25,9 @@ package org.gcontracts.generation;
 import org.codehaus.groovy.ast.*;
 import org.codehaus.groovy.ast.expr.*;
 import org.codehaus.groovy.ast.stmt.BlockStatement;
+import org.codehaus.groovy.ast.stmt.EmptyStatement;
 import org.codehaus.groovy.ast.stmt.ExpressionStatement;
+import org.codehaus.groovy.ast.stmt.IfStatement;
 import org.codehaus.groovy.ast.stmt.ReturnStatement;
 import org.codehaus.groovy.ast.stmt.Statement;
 import org.codehaus.groovy.control.io.ReaderSource;
@@ -34,6 +36,7 @@ import org.codehaus.groovy.syntax.Types;
 import org.gcontracts.annotations.meta.ClassInvariant;
 import org.gcontracts.ast.visitor.BaseVisitor;
 import org.gcontracts.util.AnnotationUtils;
+import org.gcontracts.util.ExpressionUtils;
 import org.objectweb.asm.Opcodes;
 
 import java.lang.annotation.Annotation;
@@ -48,6 +51,8 @@ import java.util.List;
  */
 public class ClassInvariantGenerator extends BaseGenerator {
 
+    public static final String INVARIANT_CONDITION_PREFIX = "$_gc_invariant_condition_";
+
     public ClassInvariantGenerator(final ReaderSource source) {
         super(source);
     }
@@ -57,12 +62,20 @@ public class ClassInvariantGenerator extends BaseGenerator {
      * method holding this class invariant. This is used for heir calls to find out about inherited class
      * invariants.
      *
+     * The invariant method evaluates a second synthetic method returning the flattened condition of the class
+     * and all of its ancestors: its own invariant and a direct call of the nearest ancestor's condition method.
+     *
      * @param type the current {@link org.codehaus.groovy.ast.ClassNode}
      * @param classInvariant the {@link org.gcontracts.domain.ClassInvariant} the assertion statement should be generated from
      */
     public void generateInvariantAssertionStatement(final ClassNode type, final org.gcontracts.domain.ClassInvariant classInvariant)  {
 
-        BooleanExpression classInvariantExpression = addCallsToSuperAnnotationClosure(type, ClassInvariant.class, classInvariant.booleanExpression());
+        BooleanExpression classInvariantExpression = ExpressionUtils.fold(addCallsToSuperInvariant(type, classInvariant.booleanExpression()));
+        // without an invariant method no invariant checks are added to the methods of this class
+        if (ExpressionUtils.isConstant(classInvariantExpression, true)) return;
+
+        final MethodNode conditionMethodNode = type.addMethod(getInvariantConditionMethodName(type), Opcodes.ACC_PROTECTED | Opcodes.ACC_SYNTHETIC, ClassHelper.boolean_TYPE, Parameter.EMPTY_ARRAY, ClassNode.EMPTY_ARRAY, new ReturnStatement(classInvariantExpression));
+        conditionMethodNode.setSynthetic(true);
 
         final BlockStatement blockStatement = new BlockStatement();
 
@@ -70,7 +83,53 @@ public class ClassInvariantGenerator extends BaseGenerator {
         MethodNode methodNode = type.addMethod(getInvariantMethodName(type), Opcodes.ACC_PROTECTED | Opcodes.ACC_SYNTHETIC, ClassHelper.VOID_TYPE, Parameter.EMPTY_ARRAY, ClassNode.EMPTY_ARRAY, blockStatement);
         methodNode.setSynthetic(true);
 
-        blockStatement.addStatements(wrapAssertionBooleanExpression(type, methodNode, classInvariantExpression, "invariant").getStatements());
+        blockStatement.addStatements(wrapAssertionBooleanExpression(type, methodNode, new BooleanExpression(callInvariantConditionMethod(conditionMethodNode)), "invariant").getStatements());
+    }
+
+    /**
+     * @param classNode the {@link org.codehaus.groovy.ast.ClassNode} declaring the condition method
+     *
+     * @return the name of the synthetic method returning the flattened class invariant of the given <tt>classNode</tt>
+     */
+    public static String getInvariantConditionMethodName(final ClassNode classNode)  {
+        return INVARIANT_CONDITION_PREFIX + classNode.getName().replaceAll("\\.", "_");
+    }
+
+    private BooleanExpression addCallsToSuperInvariant(final ClassNode type, final BooleanExpression booleanExpression)  {
+
+        for (ClassNode ancestor = type.getSuperClass(); ancestor != null; ancestor = ancestor.getSuperClass())  {
+            final MethodNode conditionMethodNode = ancestor.getDeclaredMethod(getInvariantConditionMethodName(ancestor), Parameter.EMPTY_ARRAY);
+            if (conditionMethodNode != null)  {
+                return new BooleanExpression(
+                        new BinaryExpression(
+                                booleanExpression,
+                                Token.newSymbol(Types.LOGICAL_AND, -1, -1),
+                                new BooleanExpression(callInvariantConditionMethod(conditionMethodNode)))
+                );
+            }
+
+            // ancestors not transformed yet or compiled by earlier versions are evaluated by their closures
+            if (hasClassInvariantAnnotation(ancestor)) break;
+        }
+
+        return addCallsToSuperAnnotationClosure(type, ClassInvariant.class, booleanExpression);
+    }
+
+    private boolean hasClassInvariantAnnotation(final ClassNode classNode)  {
+        final ClassNode classInvariantClassNode = ClassHelper.makeWithoutCaching(ClassInvariant.class);
+        for (AnnotationNode annotationNode : classNode.getAnnotations())  {
+            if (!annotationNode.getClassNode().getAnnotations(classInvariantClassNode).isEmpty()) return true;
+        }
+
+        return false;
+    }
+
+    private MethodCallExpression callInvariantConditionMethod(final MethodNode conditionMethodNode)  {
+        final MethodCallExpression methodCallExpression = new MethodCallExpression(VariableExpression.THIS_EXPRESSION, conditionMethodNode.getName(), ArgumentListExpression.EMPTY_ARGUMENTS);
+        methodCallExpression.setImplicitThis(false);
+        methodCallExpression.setMethodTarget(conditionMethodNode);
+
+        return methodCallExpression;
     }
 
     private BooleanExpression addCallsToSuperAnnotationClosure(final ClassNode type, final Class<? extends Annotation> annotationType, BooleanExpression booleanExpression)  {
@@ -82,12 +141,7 @@ public class ClassInvariantGenerator extends BaseGenerator {
             ClassExpression classExpression = (ClassExpression) nextContractElementAnnotation.getMember(BaseVisitor.CLOSURE_ATTRIBUTE_NAME);
             if (classExpression == null) continue;
 
-            MethodCallExpression doCall = new MethodCallExpression(
-                    new ConstructorCallExpression(classExpression.getType(), new ArgumentListExpression(VariableExpression.THIS_EXPRESSION, VariableExpression.THIS_EXPRESSION)),
-                    "doCall",
-                    ArgumentListExpression.EMPTY_ARGUMENTS
-            );
-            doCall.setMethodTarget(classExpression.getType().getMethods("doCall").get(0));
+            MethodCallExpression doCall = ClosureInstanceGenerationUtility.doCall(type, classExpression.getType(), false, ArgumentListExpression.EMPTY_ARGUMENTS);
 
             final BooleanExpression rightExpression = new BooleanExpression(doCall);
             booleanExpression.setSourcePosition(nextContractElementAnnotation);
@@ -123,6 +177,12 @@ public class ClassInvariantGenerator extends BaseGenerator {
                 )
         );
 
+        // inner calls of methods tracked by OutermostCallGenerationUtility leave the invariant to the outermost call
+        final VariableExpression outermostCall = OutermostCallGenerationUtility.getOutermostCall(method);
+        if (outermostCall != null)  {
+            invariantMethodCall = new IfStatement(new BooleanExpression(outermostCall), invariantMethodCall, EmptyStatement.INSTANCE);
+        }
+
         final Statement statement = method.getCode();
         if (statement instanceof BlockStatement && method.getReturnType() != ClassHelper.VOID_TYPE && !(method instanceof ConstructorNode))  {
             final BlockStatement blockStatement = (BlockStatement) statement;
@@ -0,0 +1,181 @@
+/**
+ * Copyright (c) 2013, Andre Steingress
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1.) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 2.) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 3.) Neither the name of Andre Steingress nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.gcontracts.generation;
+
+import org.codehaus.groovy.ast.ClassCodeVisitorSupport;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.FieldNode;
+import org.codehaus.groovy.ast.MethodNode;
+import org.codehaus.groovy.ast.expr.*;
+import org.codehaus.groovy.control.SourceUnit;
+import org.codehaus.groovy.syntax.Token;
+import org.codehaus.groovy.syntax.Types;
+import org.gcontracts.util.ExpressionUtils;
+import org.objectweb.asm.Opcodes;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>Central place where calls to annotation closures are generated.</p>
+ *
+ * <p>Contract closures are stateless, their instances are therefore cached in a synthetic field of the class
+ * evaluating the contract. Instance methods use a transient instance field, static methods a static field. The
+ * closure is created on first use, every subsequent contract check only loads the field and calls
+ * <tt>doCall</tt> directly.</p>
+ *
+ * @author ast
+ */
+public final class ClosureInstanceGenerationUtility {
+
+    public static final String CLOSURE_INSTANCE_FIELD_PREFIX = "$_gc_closure_";
+    public static final String META_DATA_CLOSURE_INSTANCE_FIELDS = "org.gcontracts.CLOSURE_INSTANCE_FIELDS";
+
+    private ClosureInstanceGenerationUtility() {}
+
+    /**
+     * Creates a direct <tt>doCall</tt> call on the cached instance of the given closure class, or a direct call of
+     * its contract body method if the closure has been statically compiled, see {@link StaticContractGenerationUtility}.
+     *
+     * @param type the {@link org.codehaus.groovy.ast.ClassNode} the contract is evaluated in
+     * @param closureClassNode the annotation closure's {@link org.codehaus.groovy.ast.ClassNode}
+     * @param isStatic whether the contract is evaluated in a static context
+     * @param arguments the <tt>doCall</tt> arguments
+     *
+     * @return the {@link org.codehaus.groovy.ast.expr.MethodCallExpression} calling the annotation closure
+     */
+    public static MethodCallExpression doCall(final ClassNode type, final ClassNode closureClassNode, final boolean isStatic, final ArgumentListExpression arguments)  {
+        final MethodNode contractBodyMethod = StaticContractGenerationUtility.getContractBodyMethod(closureClassNode);
+
+        final MethodCallExpression doCall;
+        if (contractBodyMethod != null && type.isDerivedFrom(contractBodyMethod.getDeclaringClass()))  {
+            // statically compiled contracts are evaluated without the closure instance
+            doCall = new MethodCallExpression(
+                    contractBodyMethod.isStatic() ? new ClassExpression(contractBodyMethod.getDeclaringClass()) : VariableExpression.THIS_EXPRESSION,
+                    contractBodyMethod.getName(),
+                    arguments
+            );
+            doCall.setImplicitThis(false);
+            doCall.setMethodTarget(contractBodyMethod);
+        } else {
+            doCall = new MethodCallExpression(
+                    cachedClosureInstance(type, closureClassNode, isStatic),
+                    "doCall",
+                    arguments
+            );
+            doCall.setMethodTarget(closureClassNode.getMethods("doCall").get(0));
+        }
+
+        if (closureClassNode.getNodeMetaData(ExpressionUtils.META_DATA_CONSTANT_VALUE) != null)  {
+            doCall.setNodeMetaData(ExpressionUtils.META_DATA_CONSTANT_VALUE, closureClassNode.getNodeMetaData(ExpressionUtils.META_DATA_CONSTANT_VALUE));
+        }
+
+        return doCall;
+    }
+
+    /**
+     * Returns an expression evaluating to the cached instance of the given closure class, the
+     * instance is created on first use.
+     *
+     * @param type the {@link org.codehaus.groovy.ast.ClassNode} the contract is evaluated in
+     * @param closureClassNode the annotation closure's {@link org.codehaus.groovy.ast.ClassNode}
+     * @param isStatic whether the contract is evaluated in a static context
+     *
+     * @return <tt>field != null ? field : (field = new Closure(this, this))</tt>
+     */
+    public static Expression cachedClosureInstance(final ClassNode type, final ClassNode closureClassNode, final boolean isStatic)  {
+        final FieldNode fieldNode = getClosureInstanceField(type, closureClassNode, isStatic);
+
+        return new TernaryExpression(
+                new BooleanExpression(new BinaryExpression(new FieldExpression(fieldNode), Token.newSymbol(Types.COMPARE_NOT_EQUAL, -1, -1), ConstantExpression.NULL)),
+                new FieldExpression(fieldNode),
+                new BinaryExpression(
+                        new FieldExpression(fieldNode),
+                        Token.newSymbol(Types.ASSIGN, -1, -1),
+                        new ConstructorCallExpression(closureClassNode, new ArgumentListExpression(VariableExpression.THIS_EXPRESSION, VariableExpression.THIS_EXPRESSION)))
+        );
+    }
+
+    /**
+     * Removes closure instance fields which are not referenced by generated code, e.g. because the contract
+     * was inlined.
+     *
+     * @param type the {@link org.codehaus.groovy.ast.ClassNode} the contracts were generated for
+     */
+    public static void removeUnusedClosureInstanceFields(final ClassNode type)  {
+        final Map<String, FieldNode> closureInstanceFields = type.getNodeMetaData(META_DATA_CLOSURE_INSTANCE_FIELDS);
+        if (closureInstanceFields == null || closureInstanceFields.isEmpty()) return;
+
+        final Set<String> referencedFieldNames = new HashSet<String>();
+        final ClassCodeVisitorSupport fieldReferenceVisitor = new ClassCodeVisitorSupport() {
+            @Override
+            protected SourceUnit getSourceUnit() {
+                return null;
+            }
+
+            @Override
+            public void visitFieldExpression(FieldExpression expression) {
+                referencedFieldNames.add(expression.getFieldName());
+                super.visitFieldExpression(expression);
+            }
+        };
+        fieldReferenceVisitor.visitClass(type);
+
+        for (Iterator<FieldNode> it = closureInstanceFields.values().iterator(); it.hasNext();)  {
+            final FieldNode fieldNode = it.next();
+            if (referencedFieldNames.contains(fieldNode.getName())) continue;
+
+            type.removeField(fieldNode.getName());
+            it.remove();
+        }
+    }
+
+    private static FieldNode getClosureInstanceField(final ClassNode type, final ClassNode closureClassNode, final boolean isStatic)  {
+        Map<String, FieldNode> closureInstanceFields = type.getNodeMetaData(META_DATA_CLOSURE_INSTANCE_FIELDS);
+        if (closureInstanceFields == null)  {
+            closureInstanceFields = new HashMap<String, FieldNode>();
+            type.setNodeMetaData(META_DATA_CLOSURE_INSTANCE_FIELDS, closureInstanceFields);
+        }
+
+        final String key = (isStatic ? "static " : "") + closureClassNode.getName();
+
+        FieldNode fieldNode = closureInstanceFields.get(key);
+        if (fieldNode == null)  {
+            // volatile guarantees other threads never see a partially constructed closure
+            final int modifiers = Opcodes.ACC_PRIVATE | Opcodes.ACC_SYNTHETIC | Opcodes.ACC_VOLATILE | (isStatic ? Opcodes.ACC_STATIC : Opcodes.ACC_TRANSIENT);
+
+            int index = closureInstanceFields.size();
+            while (type.getDeclaredField(CLOSURE_INSTANCE_FIELD_PREFIX + index) != null) index++;
+
+            fieldNode = type.addField(CLOSURE_INSTANCE_FIELD_PREFIX + index, modifiers, closureClassNode.getPlainNodeReference(), null);
+            fieldNode.setSynthetic(true);
+
+            closureInstanceFields.put(key, fieldNode);
+        }
+
+        return fieldNode;
+    }
+}
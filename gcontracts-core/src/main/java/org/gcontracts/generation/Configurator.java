@@ -22,15 +22,28 @@
  */
 package org.gcontracts.generation;
 
+import org.gcontracts.util.ConfigurationProperties;
+
 import java.lang.management.ManagementFactory;
-import java.lang.management.RuntimeMXBean;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 
 /**
  * <p>Handles {@code -ea} and {@code -da} runtime input arguments for enabling and
  * disabling contract elements.</p>
  *
+ * <p>The arguments are read once, when the first contracted class is initialized, and stored in a trie of
+ * package name segments. Looking up a class name is a single walk along its segments.</p>
+ *
+ * <p>The arguments can also be given by the <tt>gcontracts.assertions</tt> system property, e.g.
+ * {@code -Dgcontracts.assertions=-da:org.example...,-ea:org.example.Account}. In that case the JVM input arguments
+ * are not read at all, which avoids loading the management classes during start-up.</p>
+ *
+ * <p>Each assertion kind can be disabled as a whole with the <tt>gcontracts.preconditions</tt>,
+ * <tt>gcontracts.postconditions</tt> and <tt>gcontracts.invariants</tt> properties, e.g.
+ * {@code -Dgcontracts.postconditions=false} keeps preconditions but neither evaluates postconditions nor stores
+ * their old values. All properties may be given in the configuration file as well, see
+ * {@link org.gcontracts.util.ConfigurationProperties}.</p>
+ *
  * @author ast
  */
 public final class Configurator {
@@ -42,42 +55,108 @@ public final class Configurator {
     public static final String ENABLE_PACKAGE_ASSERTIONS = ENABLED_ASSERTIONS + PACKAGE_PREFIX;
     public static final String DISABLE_PACKAGE_ASSERTIONS = DISABLED_ASSERTIONS + PACKAGE_PREFIX;
     public static final String PACKAGE_POSTFIX = "...";
-    
-    private static Map<String, Boolean> assertionConfiguration;
 
-    static {
-        initAssertionConfiguration();
+    public static final String ASSERTIONS_PROPERTY = "gcontracts.assertions";
+    public static final String PRECONDITIONS_PROPERTY = "gcontracts.preconditions";
+    public static final String POSTCONDITIONS_PROPERTY = "gcontracts.postconditions";
+    public static final String CLASS_INVARIANTS_PROPERTY = "gcontracts.invariants";
+
+    /**
+     * A node in the trie of package name segments. The root node holds the default configuration.
+     */
+    static final class AssertionConfiguration {
+        private Boolean enabled;
+        private Map<String, AssertionConfiguration> children;
+
+        AssertionConfiguration(Boolean enabled)  {
+            this.enabled = enabled;
+        }
+
+        private AssertionConfiguration child(String segment, boolean create)  {
+            AssertionConfiguration child = children != null ? children.get(segment) : null;
+            if (child == null && create)  {
+                if (children == null) children = new HashMap<String, AssertionConfiguration>(4);
+                child = new AssertionConfiguration(null);
+                children.put(segment, child);
+            }
+
+            return child;
+        }
+
+        void put(String name, boolean enabled)  {
+            AssertionConfiguration node = this;
+            int start = 0;
+            while (start <= name.length())  {
+                int end = name.indexOf('.', start);
+                if (end < 0) end = name.length();
+
+                node = node.child(name.substring(start, end), true);
+                start = end + 1;
+            }
+
+            node.enabled = enabled;
+        }
+
+        boolean isEnabled(String className)  {
+            // the default configuration
+            boolean result = enabled;
+
+            AssertionConfiguration node = this;
+            int start = 0;
+            while (start <= className.length())  {
+                int end = className.indexOf('.', start);
+                if (end < 0) end = className.length();
+
+                node = node.child(className.substring(start, end), false);
+                if (node == null) return result;
+
+                // the class name itself, or the deepest enclosing package configured
+                if (node.enabled != null) result = node.enabled;
+                start = end + 1;
+            }
+
+            return result;
+        }
+    }
+
+    private static final class AssertionConfigurationHolder {
+        static final AssertionConfiguration INSTANCE = parse(getAssertionArguments());
     }
 
-    private static void initAssertionConfiguration()  {
+    private static List<String> getAssertionArguments()  {
+        final String assertions = ConfigurationProperties.getProperty(ASSERTIONS_PROPERTY);
+        if (assertions != null) return Arrays.asList(assertions.trim().split("\\s*,\\s*"));
+
+        return ManagementFactory.getRuntimeMXBean().getInputArguments();
+    }
 
-        assertionConfiguration = new HashMap<String, Boolean>();
+    static AssertionConfiguration parse(List<String> args)  {
         // per default assertion are enabled (Groovy like)
-        assertionConfiguration.put(null, Boolean.TRUE);
+        final AssertionConfiguration assertionConfiguration = new AssertionConfiguration(Boolean.TRUE);
 
-        RuntimeMXBean runtimemxBean = ManagementFactory.getRuntimeMXBean();
-        for (String arg : runtimemxBean.getInputArguments())  {
+        for (String arg : args)  {
             if (DISABLED_ASSERTIONS.equals(arg))  {
-                assertionConfiguration.put(null, Boolean.FALSE);
+                assertionConfiguration.enabled = Boolean.FALSE;
 
             } else if (arg.startsWith(ENABLE_PACKAGE_ASSERTIONS) && arg.endsWith(PACKAGE_POSTFIX))  {
                 final String packageName = arg.substring(ENABLE_PACKAGE_ASSERTIONS.length(), arg.length() - PACKAGE_POSTFIX.length());
-                assertionConfiguration.put(packageName, Boolean.TRUE);
+                assertionConfiguration.put(packageName, true);
 
             } else if (arg.startsWith(DISABLE_PACKAGE_ASSERTIONS) && arg.endsWith(PACKAGE_POSTFIX))  {
                 final String packageName = arg.substring(DISABLE_PACKAGE_ASSERTIONS.length(), arg.length() - PACKAGE_POSTFIX.length());
+                assertionConfiguration.put(packageName, false);
 
-                assertionConfiguration.put(packageName, Boolean.FALSE);
             } else if (arg.startsWith(ENABLE_PACKAGE_ASSERTIONS))  {
                 final String className = arg.substring(ENABLE_PACKAGE_ASSERTIONS.length(), arg.length());
-                assertionConfiguration.put(className, Boolean.TRUE);
+                assertionConfiguration.put(className, true);
 
             } else if (arg.startsWith(DISABLE_PACKAGE_ASSERTIONS))  {
                 final String className = arg.substring(DISABLE_PACKAGE_ASSERTIONS.length(), arg.length());
-
-                assertionConfiguration.put(className, Boolean.FALSE);
+                assertionConfiguration.put(className, false);
             }
         }
+
+        return assertionConfiguration;
     }
 
     /**
@@ -87,26 +166,31 @@ public final class Configurator {
      * @return whether assertion checking is enabled or not
      */
     public static boolean checkAssertionsEnabled(final String className)  {
-        return internalMethod(className);
-    }
-
-    private static boolean internalMethod(String className) {
         if (className == null || className.length() == 0) return false;
 
-        if (assertionConfiguration.containsKey(className)) return assertionConfiguration.get(className);
-        if (className.lastIndexOf('.') < 0) return assertionConfiguration.get(null);
-
-        String packageName = className.substring(0, className.lastIndexOf('.'));
-
-        while (!assertionConfiguration.containsKey(packageName))  {
-            int dotIndex = packageName.lastIndexOf('.');
-            if (dotIndex < 0) return assertionConfiguration.get(null);
+        return AssertionConfigurationHolder.INSTANCE.isEnabled(className);
+    }
 
-            packageName = packageName.substring(0, dotIndex);
-        }
+    /**
+     * Checks whether assertions of the given kind have been disabled for the current class or not.
+     *
+     * @param className the class name to look up in the assertion configuration
+     * @param kind the assertion kind, e.g. {@link Switchboard#POSTCONDITION}
+     * @return whether assertion checking is enabled or not
+     */
+    public static boolean checkAssertionsEnabled(final String className, final String kind)  {
+        return isAssertionKindEnabled(kind) && checkAssertionsEnabled(className);
+    }
 
-        if (assertionConfiguration.containsKey(packageName)) return assertionConfiguration.get(packageName);
+    /**
+     * @param kind the assertion kind, e.g. {@link Switchboard#POSTCONDITION}
+     * @return whether assertions of the given kind are enabled at all
+     */
+    public static boolean isAssertionKindEnabled(final String kind)  {
+        if (Switchboard.PRECONDITION.equals(kind)) return ConfigurationProperties.getBoolean(PRECONDITIONS_PROPERTY, true);
+        if (Switchboard.POSTCONDITION.equals(kind)) return ConfigurationProperties.getBoolean(POSTCONDITIONS_PROPERTY, true);
+        if (Switchboard.CLASS_INVARIANT.equals(kind)) return ConfigurationProperties.getBoolean(CLASS_INVARIANTS_PROPERTY, true);
 
-        return assertionConfiguration.get(null);
+        return true;
     }
 }
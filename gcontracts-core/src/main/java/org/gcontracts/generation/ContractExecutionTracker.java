@@ -22,7 +22,10 @@
  */
 package org.gcontracts.generation;
 
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Keeps track of contract executions to avoid cyclic contract checks.
@@ -44,6 +47,11 @@ public class ContractExecutionTracker {
             this.isStatic = isStatic;
         }
 
+        public String getClassName() { return className; }
+        public String getMethodIdentifier() { return methodIdentifier; }
+        public String getAssertionType() { return assertionType; }
+        public boolean isStatic() { return isStatic; }
+
         @Override
         public boolean equals(Object o) {
             if (this == o) return true;
@@ -72,31 +80,89 @@ public class ContractExecutionTracker {
     }
 
 
-    static class ContractExecutionThreadLocal extends ThreadLocal<HashSet<ContractExecution>> {
+    /**
+     * Per-thread set of the contract sites currently being evaluated, indexed by site id.
+     */
+    static final class ContractExecutionBitSet {
+
+        private long[] words = new long[1];
+
+        boolean add(int siteId)  {
+            final int index = siteId >>> 6;
+            if (index >= words.length) words = Arrays.copyOf(words, Math.max(index + 1, words.length << 1));
+
+            final long mask = 1L << siteId;
+            if ((words[index] & mask) != 0) return false;
+
+            words[index] |= mask;
+            return true;
+        }
+
+        void remove(int siteId)  {
+            final int index = siteId >>> 6;
+            if (index < words.length) words[index] &= ~(1L << siteId);
+        }
+    }
+
+    static class ContractExecutionThreadLocal extends ThreadLocal<ContractExecutionBitSet> {
 
         @Override
-        protected HashSet<ContractExecution> initialValue() {
-            return new HashSet<ContractExecution>();
+        protected ContractExecutionBitSet initialValue() {
+            return new ContractExecutionBitSet();
         }
     }
 
-    private static ThreadLocal<HashSet<ContractExecution>> executions = new ContractExecutionThreadLocal();
+    private static final ThreadLocal<ContractExecutionBitSet> executions = new ContractExecutionThreadLocal();
 
-    public static boolean track(String className, String methodIdentifier, String assertionType, boolean isStatic)  {
+    private static final ConcurrentHashMap<ContractExecution, Integer> siteIds = new ConcurrentHashMap<ContractExecution, Integer>();
+    private static final List<ContractExecution> sites = new CopyOnWriteArrayList<ContractExecution>();
+
+    /**
+     * Interns the given contract site. Generated code calls this method once per site during class
+     * initialization and keeps the returned id in a static final field, {@link #track(int)} and
+     * {@link #clear(int)} are then called with that id.
+     *
+     * @return the id of the given contract site, the same site always results in the same id
+     */
+    public static int register(String className, String methodIdentifier, String assertionType, boolean isStatic)  {
         final ContractExecution ce = new ContractExecution(className, methodIdentifier, assertionType, isStatic);
-        final HashSet<ContractExecution> contractExecutions = executions.get();
 
-        if (!contractExecutions.contains(ce))  {
-            contractExecutions.add(ce);
-            return true;
+        final Integer siteId = siteIds.get(ce);
+        if (siteId != null) return siteId;
+
+        synchronized (siteIds)  {
+            final Integer existingSiteId = siteIds.get(ce);
+            if (existingSiteId != null) return existingSiteId;
+
+            final int newSiteId = siteIds.size();
+            sites.add(ce);
+            siteIds.put(ce, newSiteId);
+
+            return newSiteId;
         }
+    }
 
-        return false;
+    /**
+     * @param siteId a site id returned by {@link #register(String, String, String, boolean)}
+     * @return the contract site of the given id
+     */
+    public static ContractExecution getContractExecution(int siteId)  {
+        return sites.get(siteId);
     }
 
-    public static void clear(String className, String methodIdentifier, String assertionType, boolean isStatic) {
-        final HashSet<ContractExecution> contractExecutions = executions.get();
+    public static boolean track(int siteId)  {
+        return executions.get().add(siteId);
+    }
 
-        contractExecutions.remove(new ContractExecution(className, methodIdentifier, assertionType, isStatic));
+    public static void clear(int siteId)  {
+        executions.get().remove(siteId);
+    }
+
+    public static boolean track(String className, String methodIdentifier, String assertionType, boolean isStatic)  {
+        return track(register(className, methodIdentifier, assertionType, isStatic));
+    }
+
+    public static void clear(String className, String methodIdentifier, String assertionType, boolean isStatic) {
+        clear(register(className, methodIdentifier, assertionType, isStatic));
     }
 }
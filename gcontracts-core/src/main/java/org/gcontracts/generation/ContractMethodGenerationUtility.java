@@ -0,0 +1,207 @@
+/**
+ * Copyright (c) 2013, Andre Steingress
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1.) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 2.) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 3.) Neither the name of Andre Steingress nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.gcontracts.generation;
+
+import org.codehaus.groovy.ast.*;
+import org.codehaus.groovy.ast.expr.*;
+import org.codehaus.groovy.ast.stmt.ReturnStatement;
+import org.codehaus.groovy.syntax.Token;
+import org.codehaus.groovy.syntax.Types;
+import org.gcontracts.annotations.meta.Postcondition;
+import org.gcontracts.annotations.meta.Precondition;
+import org.gcontracts.ast.visitor.BaseVisitor;
+import org.gcontracts.util.ExpressionUtils;
+import org.objectweb.asm.Opcodes;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Central place where contract methods are generated.</p>
+ *
+ * <p>A contract method evaluates all pre- or postcondition annotation closures of a single method. Heirs overriding
+ * that method call it directly, using <tt>INVOKESPECIAL</tt> on <tt>super</tt> for instance methods and
+ * <tt>INVOKESTATIC</tt> for static methods, instead of evaluating the closures of their ancestor by themselves.</p>
+ *
+ * <p>Contract methods are generated on demand for classes of the current compilation unit. Classes which have been
+ * compiled separately are only called through contract methods if they already declare them.</p>
+ *
+ * @author ast
+ */
+public final class ContractMethodGenerationUtility {
+
+    public static final String PRECONDITION_METHOD_PREFIX = "$_gc_precondition_";
+    public static final String POSTCONDITION_METHOD_PREFIX = "$_gc_postcondition_";
+
+    public static final String META_DATA_CONTRACT_METHODS = "org.gcontracts.CONTRACT_METHODS";
+
+    private ContractMethodGenerationUtility() {}
+
+    /**
+     * Finds the contract method of the given <tt>methodNode</tt> in the given <tt>type</tt>, generating it if
+     * <tt>type</tt> is part of the current compilation.
+     *
+     * @param type the {@link org.codehaus.groovy.ast.ClassNode} declaring the given <tt>methodNode</tt>
+     * @param methodNode the {@link org.codehaus.groovy.ast.MethodNode} whose contract is evaluated
+     * @param isPostcondition whether the postcondition or precondition contract method is requested
+     *
+     * @return the contract method or <tt>null</tt> if the given <tt>type</tt> does not provide one
+     */
+    public static MethodNode getContractMethod(final ClassNode type, final MethodNode methodNode, final boolean isPostcondition)  {
+        if (methodNode instanceof ConstructorNode) return null;
+
+        if (type.isPrimaryClassNode() && type.getModule() != null && !type.isInterface())  {
+            return addContractMethod(type, methodNode, isPostcondition);
+        }
+
+        return type.getDeclaredMethod(getContractMethodName(methodNode, isPostcondition), getContractMethodParameters(methodNode, isPostcondition));
+    }
+
+    /**
+     * Regenerates all contract methods of the given <tt>type</tt>, e.g. after further annotations
+     * have been added to the contracted methods.
+     *
+     * @param type the {@link org.codehaus.groovy.ast.ClassNode} whose contract methods should be updated
+     */
+    public static void refreshContractMethods(final ClassNode type)  {
+        final Map<MethodNode, MethodNode> contractMethods = type.getNodeMetaData(META_DATA_CONTRACT_METHODS);
+        if (contractMethods == null) return;
+
+        for (Map.Entry<MethodNode, MethodNode> entry : contractMethods.entrySet())  {
+            final MethodNode contractMethod = entry.getKey();
+            contractMethod.setCode(createContractMethodCode(type, entry.getValue(), contractMethod));
+        }
+    }
+
+    /**
+     * Creates a direct call to the given contract method.
+     *
+     * @param contractMethod the contract method of an ancestor
+     * @param arguments the arguments of the contract method
+     *
+     * @return a {@link org.codehaus.groovy.ast.expr.MethodCallExpression} on <tt>super</tt> or, for static contract
+     * methods, on the declaring class
+     */
+    public static MethodCallExpression callContractMethod(final MethodNode contractMethod, final ArgumentListExpression arguments)  {
+        final Expression receiver = contractMethod.isStatic() ? new ClassExpression(contractMethod.getDeclaringClass()) : VariableExpression.SUPER_EXPRESSION;
+
+        final MethodCallExpression methodCallExpression = new MethodCallExpression(receiver, contractMethod.getName(), arguments);
+        methodCallExpression.setMethodTarget(contractMethod);
+        if (contractMethod.getNodeMetaData(ExpressionUtils.META_DATA_CONSTANT_VALUE) != null)  {
+            methodCallExpression.setNodeMetaData(ExpressionUtils.META_DATA_CONSTANT_VALUE, contractMethod.getNodeMetaData(ExpressionUtils.META_DATA_CONSTANT_VALUE));
+        }
+
+        return methodCallExpression;
+    }
+
+    public static String getContractMethodName(final MethodNode methodNode, final boolean isPostcondition)  {
+        return (isPostcondition ? POSTCONDITION_METHOD_PREFIX : PRECONDITION_METHOD_PREFIX) + methodNode.getName();
+    }
+
+    public static Parameter[] getContractMethodParameters(final MethodNode methodNode, final boolean isPostcondition)  {
+        final List<Parameter> parameters = new ArrayList<Parameter>();
+        for (Parameter parameter : methodNode.getParameters())  {
+            parameters.add(new Parameter(erasure(parameter.getType()), parameter.getName()));
+        }
+
+        if (isPostcondition && methodNode.getReturnType() != ClassHelper.VOID_TYPE)  {
+            parameters.add(new Parameter(erasure(methodNode.getReturnType()), "result"));
+        }
+
+        if (isPostcondition)  {
+            parameters.add(new Parameter(ClassHelper.MAP_TYPE.getPlainNodeReference(), "old"));
+        }
+
+        return parameters.toArray(new Parameter[parameters.size()]);
+    }
+
+    private static MethodNode addContractMethod(final ClassNode type, final MethodNode methodNode, final boolean isPostcondition)  {
+        final String contractMethodName = getContractMethodName(methodNode, isPostcondition);
+        final Parameter[] contractMethodParameters = getContractMethodParameters(methodNode, isPostcondition);
+
+        final MethodNode existingContractMethod = type.getDeclaredMethod(contractMethodName, contractMethodParameters);
+        if (existingContractMethod != null) return existingContractMethod;
+
+        final int modifiers = Opcodes.ACC_PROTECTED | Opcodes.ACC_SYNTHETIC | (methodNode.isStatic() ? Opcodes.ACC_STATIC : 0);
+
+        final MethodNode contractMethod = type.addMethod(contractMethodName, modifiers, ClassHelper.boolean_TYPE, contractMethodParameters, ClassNode.EMPTY_ARRAY, null);
+        contractMethod.setSynthetic(true);
+        contractMethod.setCode(createContractMethodCode(type, methodNode, contractMethod));
+
+        Map<MethodNode, MethodNode> contractMethods = type.getNodeMetaData(META_DATA_CONTRACT_METHODS);
+        if (contractMethods == null)  {
+            contractMethods = new LinkedHashMap<MethodNode, MethodNode>();
+            type.setNodeMetaData(META_DATA_CONTRACT_METHODS, contractMethods);
+        }
+        contractMethods.put(contractMethod, methodNode);
+
+        return contractMethod;
+    }
+
+    private static ReturnStatement createContractMethodCode(final ClassNode type, final MethodNode methodNode, final MethodNode contractMethod)  {
+        final boolean isPostcondition = contractMethod.getName().startsWith(POSTCONDITION_METHOD_PREFIX);
+        final ClassNode metaAnnotationClassNode = ClassHelper.makeWithoutCaching(isPostcondition ? Postcondition.class : Precondition.class);
+
+        Expression contractExpression = null;
+        for (AnnotationNode annotationNode : methodNode.getAnnotations())  {
+            if (annotationNode.getClassNode().getAnnotations(metaAnnotationClassNode).isEmpty()) continue;
+            if (!(annotationNode.getMember(BaseVisitor.CLOSURE_ATTRIBUTE_NAME) instanceof ClassExpression)) continue;
+
+            final ClassNode closureClassNode = annotationNode.getMember(BaseVisitor.CLOSURE_ATTRIBUTE_NAME).getType();
+            final ArgumentListExpression arguments = new ArgumentListExpression();
+            for (Parameter parameter : contractMethod.getParameters())  {
+                arguments.addExpression(new VariableExpression(parameter));
+            }
+
+            final Expression doCall = ClosureInstanceGenerationUtility.doCall(type, closureClassNode, methodNode.isStatic(), arguments);
+
+            contractExpression = contractExpression == null ? doCall : new BinaryExpression(
+                    contractExpression,
+                    isPostcondition ? Token.newSymbol(Types.LOGICAL_AND, -1, -1) : Token.newSymbol(Types.LOGICAL_OR, -1, -1),
+                    doCall);
+        }
+
+        // no annotation closure means no restriction, like the default pre- and postconditions
+        if (contractExpression == null)  {
+            contractMethod.removeNodeMetaData(ExpressionUtils.META_DATA_CONSTANT_VALUE);
+            return new ReturnStatement(new BooleanExpression(isPostcondition ? ConstantExpression.TRUE : ConstantExpression.FALSE));
+        }
+
+        // heirs may fold away calls to contract methods whose closures are all trivially true
+        final BooleanExpression foldedContractExpression = ExpressionUtils.fold(new BooleanExpression(contractExpression));
+        if (ExpressionUtils.isConstant(foldedContractExpression, true))  {
+            contractMethod.putNodeMetaData(ExpressionUtils.META_DATA_CONSTANT_VALUE, Boolean.TRUE);
+        } else {
+            contractMethod.removeNodeMetaData(ExpressionUtils.META_DATA_CONSTANT_VALUE);
+        }
+
+        return new ReturnStatement(foldedContractExpression);
+    }
+
+    private static ClassNode erasure(final ClassNode type)  {
+        if (type.isGenericsPlaceHolder()) return type.redirect().getPlainNodeReference();
+        return type.getPlainNodeReference();
+    }
+}
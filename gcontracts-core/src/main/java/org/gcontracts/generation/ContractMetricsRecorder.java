@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2013, Andre Steingress
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1.) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 2.) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 3.) Neither the name of Andre Steingress nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.gcontracts.generation;
+
+import org.gcontracts.common.impl.DefaultContractMetrics;
+import org.gcontracts.common.spi.ContractMetrics;
+import org.gcontracts.util.ConfigurationProperties;
+
+/**
+ * <p>Used within generated code to report contract evaluations to the configured {@link ContractMetrics}
+ * implementation.</p>
+ *
+ * <p>Metrics are disabled per default. {@link #ENABLED} is a constant, the JIT compiler removes the calls of
+ * {@link #start()} and {@link #record(int, String, long, boolean)} completely if no implementation has been
+ * configured.</p>
+ *
+ * @author ast
+ */
+public final class ContractMetricsRecorder {
+
+    public static final String METRICS_PROPERTY = "gcontracts.metrics";
+
+    private static final ContractMetrics METRICS = createContractMetrics(ConfigurationProperties.getProperty(METRICS_PROPERTY));
+
+    public static final boolean ENABLED = METRICS != null;
+
+    private ContractMetricsRecorder() {}
+
+    static ContractMetrics createContractMetrics(String value)  {
+        if (value == null || value.trim().length() == 0 || "false".equalsIgnoreCase(value.trim())) return null;
+        if ("true".equalsIgnoreCase(value.trim()))  {
+            final DefaultContractMetrics defaultContractMetrics = new DefaultContractMetrics();
+            defaultContractMetrics.registerMBean();
+
+            return defaultContractMetrics;
+        }
+
+        try {
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            if (classLoader == null) classLoader = ContractMetricsRecorder.class.getClassLoader();
+
+            return (ContractMetrics) Class.forName(value.trim(), true, classLoader).newInstance();
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not create contract metrics implementation " + value, e);
+        }
+    }
+
+    /**
+     * @return the configured {@link ContractMetrics} implementation or <tt>null</tt> if metrics are disabled
+     */
+    public static ContractMetrics getContractMetrics()  {
+        return METRICS;
+    }
+
+    /**
+     * @return the start time of a contract evaluation, <tt>0</tt> if metrics are disabled
+     */
+    public static long start()  {
+        if (!ENABLED) return 0L;
+
+        return System.nanoTime();
+    }
+
+    /**
+     * @param siteId the id of the evaluated contract site
+     * @param assertionType the assertion type, e.g. <tt>precondition</tt>
+     * @param start the value returned by {@link #start()}
+     * @param satisfied <tt>false</tt> if the evaluation resulted in a violation
+     */
+    public static void record(int siteId, String assertionType, long start, boolean satisfied)  {
+        if (!ENABLED) return;
+
+        METRICS.evaluated(siteId, assertionType, System.nanoTime() - start, satisfied);
+    }
+}
@@ -0,0 +1,166 @@
+/**
+ * Copyright (c) 2013, Andre Steingress
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1.) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 2.) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 3.) Neither the name of Andre Steingress nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.gcontracts.generation;
+
+import org.gcontracts.util.ConfigurationProperties;
+
+import java.util.Arrays;
+
+/**
+ * <p>Decides whether a contract site is evaluated on the current call. Per default every call is checked.</p>
+ *
+ * <p>In sampling mode each contract site only evaluates a fraction of its calls, either every n-th call or at most
+ * n calls per second, counted per thread. The mode is initialized from the <tt>gcontracts.sampling</tt> property,
+ * e.g. {@code -Dgcontracts.sampling=100} checks one in 100 calls and {@code -Dgcontracts.sampling=50/s} checks
+ * at most 50 calls per second, and can be changed at runtime.</p>
+ *
+ * <p>Postconditions are sampled before the method is executed, so their old values are only stored if the
+ * postcondition is going to be evaluated.</p>
+ *
+ * @author ast
+ */
+public final class ContractSampler {
+
+    public static final String SAMPLING_PROPERTY = "gcontracts.sampling";
+    public static final String PER_SECOND_POSTFIX = "/s";
+
+    // time windows of 2^30 nanoseconds, about a second
+    private static final int WINDOW_SHIFT = 30;
+
+    private static final class Sampling {
+        final int oneIn;
+        final int perSecond;
+
+        Sampling(int oneIn, int perSecond)  {
+            this.oneIn = oneIn;
+            this.perSecond = perSecond;
+        }
+    }
+
+    /**
+     * Per-thread call counters, indexed by contract site id.
+     */
+    static final class SiteCounters {
+        long[] counts = new long[16];
+        long[] windows = new long[16];
+
+        void ensureCapacity(int siteId)  {
+            if (siteId < counts.length) return;
+
+            final int length = Math.max(siteId + 1, counts.length << 1);
+            counts = Arrays.copyOf(counts, length);
+            windows = Arrays.copyOf(windows, length);
+        }
+    }
+
+    static class SiteCountersThreadLocal extends ThreadLocal<SiteCounters> {
+
+        @Override
+        protected SiteCounters initialValue() {
+            return new SiteCounters();
+        }
+    }
+
+    private static final ThreadLocal<SiteCounters> counters = new SiteCountersThreadLocal();
+
+    // null means every call is checked
+    private static volatile Sampling sampling = parse(ConfigurationProperties.getProperty(SAMPLING_PROPERTY));
+
+    private ContractSampler() {}
+
+    static Sampling parse(String value)  {
+        if (value == null || value.trim().length() == 0) return null;
+
+        value = value.trim();
+        try {
+            if (value.endsWith(PER_SECOND_POSTFIX))  {
+                return perSecond(Integer.parseInt(value.substring(0, value.length() - PER_SECOND_POSTFIX.length()).trim()));
+            }
+
+            return oneIn(Integer.parseInt(value));
+        } catch (NumberFormatException e)  {
+            throw new IllegalArgumentException("Invalid value of " + SAMPLING_PROPERTY + ": " + value, e);
+        }
+    }
+
+    private static Sampling oneIn(int n)  {
+        if (n < 1) throw new IllegalArgumentException("Sampling rate must be positive: " + n);
+        return n == 1 ? null : new Sampling(n, 0);
+    }
+
+    private static Sampling perSecond(int n)  {
+        if (n < 1) throw new IllegalArgumentException("Sampling rate must be positive: " + n);
+        return new Sampling(0, n);
+    }
+
+    /**
+     * Checks every n-th call of each contract site.
+     *
+     * @param n the sampling interval, <tt>1</tt> checks every call
+     */
+    public static void sampleOneIn(int n)  {
+        sampling = oneIn(n);
+    }
+
+    /**
+     * Checks at most n calls per second of each contract site and thread.
+     *
+     * @param n the maximum number of checks per second
+     */
+    public static void samplePerSecond(int n)  {
+        sampling = perSecond(n);
+    }
+
+    /**
+     * Checks every call, the default.
+     */
+    public static void sampleAll()  {
+        sampling = null;
+    }
+
+    /**
+     * Used within generated code to decide whether the given contract site is evaluated on the current call.
+     *
+     * @param siteId the site id returned by {@link ContractExecutionTracker#register(String, String, String, boolean)}
+     * @return whether the contract site should be evaluated or not
+     */
+    public static boolean sample(int siteId)  {
+        final Sampling current = sampling;
+        if (current == null) return true;
+
+        final SiteCounters siteCounters = counters.get();
+        siteCounters.ensureCapacity(siteId);
+
+        if (current.oneIn > 0)  {
+            return siteCounters.counts[siteId]++ % current.oneIn == 0;
+        }
+
+        final long window = System.nanoTime() >>> WINDOW_SHIFT;
+        if (siteCounters.windows[siteId] != window)  {
+            siteCounters.windows[siteId] = window;
+            siteCounters.counts[siteId] = 0;
+        }
+
+        return siteCounters.counts[siteId]++ < current.perSecond;
+    }
+}
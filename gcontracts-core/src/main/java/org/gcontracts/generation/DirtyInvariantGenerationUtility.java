@@ -0,0 +1,468 @@
+/**
+ * Copyright (c) 2013, Andre Steingress
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1.) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 2.) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 3.) Neither the name of Andre Steingress nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.gcontracts.generation;
+
+import org.codehaus.groovy.ast.*;
+import org.codehaus.groovy.ast.expr.*;
+import org.codehaus.groovy.ast.stmt.*;
+import org.codehaus.groovy.runtime.MetaClassHelper;
+import org.codehaus.groovy.syntax.Token;
+import org.codehaus.groovy.syntax.Types;
+import org.gcontracts.annotations.meta.ClassInvariant;
+import org.gcontracts.ast.visitor.BaseVisitor;
+import org.gcontracts.ast.visitor.DynamicSetterInjectionVisitor;
+import org.gcontracts.util.AnnotationUtils;
+import org.objectweb.asm.Opcodes;
+
+import java.util.*;
+
+/**
+ * <p>Skips class invariant checks of objects whose fields read by the invariant have not changed since the last
+ * check.</p>
+ *
+ * <p>If the class invariant only reads fields of the class, every instance gets a dirty bit, which is set before
+ * and after every statement writing one of these fields, including element writes of arrays, and by the generated
+ * setters. The invariant method is only evaluated if the bit is set, it is cleared once the invariant has been
+ * checked successfully. The bit is initially set, therefore every constructor still checks the invariant.</p>
+ *
+ * <p>Classes are only tracked if all fields read by the invariant are private or final and can only be written
+ * by the class itself. Invariants calling methods, reading properties of other objects or inherited fields,
+ * classes inheriting class invariants or having inner classes, and classes using tracked arrays other than by
+ * reading or writing their elements are checked on every call.</p>
+ *
+ * @author ast
+ */
+public final class DirtyInvariantGenerationUtility {
+
+    public static final String DIRTY_FIELD_NAME = "$_gc_invariant_dirty";
+
+    /**
+     * Node meta-data key of the fields read by an invariant annotation closure class.
+     */
+    public static final String META_DATA_READ_FIELDS = "org.gcontracts.INVARIANT_READ_FIELDS";
+
+    /**
+     * Node meta-data key of the dirty bit {@link org.codehaus.groovy.ast.FieldNode} on tracked fields.
+     */
+    public static final String META_DATA_DIRTY_FIELD = "org.gcontracts.INVARIANT_DIRTY_FIELD";
+
+    private DirtyInvariantGenerationUtility() {}
+
+    /**
+     * Adds the dirty bit to the given <tt>type</tt> if its class invariant only depends on its own fields.
+     *
+     * @param type the {@link org.codehaus.groovy.ast.ClassNode} whose invariant checks are tracked
+     */
+    public static void addDirtyTracking(final ClassNode type)  {
+        final MethodNode invariantMethod = BaseGenerator.getInvariantMethodNode(type);
+        if (invariantMethod == null || !(invariantMethod.getCode() instanceof BlockStatement)) return;
+
+        final Set<FieldNode> trackedFields = getTrackedFields(type);
+        if (trackedFields == null) return;
+
+        final WriteCollector writeCollector = new WriteCollector(type, trackedFields);
+        for (MethodNode methodNode : type.getMethods())  {
+            writeCollector.visitMethod(methodNode);
+        }
+        for (MethodNode constructorNode : type.getDeclaredConstructors())  {
+            writeCollector.visitMethod(constructorNode);
+        }
+        if (writeCollector.untrackedWrites) return;
+
+        final FieldNode dirtyField = type.addField(DIRTY_FIELD_NAME, Opcodes.ACC_PROTECTED | Opcodes.ACC_TRANSIENT | Opcodes.ACC_SYNTHETIC, ClassHelper.boolean_TYPE, ConstantExpression.TRUE);
+        dirtyField.setSynthetic(true);
+
+        for (FieldNode trackedField : trackedFields)  {
+            trackedField.putNodeMetaData(META_DATA_DIRTY_FIELD, dirtyField);
+        }
+
+        // nested invariant checks clear the bit, it is therefore set around every statement writing a tracked field
+        final DirtyMarker dirtyMarker = new DirtyMarker(type, trackedFields, dirtyField);
+        for (MethodNode methodNode : writeCollector.writingMethods)  {
+            methodNode.setCode(dirtyMarker.block(methodNode.getCode()));
+            methodNode.getCode().visit(dirtyMarker);
+        }
+
+        for (Statement statement : ((BlockStatement) invariantMethod.getCode()).getStatements())  {
+            if (!(statement instanceof IfStatement)) continue;
+
+            final IfStatement guard = (IfStatement) statement;
+            guard.setBooleanExpression(new BooleanExpression(new BinaryExpression(new FieldExpression(dirtyField), Token.newSymbol(Types.LOGICAL_AND, -1, -1), guard.getBooleanExpression().getExpression())));
+            guard.setIfBlock(new BlockStatement(Arrays.asList(guard.getIfBlock(), new ExpressionStatement(new BinaryExpression(new FieldExpression(dirtyField), Token.newSymbol(Types.ASSIGN, -1, -1), ConstantExpression.FALSE))), new VariableScope()));
+        }
+    }
+
+    /**
+     * @param fieldNode a field of a contracted class
+     *
+     * @return a statement setting the dirty bit if the given field is tracked, otherwise <tt>null</tt>
+     */
+    public static Statement markDirty(final FieldNode fieldNode)  {
+        final FieldNode dirtyField = fieldNode.getNodeMetaData(META_DATA_DIRTY_FIELD);
+        if (dirtyField == null) return null;
+
+        return markDirty(new FieldExpression(dirtyField));
+    }
+
+    private static Statement markDirty(final Expression dirtyField)  {
+        return new ExpressionStatement(new BinaryExpression(dirtyField, Token.newSymbol(Types.ASSIGN, -1, -1), ConstantExpression.TRUE));
+    }
+
+    private static Set<FieldNode> getTrackedFields(final ClassNode type)  {
+        final ClassNode classInvariantClassNode = ClassHelper.makeWithoutCaching(ClassInvariant.class);
+
+        if (!AnnotationUtils.getAnnotationNodeInHierarchyWithMetaAnnotation(type.getSuperClass(), classInvariantClassNode).isEmpty()) return null;
+        if (AnnotationUtils.hasAnnotationOfType(type, DynamicSetterInjectionVisitor.SPRING_STEREOTYPE_PACKAGE)) return null;
+
+        // inner classes may write private fields of their outer class
+        for (ClassNode classNode : type.getModule().getClasses())  {
+            if (classNode instanceof InnerClassNode && classNode.getOuterClass() == type) return null;
+        }
+
+        final Set<String> readFields = new LinkedHashSet<String>();
+        for (AnnotationNode annotationNode : type.getAnnotations())  {
+            if (annotationNode.getClassNode().getAnnotations(classInvariantClassNode).isEmpty()) continue;
+            if (!(annotationNode.getMember(BaseVisitor.CLOSURE_ATTRIBUTE_NAME) instanceof ClassExpression)) return null;
+
+            final Set<String> closureReadFields = annotationNode.getMember(BaseVisitor.CLOSURE_ATTRIBUTE_NAME).getType().getNodeMetaData(META_DATA_READ_FIELDS);
+            if (closureReadFields == null) return null;
+
+            readFields.addAll(closureReadFields);
+        }
+
+        final Set<FieldNode> trackedFields = new LinkedHashSet<FieldNode>();
+        for (String readField : readFields)  {
+            final FieldNode fieldNode = type.getDeclaredField(readField);
+            if (fieldNode == null) return null;
+            if (fieldNode.isFinal()) continue;
+            if ((fieldNode.getModifiers() & Opcodes.ACC_PRIVATE) == 0) return null;
+
+            // properties are written by the generated setters, other setters are generated without dirty bit
+            final PropertyNode propertyNode = type.getProperty(readField);
+            if (propertyNode != null && !CandidateChecks.isClassInvariantCandidate(propertyNode) && propertyNode.getSetterBlock() == null &&
+                    type.getMethods("set" + MetaClassHelper.capitalize(readField)).isEmpty()) return null;
+
+            trackedFields.add(fieldNode);
+        }
+
+        return trackedFields;
+    }
+
+    /**
+     * Collects the methods writing tracked fields, either directly or in their closures. Writes to tracked fields of
+     * other instances which bypass the setters and tracked arrays escaping element access can not be tracked.
+     */
+    private static class WriteCollector extends CodeVisitorSupport {
+
+        protected final ClassNode type;
+        private final Set<String> trackedFieldNames = new HashSet<String>();
+        private final Set<String> trackedArrayNames = new HashSet<String>();
+
+        private final Set<MethodNode> writingMethods = new LinkedHashSet<MethodNode>();
+        protected boolean untrackedWrites = false;
+
+        private MethodNode currentMethod;
+
+        public WriteCollector(final ClassNode type, final Set<FieldNode> trackedFields)  {
+            this.type = type;
+            for (FieldNode trackedField : trackedFields)  {
+                trackedFieldNames.add(trackedField.getName());
+                if (trackedField.getType().isArray()) trackedArrayNames.add(trackedField.getName());
+            }
+        }
+
+        public void visitMethod(final MethodNode methodNode)  {
+            if (methodNode.getCode() == null) return;
+
+            currentMethod = methodNode;
+            methodNode.getCode().visit(this);
+        }
+
+        @Override
+        public void visitBinaryExpression(BinaryExpression expression) {
+            final int operationType = expression.getOperation().getType();
+
+            if (!(expression instanceof DeclarationExpression) && Types.ofType(operationType, Types.ASSIGNMENT_OPERATOR))  {
+                checkWrite(expression.getLeftExpression());
+
+                // the assigned field itself is not read
+                if (getTrackedArrayName(expression.getLeftExpression()) != null && operationType == Types.ASSIGN)  {
+                    expression.getRightExpression().visit(this);
+                    return;
+                }
+            } else if (operationType == Types.LEFT_SQUARE_BRACKET && getTrackedArrayName(expression.getLeftExpression()) != null)  {
+                // element reads do not let the array escape
+                expression.getRightExpression().visit(this);
+                return;
+            }
+
+            super.visitBinaryExpression(expression);
+        }
+
+        @Override
+        public void visitPostfixExpression(PostfixExpression expression) {
+            checkWrite(expression.getExpression());
+            super.visitPostfixExpression(expression);
+        }
+
+        @Override
+        public void visitPrefixExpression(PrefixExpression expression) {
+            checkWrite(expression.getExpression());
+            super.visitPrefixExpression(expression);
+        }
+
+        @Override
+        public void visitPropertyExpression(PropertyExpression expression) {
+            if ("length".equals(expression.getPropertyAsString()) && getTrackedArrayName(expression.getObjectExpression()) != null) return;
+
+            if (getTrackedArrayName(expression) != null)  {
+                untrackedWrites = true;
+                return;
+            }
+
+            super.visitPropertyExpression(expression);
+        }
+
+        @Override
+        public void visitAttributeExpression(AttributeExpression expression) {
+            visitPropertyExpression(expression);
+        }
+
+        @Override
+        public void visitVariableExpression(VariableExpression expression) {
+            if (getTrackedArrayName(expression) != null) untrackedWrites = true;
+        }
+
+        @Override
+        public void visitFieldExpression(FieldExpression expression) {
+            if (getTrackedArrayName(expression) != null) untrackedWrites = true;
+        }
+
+        private void checkWrite(final Expression expression)  {
+            if (expression instanceof TupleExpression)  {
+                for (Expression element : ((TupleExpression) expression).getExpressions())  {
+                    checkWrite(element);
+                }
+            } else if (expression instanceof BinaryExpression && ((BinaryExpression) expression).getOperation().getType() == Types.LEFT_SQUARE_BRACKET)  {
+                // element writes of tracked arrays
+                checkWrite(((BinaryExpression) expression).getLeftExpression());
+            } else if (expression instanceof VariableExpression)  {
+                final Variable accessedVariable = ((VariableExpression) expression).getAccessedVariable();
+                if ((accessedVariable instanceof FieldNode || accessedVariable instanceof PropertyNode || accessedVariable instanceof DynamicVariable) && trackedFieldNames.contains(accessedVariable.getName()))  {
+                    addWrite();
+                }
+            } else if (expression instanceof FieldExpression)  {
+                if (trackedFieldNames.contains(((FieldExpression) expression).getFieldName())) addWrite();
+            } else if (expression instanceof PropertyExpression)  {
+                final PropertyExpression propertyExpression = (PropertyExpression) expression;
+                final String propertyName = propertyExpression.getPropertyAsString();
+                if (propertyName == null || !trackedFieldNames.contains(propertyName)) return;
+
+                final Expression objectExpression = propertyExpression.getObjectExpression();
+                if (objectExpression instanceof VariableExpression && ((VariableExpression) objectExpression).isThisExpression())  {
+                    addWrite();
+                } else if (expression instanceof AttributeExpression || type.getProperty(propertyName) == null)  {
+                    // the field of another instance is written without its setter
+                    untrackedWrites = true;
+                }
+            }
+        }
+
+        /**
+         * @return the name of the tracked array field the given expression refers to, otherwise <tt>null</tt>
+         */
+        private String getTrackedArrayName(final Expression expression)  {
+            String name = null;
+            if (expression instanceof VariableExpression)  {
+                final Variable accessedVariable = ((VariableExpression) expression).getAccessedVariable();
+                if (accessedVariable instanceof FieldNode || accessedVariable instanceof PropertyNode || accessedVariable instanceof DynamicVariable) name = accessedVariable.getName();
+            } else if (expression instanceof FieldExpression)  {
+                name = ((FieldExpression) expression).getFieldName();
+            } else if (expression instanceof PropertyExpression)  {
+                name = ((PropertyExpression) expression).getPropertyAsString();
+            }
+
+            return name != null && trackedArrayNames.contains(name) ? name : null;
+        }
+
+        protected void addWrite()  {
+            writingMethods.add(currentMethod);
+        }
+    }
+
+    /**
+     * Sets the dirty bit before and after every statement writing a tracked field, returning and throwing statements
+     * are only preceded by it.
+     */
+    private static class DirtyMarker extends CodeVisitorSupport {
+
+        private final FieldNode dirtyField;
+        private final WriteFinder writeFinder;
+        private int closureDepth = 0;
+
+        public DirtyMarker(final ClassNode type, final Set<FieldNode> trackedFields, final FieldNode dirtyField)  {
+            this.dirtyField = dirtyField;
+            this.writeFinder = new WriteFinder(type, trackedFields);
+        }
+
+        @Override
+        public void visitBlockStatement(BlockStatement block) {
+            final List<Statement> statements = block.getStatements();
+            for (int i = 0; i < statements.size(); i++)  {
+                final Statement statement = statements.get(i);
+                statement.visit(this);
+
+                if (!writeFinder.writes(statement)) continue;
+
+                statements.add(i++, markDirty());
+                if (!(statement instanceof ReturnStatement) && !(statement instanceof ThrowStatement)) statements.add(++i, markDirty());
+            }
+        }
+
+        @Override
+        public void visitIfElse(IfStatement ifElse) {
+            ifElse.setIfBlock(block(ifElse.getIfBlock()));
+            ifElse.setElseBlock(block(ifElse.getElseBlock()));
+            super.visitIfElse(ifElse);
+        }
+
+        @Override
+        public void visitWhileLoop(WhileStatement loop) {
+            loop.setLoopBlock(block(loop.getLoopBlock()));
+            super.visitWhileLoop(loop);
+            if (writeFinder.writes(loop.getBooleanExpression())) ((BlockStatement) loop.getLoopBlock()).getStatements().add(0, markDirty());
+        }
+
+        @Override
+        public void visitDoWhileLoop(DoWhileStatement loop) {
+            loop.setLoopBlock(block(loop.getLoopBlock()));
+            super.visitDoWhileLoop(loop);
+            if (writeFinder.writes(loop.getBooleanExpression())) ((BlockStatement) loop.getLoopBlock()).getStatements().add(0, markDirty());
+        }
+
+        @Override
+        public void visitForLoop(ForStatement forLoop) {
+            forLoop.setLoopBlock(block(forLoop.getLoopBlock()));
+            super.visitForLoop(forLoop);
+            if (writeFinder.writes(forLoop.getCollectionExpression())) ((BlockStatement) forLoop.getLoopBlock()).getStatements().add(0, markDirty());
+        }
+
+        @Override
+        public void visitTryCatchFinally(TryCatchStatement statement) {
+            statement.setTryStatement(block(statement.getTryStatement()));
+            for (CatchStatement catchStatement : statement.getCatchStatements())  {
+                catchStatement.setCode(block(catchStatement.getCode()));
+            }
+            statement.setFinallyStatement(block(statement.getFinallyStatement()));
+            super.visitTryCatchFinally(statement);
+        }
+
+        @Override
+        public void visitSwitch(SwitchStatement statement) {
+            for (CaseStatement caseStatement : statement.getCaseStatements())  {
+                caseStatement.setCode(block(caseStatement.getCode()));
+            }
+            statement.setDefaultStatement(block(statement.getDefaultStatement()));
+            super.visitSwitch(statement);
+        }
+
+        @Override
+        public void visitSynchronizedStatement(SynchronizedStatement statement) {
+            statement.setCode(block(statement.getCode()));
+            super.visitSynchronizedStatement(statement);
+        }
+
+        @Override
+        public void visitClosureExpression(ClosureExpression expression) {
+            // closures may be called after their declaring method returned
+            expression.setCode(block(expression.getCode()));
+
+            closureDepth++;
+            super.visitClosureExpression(expression);
+            closureDepth--;
+        }
+
+        public Statement block(final Statement statement)  {
+            if (statement instanceof BlockStatement || statement == null) return statement;
+
+            final BlockStatement blockStatement = new BlockStatement(new ArrayList<Statement>(), new VariableScope());
+            if (!(statement instanceof EmptyStatement)) blockStatement.addStatement(statement);
+
+            return blockStatement;
+        }
+
+        private Statement markDirty()  {
+            if (closureDepth == 0) return DirtyInvariantGenerationUtility.markDirty(new FieldExpression(dirtyField));
+
+            final VariableExpression dirtyVariable = new VariableExpression(dirtyField);
+            dirtyVariable.setAccessedVariable(dirtyField);
+
+            return DirtyInvariantGenerationUtility.markDirty(dirtyVariable);
+        }
+    }
+
+    /**
+     * Finds writes to tracked fields in the expressions of a single statement, nested statements and closures are
+     * not visited.
+     */
+    private static class WriteFinder extends WriteCollector {
+
+        private boolean writes;
+
+        public WriteFinder(final ClassNode type, final Set<FieldNode> trackedFields)  {
+            super(type, trackedFields);
+        }
+
+        public boolean writes(final Statement statement)  {
+            if (statement instanceof ExpressionStatement) return writes(((ExpressionStatement) statement).getExpression());
+            if (statement instanceof ReturnStatement) return writes(((ReturnStatement) statement).getExpression());
+            if (statement instanceof ThrowStatement) return writes(((ThrowStatement) statement).getExpression());
+            if (statement instanceof AssertStatement) return writes(((AssertStatement) statement).getBooleanExpression()) || writes(((AssertStatement) statement).getMessageExpression());
+            if (statement instanceof IfStatement) return writes(((IfStatement) statement).getBooleanExpression());
+            if (statement instanceof WhileStatement) return writes(((WhileStatement) statement).getBooleanExpression());
+            if (statement instanceof DoWhileStatement) return writes(((DoWhileStatement) statement).getBooleanExpression());
+            if (statement instanceof ForStatement) return writes(((ForStatement) statement).getCollectionExpression());
+            if (statement instanceof SwitchStatement) return writes(((SwitchStatement) statement).getExpression());
+            if (statement instanceof SynchronizedStatement) return writes(((SynchronizedStatement) statement).getExpression());
+
+            return false;
+        }
+
+        public boolean writes(final Expression expression)  {
+            if (expression == null) return false;
+
+            writes = false;
+            expression.visit(this);
+
+            return writes;
+        }
+
+        @Override
+        public void visitClosureExpression(ClosureExpression expression) {}
+
+        @Override
+        protected void addWrite() {
+            writes = true;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2013, Andre Steingress
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1.) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 2.) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 3.) Neither the name of Andre Steingress nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.gcontracts.generation;
+
+import org.codehaus.groovy.runtime.InvokerHelper;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>Checks the element predicates of {@link org.gcontracts.annotations.RequiresEach} and
+ * {@link org.gcontracts.annotations.EnsuresEach} in parallel.</p>
+ *
+ * <p>The elements are split into chunks which are checked by the generated range method of the element predicate
+ * in the common {@link ForkJoinPool}. Once a chunk fails, chunks which have not been started yet are skipped.</p>
+ *
+ * @author ast
+ */
+public final class ElementChecks {
+
+    /**
+     * The minimum number of elements checked by a single task.
+     */
+    public static final int MIN_CHUNK_SIZE = 1024;
+
+    private ElementChecks() {}
+
+    /**
+     * Calls the given range method for chunks of <tt>[0, size)</tt>, in parallel.
+     *
+     * @param receiver the object, or the class for static methods, declaring the range method
+     * @param rangeMethodName the name of the range method, taking the first and last (exclusive) index
+     *                        followed by the given <tt>arguments</tt>
+     * @param size the number of elements
+     * @param arguments the remaining arguments of the range method
+     *
+     * @return whether all elements satisfy the element predicate
+     */
+    public static boolean allMatch(final Object receiver, final String rangeMethodName, final int size, final Object[] arguments)  {
+        final int chunkSize = Math.max(MIN_CHUNK_SIZE, size / (ForkJoinPool.getCommonPoolParallelism() * 4));
+        final AtomicBoolean failed = new AtomicBoolean();
+
+        ForkJoinPool.commonPool().invoke(new RangeCheck(receiver, rangeMethodName, arguments, 0, size, chunkSize, failed));
+
+        return !failed.get();
+    }
+
+    private static final class RangeCheck extends RecursiveAction {
+
+        private final Object receiver;
+        private final String rangeMethodName;
+        private final Object[] arguments;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+        private final AtomicBoolean failed;
+
+        RangeCheck(Object receiver, String rangeMethodName, Object[] arguments, int from, int to, int chunkSize, AtomicBoolean failed)  {
+            this.receiver = receiver;
+            this.rangeMethodName = rangeMethodName;
+            this.arguments = arguments;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+            this.failed = failed;
+        }
+
+        @Override
+        protected void compute() {
+            if (failed.get()) return;
+
+            if (to - from > chunkSize)  {
+                final int middle = (from + to) >>> 1;
+                invokeAll(new RangeCheck(receiver, rangeMethodName, arguments, from, middle, chunkSize, failed),
+                        new RangeCheck(receiver, rangeMethodName, arguments, middle, to, chunkSize, failed));
+                return;
+            }
+
+            final Object[] rangeArguments = new Object[arguments.length + 2];
+            rangeArguments[0] = from;
+            rangeArguments[1] = to;
+            System.arraycopy(arguments, 0, rangeArguments, 2, arguments.length);
+
+            if (!Boolean.TRUE.equals(InvokerHelper.invokeMethod(receiver, rangeMethodName, rangeArguments))) failed.set(true);
+        }
+    }
+}
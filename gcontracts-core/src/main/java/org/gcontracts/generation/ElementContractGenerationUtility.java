@@ -0,0 +1,445 @@
+/**
+ * Copyright (c) 2013, Andre Steingress
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1.) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 2.) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 3.) Neither the name of Andre Steingress nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.gcontracts.generation;
+
+import org.codehaus.groovy.ast.*;
+import org.codehaus.groovy.ast.expr.*;
+import org.codehaus.groovy.ast.stmt.*;
+import org.codehaus.groovy.control.SourceUnit;
+import org.codehaus.groovy.control.messages.SyntaxErrorMessage;
+import org.codehaus.groovy.syntax.SyntaxException;
+import org.codehaus.groovy.syntax.Token;
+import org.codehaus.groovy.syntax.Types;
+import org.gcontracts.annotations.EnsuresEach;
+import org.gcontracts.annotations.Requires;
+import org.gcontracts.annotations.RequiresEach;
+import org.gcontracts.ast.visitor.BaseVisitor;
+import org.gcontracts.util.AnnotationUtils;
+import org.gcontracts.util.ExpressionUtils;
+import org.objectweb.asm.Opcodes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>Compiles the element predicates of {@link RequiresEach} and {@link EnsuresEach} annotations into loop methods
+ * and replaces the element predicate with an annotation closure calling the loop method, which is processed like
+ * any other pre- or postcondition afterwards.</p>
+ *
+ * <p>Two methods are generated for arrays and {@link java.util.List} instances, <tt>$_gc_each_&lt;method&gt;_n</tt>
+ * checking all elements and <tt>$_gc_each_&lt;method&gt;_n_range</tt> checking the elements of an index range,
+ * which is used by {@link ElementChecks} for parallel checks. Other {@link Iterable} instances are checked with a
+ * single loop. The loop methods take the elements followed by all parameters of the contracted method, which may
+ * be referenced by the element predicate.</p>
+ *
+ * @author ast
+ */
+public final class ElementContractGenerationUtility {
+
+    public static final String ELEMENT_METHOD_PREFIX = "$_gc_each_";
+    public static final String RANGE_METHOD_POSTFIX = "_range";
+
+    public static final String OF_ATTRIBUTE_NAME = "of";
+    public static final String PARALLEL_THRESHOLD_ATTRIBUTE_NAME = "parallelThreshold";
+
+    private static final String ELEMENTS_VARIABLE_NAME = "$_gc_elements";
+    private static final String SIZE_VARIABLE_NAME = "$_gc_size";
+    private static final String INDEX_VARIABLE_NAME = "$_gc_index";
+    private static final String FROM_VARIABLE_NAME = "$_gc_from";
+    private static final String TO_VARIABLE_NAME = "$_gc_to";
+
+    private static final ClassNode LIST_TYPE = ClassHelper.makeWithoutCaching(List.class);
+    private static final ClassNode ITERABLE_TYPE = ClassHelper.makeWithoutCaching(Iterable.class);
+
+    private ElementContractGenerationUtility() {}
+
+    public static boolean isElementContract(final AnnotationNode annotationNode)  {
+        final String name = annotationNode.getClassNode().getName();
+        return name.equals(RequiresEach.class.getName()) || name.equals(EnsuresEach.class.getName());
+    }
+
+    /**
+     * Generates the loop methods for all element predicates of the given <tt>methodNode</tt> and replaces the element
+     * predicates with annotation closures. An element precondition is added to the {@link Requires} closure of the
+     * method if there is one, as preconditions of a single method must all be satisfied.
+     *
+     * @param type the {@link org.codehaus.groovy.ast.ClassNode} declaring the given <tt>methodNode</tt>
+     * @param methodNode the {@link org.codehaus.groovy.ast.MethodNode} whose annotations are processed
+     * @param sourceUnit the current {@link org.codehaus.groovy.control.SourceUnit}, used for error reporting
+     */
+    public static void replaceElementPredicates(final ClassNode type, final MethodNode methodNode, final SourceUnit sourceUnit)  {
+        for (AnnotationNode annotationNode : new ArrayList<AnnotationNode>(methodNode.getAnnotations()))  {
+            if (!isElementContract(annotationNode)) continue;
+            if (!(annotationNode.getMember(BaseVisitor.CLOSURE_ATTRIBUTE_NAME) instanceof ClosureExpression)) continue;
+
+            final ClosureExpression predicate = (ClosureExpression) annotationNode.getMember(BaseVisitor.CLOSURE_ATTRIBUTE_NAME);
+            final boolean isPostcondition = annotationNode.getClassNode().getName().equals(EnsuresEach.class.getName());
+
+            if (type.isInterface())  {
+                addError(sourceUnit, "[GContracts] Element predicates are not supported in interfaces.", annotationNode);
+                continue;
+            }
+
+            if (predicate.isParameterSpecified() && predicate.getParameters().length > 1)  {
+                addError(sourceUnit, "[GContracts] Element predicates only allow a single element parameter.", predicate);
+                continue;
+            }
+
+            final String of = getOf(annotationNode);
+            final ClassNode elementsType = of != null ? getElementsType(methodNode, of, isPostcondition) : null;
+            if (elementsType == null)  {
+                addError(sourceUnit, "[GContracts] The 'of' attribute must name a parameter" + (isPostcondition ? ", 'result'" : "") + " or a field.", annotationNode);
+                continue;
+            }
+
+            if (!elementsType.isArray() && !isOrImplements(elementsType, ITERABLE_TYPE))  {
+                addError(sourceUnit, "[GContracts] Element predicates can only be applied to arrays and Iterable instances.", annotationNode);
+                continue;
+            }
+
+            if (containsClosure(predicate))  {
+                addError(sourceUnit, "[GContracts] Element predicates must not contain closures.", predicate);
+                continue;
+            }
+
+            final String methodName = getElementMethodName(type, methodNode);
+            addElementMethods(type, methodNode, methodName, elementsType, predicate, getParallelThreshold(annotationNode));
+
+            final Expression elementMethodCall = callElementMethod(type, methodNode, methodName, of);
+
+            final AnnotationNode requiresAnnotationNode = isPostcondition ? null : getRequiresAnnotation(methodNode);
+            if (requiresAnnotationNode != null)  {
+                final ClosureExpression requires = (ClosureExpression) requiresAnnotationNode.getMember(BaseVisitor.CLOSURE_ATTRIBUTE_NAME);
+                ((BlockStatement) requires.getCode()).addStatement(createStatement(elementMethodCall, predicate));
+                addReferencedVariables(requires.getVariableScope(), methodNode, of);
+
+                methodNode.getAnnotations().remove(annotationNode);
+                AnnotationUtils.annotationsChanged(type);
+                continue;
+            }
+
+            final VariableScope variableScope = new VariableScope();
+            variableScope.setInStaticContext(methodNode.isStatic());
+            addReferencedVariables(variableScope, methodNode, of);
+
+            final BlockStatement code = new BlockStatement();
+            code.addStatement(createStatement(elementMethodCall, predicate));
+            code.setVariableScope(variableScope);
+            code.setSourcePosition(predicate.getCode());
+
+            final ClosureExpression closureExpression = new ClosureExpression(Parameter.EMPTY_ARRAY, code);
+            closureExpression.setVariableScope(variableScope);
+            closureExpression.setSourcePosition(predicate);
+            closureExpression.setDeclaringClass(predicate.getDeclaringClass());
+
+            annotationNode.setMember(BaseVisitor.CLOSURE_ATTRIBUTE_NAME, closureExpression);
+        }
+    }
+
+    private static void addElementMethods(final ClassNode type, final MethodNode methodNode, final String methodName, final ClassNode elementsType, final ClosureExpression predicate, final int parallelThreshold)  {
+        final int modifiers = Opcodes.ACC_PROTECTED | Opcodes.ACC_SYNTHETIC | (methodNode.isStatic() ? Opcodes.ACC_STATIC : 0);
+        final Parameter elementParameter = predicate.isParameterSpecified() ? predicate.getParameters()[0] : null;
+        final String elementName = elementParameter != null ? elementParameter.getName() : "it";
+        final ClassNode elementType = elementParameter != null && !elementParameter.isDynamicTyped() ? elementParameter.getType() : getElementType(elementsType);
+
+        final Parameter[] parameters = getElementMethodParameters(methodNode, elementsType);
+        final VariableExpression elements = new VariableExpression(parameters[0]);
+
+        final BlockStatement code = new BlockStatement();
+        code.setVariableScope(new VariableScope());
+        code.addStatement(new IfStatement(
+                new BooleanExpression(new BinaryExpression(elements, Token.newSymbol(Types.COMPARE_EQUAL, -1, -1), ConstantExpression.NULL)),
+                new ReturnStatement(ConstantExpression.TRUE),
+                EmptyStatement.INSTANCE));
+
+        if (!elementsType.isArray() && !isOrImplements(elementsType, LIST_TYPE))  {
+            // no index access, the elements are iterated sequentially
+            final Parameter element = new Parameter(elementType, elementName);
+            code.addStatement(createForStatement(element, elements, createPredicateCheck(predicate, element, parameters)));
+            code.addStatement(new ReturnStatement(ConstantExpression.TRUE));
+
+            addMethod(type, methodName, modifiers, parameters, code);
+            return;
+        }
+
+        final Parameter[] rangeParameters = getRangeMethodParameters(methodNode, elementsType);
+        final MethodNode rangeMethod = addMethod(type, methodName + RANGE_METHOD_POSTFIX, modifiers, rangeParameters, createRangeCheck(elementsType, elementType, elementName, predicate, rangeParameters));
+
+        final VariableExpression size = new VariableExpression(SIZE_VARIABLE_NAME, ClassHelper.int_TYPE);
+        size.setAccessedVariable(size);
+
+        final Expression sizeExpression = elementsType.isArray() ? new PropertyExpression(elements, "length") : new MethodCallExpression(elements, "size", ArgumentListExpression.EMPTY_ARGUMENTS);
+        code.addStatement(new ExpressionStatement(new DeclarationExpression(size, Token.newSymbol(Types.ASSIGN, -1, -1), sizeExpression)));
+
+        final Expression receiver = methodNode.isStatic() ? new ClassExpression(type) : VariableExpression.THIS_EXPRESSION;
+
+        if (parallelThreshold > 0)  {
+            final List<Expression> arguments = new ArrayList<Expression>();
+            for (Parameter parameter : parameters)  {
+                arguments.add(new VariableExpression(parameter));
+            }
+
+            final ClassNode elementChecksClassNode = ClassHelper.makeWithoutCaching(ElementChecks.class);
+            final MethodCallExpression allMatch = new MethodCallExpression(new ClassExpression(elementChecksClassNode), "allMatch", new ArgumentListExpression(new Expression[] {
+                    receiver, new ConstantExpression(rangeMethod.getName()), size, new ArrayExpression(ClassHelper.OBJECT_TYPE, arguments) }));
+
+            code.addStatement(new IfStatement(
+                    new BooleanExpression(new BinaryExpression(size, Token.newSymbol(Types.COMPARE_GREATER_THAN_EQUAL, -1, -1), new ConstantExpression(parallelThreshold, true))),
+                    new ReturnStatement(allMatch),
+                    EmptyStatement.INSTANCE));
+        }
+
+        final ArgumentListExpression rangeArguments = new ArgumentListExpression();
+        rangeArguments.addExpression(new ConstantExpression(0, true));
+        rangeArguments.addExpression(size);
+        for (Parameter parameter : parameters)  {
+            rangeArguments.addExpression(new VariableExpression(parameter));
+        }
+
+        final MethodCallExpression rangeMethodCall = new MethodCallExpression(receiver, rangeMethod.getName(), rangeArguments);
+        rangeMethodCall.setImplicitThis(false);
+        rangeMethodCall.setMethodTarget(rangeMethod);
+
+        code.addStatement(new ReturnStatement(rangeMethodCall));
+
+        addMethod(type, methodName, modifiers, parameters, code);
+    }
+
+    private static BlockStatement createRangeCheck(final ClassNode elementsType, final ClassNode elementType, final String elementName, final ClosureExpression predicate, final Parameter[] rangeParameters)  {
+        final VariableExpression from = new VariableExpression(rangeParameters[0]);
+        final VariableExpression to = new VariableExpression(rangeParameters[1]);
+        final VariableExpression elements = new VariableExpression(rangeParameters[2]);
+
+        final BlockStatement code = new BlockStatement();
+        code.setVariableScope(new VariableScope());
+
+        if (elementsType.isArray())  {
+            final VariableExpression index = new VariableExpression(INDEX_VARIABLE_NAME, ClassHelper.int_TYPE);
+            index.setAccessedVariable(index);
+
+            final VariableExpression element = new VariableExpression(elementName, elementType);
+            element.setAccessedVariable(element);
+
+            final BlockStatement loopBlock = new BlockStatement();
+            loopBlock.setVariableScope(new VariableScope());
+            loopBlock.addStatement(new ExpressionStatement(new DeclarationExpression(element, Token.newSymbol(Types.ASSIGN, -1, -1),
+                    new BinaryExpression(elements, Token.newSymbol(Types.LEFT_SQUARE_BRACKET, -1, -1), index))));
+            loopBlock.addStatement(createPredicateCheck(predicate, element, rangeParameters));
+            loopBlock.addStatement(new ExpressionStatement(new PostfixExpression(index, Token.newSymbol(Types.PLUS_PLUS, -1, -1))));
+
+            code.addStatement(new ExpressionStatement(new DeclarationExpression(index, Token.newSymbol(Types.ASSIGN, -1, -1), from)));
+            code.addStatement(new WhileStatement(new BooleanExpression(new BinaryExpression(index, Token.newSymbol(Types.COMPARE_LESS_THAN, -1, -1), to)), loopBlock));
+        } else {
+            final Parameter element = new Parameter(elementType, elementName);
+            final MethodCallExpression subList = new MethodCallExpression(elements, "subList", new ArgumentListExpression(from, to));
+
+            code.addStatement(createForStatement(element, subList, createPredicateCheck(predicate, element, rangeParameters)));
+        }
+
+        code.addStatement(new ReturnStatement(ConstantExpression.TRUE));
+
+        return code;
+    }
+
+    private static ForStatement createForStatement(final Parameter element, final Expression elements, final Statement loopStatement)  {
+        final BlockStatement loopBlock = new BlockStatement();
+        loopBlock.setVariableScope(new VariableScope());
+        loopBlock.addStatement(loopStatement);
+
+        final ForStatement forStatement = new ForStatement(element, elements, loopBlock);
+        forStatement.setVariableScope(new VariableScope());
+
+        return forStatement;
+    }
+
+    private static Statement createPredicateCheck(final ClosureExpression predicate, final Variable element, final Parameter[] parameters)  {
+        final BooleanExpression predicateExpression = ExpressionUtils.getBooleanExpression(ExpressionUtils.getBooleanExpression(predicate));
+
+        // the predicate is moved from the closure into the loop method, variables are looked up again
+        new CodeVisitorSupport() {
+            @Override
+            public void visitVariableExpression(VariableExpression expression) {
+                if (expression.getName().equals(element.getName()))  {
+                    expression.setAccessedVariable(element);
+                    return;
+                }
+
+                for (Parameter parameter : parameters)  {
+                    if (expression.getName().equals(parameter.getName())) expression.setAccessedVariable(parameter);
+                }
+            }
+        }.visitBooleanExpression(predicateExpression);
+
+        return new IfStatement(new NotExpression(predicateExpression), new ReturnStatement(ConstantExpression.FALSE), EmptyStatement.INSTANCE);
+    }
+
+    private static MethodNode addMethod(final ClassNode type, final String name, final int modifiers, final Parameter[] parameters, final BlockStatement code)  {
+        final MethodNode methodNode = type.addMethod(name, modifiers, ClassHelper.boolean_TYPE, parameters, ClassNode.EMPTY_ARRAY, code);
+        methodNode.setSynthetic(true);
+
+        return methodNode;
+    }
+
+    private static Expression callElementMethod(final ClassNode type, final MethodNode methodNode, final String methodName, final String of)  {
+        final ArgumentListExpression arguments = new ArgumentListExpression();
+        arguments.addExpression(dynamicVariable(of));
+        for (Parameter parameter : methodNode.getParameters())  {
+            arguments.addExpression(dynamicVariable(parameter.getName()));
+        }
+
+        final MethodCallExpression methodCallExpression = new MethodCallExpression(methodNode.isStatic() ? new ClassExpression(type) : VariableExpression.THIS_EXPRESSION, methodName, arguments);
+        methodCallExpression.setImplicitThis(!methodNode.isStatic());
+
+        return methodCallExpression;
+    }
+
+    private static Statement createStatement(final Expression expression, final ClosureExpression predicate)  {
+        final BooleanExpression booleanExpression = new BooleanExpression(expression);
+        booleanExpression.setSourcePosition(predicate);
+
+        final ExpressionStatement statement = new ExpressionStatement(booleanExpression);
+        statement.setSourcePosition(predicate);
+
+        return statement;
+    }
+
+    private static VariableExpression dynamicVariable(final String name)  {
+        final VariableExpression variableExpression = new VariableExpression(name);
+        variableExpression.setAccessedVariable(new DynamicVariable(name, false));
+
+        return variableExpression;
+    }
+
+    private static void addReferencedVariables(final VariableScope variableScope, final MethodNode methodNode, final String of)  {
+        if (variableScope == null) return;
+
+        final List<String> names = new ArrayList<String>();
+        names.add(of);
+        for (Parameter parameter : methodNode.getParameters())  {
+            names.add(parameter.getName());
+        }
+
+        for (String name : names)  {
+            if (variableScope.getReferencedClassVariable(name) == null && variableScope.getReferencedLocalVariable(name) == null)  {
+                variableScope.putReferencedClassVariable(new DynamicVariable(name, methodNode.isStatic()));
+            }
+        }
+    }
+
+    private static Parameter[] getElementMethodParameters(final MethodNode methodNode, final ClassNode elementsType)  {
+        final List<Parameter> parameters = new ArrayList<Parameter>();
+        parameters.add(new Parameter(erasure(elementsType), ELEMENTS_VARIABLE_NAME));
+        for (Parameter parameter : methodNode.getParameters())  {
+            parameters.add(new Parameter(erasure(parameter.getType()), parameter.getName()));
+        }
+
+        return parameters.toArray(new Parameter[parameters.size()]);
+    }
+
+    private static Parameter[] getRangeMethodParameters(final MethodNode methodNode, final ClassNode elementsType)  {
+        final List<Parameter> parameters = new ArrayList<Parameter>();
+        parameters.add(new Parameter(ClassHelper.int_TYPE, FROM_VARIABLE_NAME));
+        parameters.add(new Parameter(ClassHelper.int_TYPE, TO_VARIABLE_NAME));
+        parameters.addAll(Arrays.asList(getElementMethodParameters(methodNode, elementsType)));
+
+        return parameters.toArray(new Parameter[parameters.size()]);
+    }
+
+    private static String getElementMethodName(final ClassNode type, final MethodNode methodNode)  {
+        int count = 0;
+        while (!type.getMethods(ELEMENT_METHOD_PREFIX + methodNode.getName() + "_" + count).isEmpty()) count++;
+
+        return ELEMENT_METHOD_PREFIX + methodNode.getName() + "_" + count;
+    }
+
+    private static ClassNode getElementsType(final MethodNode methodNode, final String of, final boolean isPostcondition)  {
+        if (isPostcondition && "result".equals(of))  {
+            return methodNode.getReturnType() != ClassHelper.VOID_TYPE && !(methodNode instanceof ConstructorNode) ? methodNode.getReturnType() : null;
+        }
+
+        for (Parameter parameter : methodNode.getParameters())  {
+            if (parameter.getName().equals(of)) return parameter.getType();
+        }
+
+        final FieldNode fieldNode = methodNode.getDeclaringClass().getField(of);
+        return fieldNode != null ? fieldNode.getType() : null;
+    }
+
+    private static ClassNode getElementType(final ClassNode elementsType)  {
+        if (elementsType.isArray()) return elementsType.getComponentType();
+
+        final GenericsType[] genericsTypes = elementsType.getGenericsTypes();
+        if (genericsTypes == null || genericsTypes.length != 1) return ClassHelper.OBJECT_TYPE;
+        if (genericsTypes[0].isPlaceholder() || genericsTypes[0].isWildcard()) return ClassHelper.OBJECT_TYPE;
+
+        return erasure(genericsTypes[0].getType());
+    }
+
+    private static String getOf(final AnnotationNode annotationNode)  {
+        final Expression of = annotationNode.getMember(OF_ATTRIBUTE_NAME);
+        return of instanceof ConstantExpression && ((ConstantExpression) of).getValue() instanceof String ? (String) ((ConstantExpression) of).getValue() : null;
+    }
+
+    private static int getParallelThreshold(final AnnotationNode annotationNode)  {
+        final Expression parallelThreshold = annotationNode.getMember(PARALLEL_THRESHOLD_ATTRIBUTE_NAME);
+        return parallelThreshold instanceof ConstantExpression && ((ConstantExpression) parallelThreshold).getValue() instanceof Number ? ((Number) ((ConstantExpression) parallelThreshold).getValue()).intValue() : 0;
+    }
+
+    private static AnnotationNode getRequiresAnnotation(final MethodNode methodNode)  {
+        for (AnnotationNode annotationNode : methodNode.getAnnotations())  {
+            if (annotationNode.getClassNode().getName().equals(Requires.class.getName()) && annotationNode.getMember(BaseVisitor.CLOSURE_ATTRIBUTE_NAME) instanceof ClosureExpression)  {
+                return annotationNode;
+            }
+        }
+
+        return null;
+    }
+
+    private static boolean containsClosure(final ClosureExpression predicate)  {
+        final boolean[] result = new boolean[1];
+        new CodeVisitorSupport() {
+            @Override
+            public void visitClosureExpression(ClosureExpression expression) {
+                result[0] = true;
+            }
+        }.visitBlockStatement((BlockStatement) predicate.getCode());
+
+        return result[0];
+    }
+
+    private static boolean isOrImplements(final ClassNode type, final ClassNode interfaceType)  {
+        return type.equals(interfaceType) || type.implementsInterface(interfaceType);
+    }
+
+    private static ClassNode erasure(final ClassNode type)  {
+        if (type.isGenericsPlaceHolder()) return type.redirect().getPlainNodeReference();
+        return type.getPlainNodeReference();
+    }
+
+    private static void addError(final SourceUnit sourceUnit, final String msg, final ASTNode node)  {
+        sourceUnit.getErrorCollector().addErrorAndContinue(
+                new SyntaxErrorMessage(new SyntaxException(msg + '\n', node.getLineNumber(), node.getColumnNumber()), sourceUnit)
+        );
+    }
+}
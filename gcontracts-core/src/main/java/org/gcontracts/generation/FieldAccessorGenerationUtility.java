@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2013, Andre Steingress
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1.) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 2.) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 3.) Neither the name of Andre Steingress nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.gcontracts.generation;
+
+import org.codehaus.groovy.ast.*;
+import org.codehaus.groovy.ast.expr.*;
+import org.codehaus.groovy.control.SourceUnit;
+import org.gcontracts.util.FieldValues;
+import org.objectweb.asm.Opcodes;
+
+import java.lang.invoke.MethodHandle;
+import java.util.List;
+
+/**
+ * <p>Resolves the private fields read by annotation closures once per closure class.</p>
+ *
+ * <p>Private fields of the contracted class can not be accessed by the annotation closure class and are read by
+ * {@link FieldValues}. Instead of looking up the field on every read, every annotation closure class holds a
+ * <tt>static final</tt> {@link java.lang.invoke.MethodHandle} getter per field, initialized when the closure class
+ * is loaded.</p>
+ *
+ * @author ast
+ */
+public final class FieldAccessorGenerationUtility {
+
+    public static final String FIELD_ACCESSOR_PREFIX = "$_gc_field_";
+
+    private static final ClassNode FIELD_VALUES = ClassHelper.makeWithoutCaching(FieldValues.class);
+
+    private FieldAccessorGenerationUtility() {}
+
+    /**
+     * Replaces the reflective field reads of the given annotation closure class with reads through cached getters.
+     *
+     * @param type the {@link org.codehaus.groovy.ast.ClassNode} declaring the contract
+     * @param closureClassNode the annotation closure class generated for the contract
+     */
+    public static void addFieldAccessors(final ClassNode type, final ClassNode closureClassNode)  {
+        final MethodNode doCall = closureClassNode.getDeclaredMethods("doCall").get(0);
+        doCall.getCode().visit(new FieldAccessTransformer(type, closureClassNode));
+    }
+
+    private static FieldNode getFieldAccessor(final ClassNode type, final ClassNode closureClassNode, final String fieldName)  {
+        final String fieldAccessorName = FIELD_ACCESSOR_PREFIX + fieldName;
+
+        FieldNode fieldAccessor = closureClassNode.getDeclaredField(fieldAccessorName);
+        if (fieldAccessor != null) return fieldAccessor;
+
+        final MethodCallExpression getter = new MethodCallExpression(new ClassExpression(FIELD_VALUES), "getter", new ArgumentListExpression(new ClassExpression(type), new ConstantExpression(fieldName)));
+        getter.setMethodTarget(FIELD_VALUES.getMethod("getter", new Parameter[] { new Parameter(ClassHelper.CLASS_Type, "type"), new Parameter(ClassHelper.STRING_TYPE, "fieldName") }));
+
+        fieldAccessor = closureClassNode.addField(fieldAccessorName, Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_SYNTHETIC | Opcodes.ACC_FINAL, ClassHelper.makeWithoutCaching(MethodHandle.class), getter);
+        fieldAccessor.setSynthetic(true);
+
+        return fieldAccessor;
+    }
+
+    private static class FieldAccessTransformer extends ClassCodeExpressionTransformer {
+
+        private final ClassNode type;
+        private final ClassNode closureClassNode;
+
+        public FieldAccessTransformer(final ClassNode type, final ClassNode closureClassNode)  {
+            this.type = type;
+            this.closureClassNode = closureClassNode;
+        }
+
+        @Override
+        protected SourceUnit getSourceUnit() {
+            return null;
+        }
+
+        @Override
+        public Expression transform(Expression expression) {
+            if (expression == null) return null;
+
+            if (expression instanceof StaticMethodCallExpression)  {
+                final String fieldName = getFieldName((StaticMethodCallExpression) expression);
+                if (fieldName != null)  {
+                    final StaticMethodCallExpression fieldValue = new StaticMethodCallExpression(FIELD_VALUES, "fieldValue", new ArgumentListExpression(new FieldExpression(getFieldAccessor(type, closureClassNode, fieldName)), VariableExpression.THIS_EXPRESSION));
+                    fieldValue.setSourcePosition(expression);
+
+                    return fieldValue;
+                }
+            }
+
+            return expression.transformExpression(this);
+        }
+
+        private String getFieldName(final StaticMethodCallExpression call)  {
+            if (!call.getOwnerType().getName().equals(FieldValues.class.getName()) || !"fieldValue".equals(call.getMethod())) return null;
+
+            final List<Expression> arguments = ((TupleExpression) call.getArguments()).getExpressions();
+            if (arguments.size() != 3 || !(arguments.get(1) instanceof ConstantExpression)) return null;
+
+            return String.valueOf(((ConstantExpression) arguments.get(1)).getValue());
+        }
+    }
+}
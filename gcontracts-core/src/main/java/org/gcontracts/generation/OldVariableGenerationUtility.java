@@ -24,14 +24,17 @@ package org.gcontracts.generation;
 
 import org.codehaus.groovy.ast.*;
 import org.codehaus.groovy.ast.expr.*;
-import org.codehaus.groovy.ast.stmt.BlockStatement;
-import org.codehaus.groovy.ast.stmt.ExpressionStatement;
-import org.codehaus.groovy.ast.stmt.ReturnStatement;
+import org.codehaus.groovy.ast.stmt.*;
+import org.codehaus.groovy.control.SourceUnit;
 import org.codehaus.groovy.syntax.Token;
 import org.codehaus.groovy.syntax.Types;
+import org.gcontracts.annotations.Contracted;
+import org.gcontracts.annotations.meta.Postcondition;
+import org.gcontracts.ast.visitor.AnnotationClosureVisitor;
+import org.gcontracts.ast.visitor.BaseVisitor;
 import org.objectweb.asm.Opcodes;
 
-import java.util.Map;
+import java.util.*;
 
 /**
  * <p>Central place where code generation for the <tt>old</tt> closure variable
@@ -43,6 +46,17 @@ public class OldVariableGenerationUtility {
 
     public static final String OLD_VARIABLES_METHOD = "$_gc_computeOldVariables";
 
+    public static final String META_DATA_OLD_VARIABLE_NAMES = "org.gcontracts.META_DATA.OLD_VARIABLE_NAMES";
+    public static final String META_DATA_SIZE_ONLY_OLD_VARIABLE_NAMES = "org.gcontracts.META_DATA.SIZE_ONLY_OLD_VARIABLE_NAMES";
+    public static final String META_DATA_OLD_VARIABLES_CLASS = "org.gcontracts.META_DATA.OLD_VARIABLES_CLASS";
+    public static final String META_DATA_OLD_VARIABLES_CLASSES = "org.gcontracts.META_DATA.OLD_VARIABLES_CLASSES";
+    public static final String META_DATA_PENDING_CLASSES = "org.gcontracts.META_DATA.PENDING_CLASSES";
+
+    public static final String OLD_VARIABLES_CLASS_SUFFIX = "$_gc_old";
+
+    private static final String CREATE_METHOD = "$_gc_create";
+    private static final String GETTER_PREFIX = "$_gc_";
+
     /**
      * Creates a synthetic method handling generation of the <tt>old</tt> variable map. If a super class declares
      * the same synthetic method it will be called and the results will be merged.
@@ -58,52 +72,7 @@ public class OldVariableGenerationUtility {
 
         // create variable assignments for old variables
         for (final FieldNode fieldNode : classNode.getFields())   {
-            if (fieldNode.getName().startsWith("$")) continue;
-
-            final ClassNode fieldType = ClassHelper.getWrapper(fieldNode.getType());
-
-            if (fieldType.getName().startsWith("java.lang") || ClassHelper.isPrimitiveType(fieldType) || fieldType.getName().startsWith("java.math") ||
-                    fieldType.getName().startsWith("java.util") ||
-                    fieldType.getName().startsWith("java.sql") ||
-                    fieldType.getName().equals("groovy.lang.GString")  ||
-                    fieldType.getName().equals("java.lang.String"))  {
-
-                MethodNode cloneMethod = fieldType.getMethod("clone", Parameter.EMPTY_ARRAY);
-                // if a clone classNode is available, the value is cloned
-                if (cloneMethod != null && fieldType.implementsInterface(ClassHelper.make("java.lang.Cloneable")))  {
-                    VariableExpression oldVariable = new VariableExpression("$old$" + fieldNode.getName(), fieldNode.getType());
-                    oldVariable.setAccessedVariable(oldVariable);
-
-                    final MethodCallExpression methodCall = new MethodCallExpression(new FieldExpression(fieldNode), "clone", ArgumentListExpression.EMPTY_ARGUMENTS);
-                    // return null if field is null
-                    methodCall.setSafe(true);
-
-                    ExpressionStatement oldVariableAssignment = new ExpressionStatement(
-                        new DeclarationExpression(oldVariable,
-                        Token.newSymbol(Types.ASSIGN, -1, -1),
-                                methodCall));
-
-                    methodBlockStatement.addStatement(oldVariableAssignment);
-                    oldVariablesMap.addMapEntryExpression(new MapEntryExpression(new ConstantExpression(oldVariable.getName().substring("$old$".length())), oldVariable));
-
-                } else if (ClassHelper.isPrimitiveType(fieldType)
-                        || ClassHelper.isNumberType(fieldType)
-                        || fieldType.getName().startsWith("java.math")
-                        || fieldType.getName().equals("groovy.lang.GString")
-                        || fieldType.getName().equals("java.lang.String")) {
-
-                    VariableExpression oldVariable = new VariableExpression("$old$" + fieldNode.getName(), fieldNode.getType());
-                    oldVariable.setAccessedVariable(oldVariable);
-
-                    ExpressionStatement oldVariableAssignment = new ExpressionStatement(
-                        new DeclarationExpression(oldVariable,
-                        Token.newSymbol(Types.ASSIGN, -1, -1),
-                        new FieldExpression(fieldNode)));
-
-                    methodBlockStatement.addStatement(oldVariableAssignment);
-                    oldVariablesMap.addMapEntryExpression(new MapEntryExpression(new ConstantExpression(oldVariable.getName().substring("$old$".length())), oldVariable));
-                }
-            }
+            addOldVariable(oldVariablesMap, fieldNode);
         }
 
         VariableExpression oldVariable = new VariableExpression("old", new ClassNode(Map.class));
@@ -118,6 +87,12 @@ public class OldVariableGenerationUtility {
 
         VariableExpression mergedOldVariables = null;
 
+        // contracted super classes of the current compilation might not have been processed yet
+        final ClassNode superClass = classNode.getSuperClass();
+        if (superClass != null && superClass.isPrimaryClassNode() && !superClass.getAnnotations(ClassHelper.makeWithoutCaching(Contracted.class)).isEmpty())  {
+            addOldVariableMethodNode(superClass);
+        }
+
         // let's ask the super class for old variables...
         if (classNode.getSuperClass() != null && classNode.getSuperClass().getMethod(OLD_VARIABLES_METHOD, Parameter.EMPTY_ARRAY) != null)  {
             mergedOldVariables = new VariableExpression("mergedOldVariables", new ClassNode(Map.class));
@@ -138,4 +113,460 @@ public class OldVariableGenerationUtility {
         preconditionMethodNode.setSynthetic(true);
 
     }
+
+    /**
+     * Creates the expression to be assigned to the <tt>old</tt> variable of the given postcondition
+     * <tt>methodNode</tt>. Only fields referenced via <tt>old</tt> by the given postcondition annotations are
+     * snapshot. If none is referenced, no snapshot is needed at all.
+     *
+     * @param classNode the {@link org.codehaus.groovy.ast.ClassNode} declaring <tt>methodNode</tt>
+     * @param methodNode the postcondition {@link org.codehaus.groovy.ast.MethodNode}
+     * @param annotationNodes all postcondition annotations evaluated in <tt>methodNode</tt>
+     *
+     * @return the expression computing the <tt>old</tt> variable, or <tt>null</tt> if it is not used
+     */
+    public static Expression createOldVariablesExpression(final ClassNode classNode, final MethodNode methodNode, final List<AnnotationNode> annotationNodes)  {
+        final Set<String> oldVariableNames = getOldVariableNames(annotationNodes);
+        if (oldVariableNames != null && oldVariableNames.isEmpty()) return null;
+
+        if (oldVariableNames != null)  {
+            final Set<String> sizeOnlyOldVariableNames = getSizeOnlyOldVariableNames(annotationNodes);
+            final List<FieldNode> fieldNodes = new ArrayList<FieldNode>();
+            final ArgumentListExpression values = new ArgumentListExpression();
+
+            boolean selective = true;
+            for (final String oldVariableName : oldVariableNames)  {
+                final FieldNode fieldNode = classNode.getField(oldVariableName);
+                if (fieldNode == null) continue;
+
+                // fields of super classes are merged in by the super class' old variables method
+                if (fieldNode.getOwner() != classNode || (methodNode.isStatic() && !fieldNode.isStatic()))  {
+                    selective = false;
+                    break;
+                }
+
+                final Expression value = sizeOnlyOldVariableNames.contains(oldVariableName) && isCollectionOrMap(fieldNode) ? getSizeSnapshot(fieldNode) : getOldVariableValue(fieldNode);
+                if (value == null) continue;
+
+                fieldNodes.add(fieldNode);
+                values.addExpression(value);
+            }
+
+            if (selective && fieldNodes.isEmpty()) return new MapExpression();
+            if (selective)  {
+                final ClassNode oldVariablesClassNode = getOldVariablesClass(classNode, fieldNodes, values);
+                rewriteOldVariableAccess(oldVariablesClassNode, methodNode);
+
+                final MethodCallExpression createOldVariables = new MethodCallExpression(new ClassExpression(oldVariablesClassNode), CREATE_METHOD, values);
+                createOldVariables.setMethodTarget(oldVariablesClassNode.getDeclaredMethods(CREATE_METHOD).get(0));
+
+                return createOldVariables;
+            }
+        }
+
+        return new MethodCallExpression(VariableExpression.THIS_EXPRESSION, OLD_VARIABLES_METHOD, ArgumentListExpression.EMPTY_ARGUMENTS);
+    }
+
+    /**
+     * Stores the names of all <tt>old</tt> variables the given annotation closure code refers to in the
+     * meta-data of the annotation closure class.
+     *
+     * @param closureClassNode the generated annotation closure {@link org.codehaus.groovy.ast.ClassNode}
+     * @param closureCode the annotation closure code
+     */
+    public static void addOldVariableNames(final ClassNode closureClassNode, final Statement closureCode)  {
+        final OldVariableNamesVisitor visitor = new OldVariableNamesVisitor();
+        closureCode.visit(visitor);
+
+        // if old is used in any other way, the closure might refer to all old variables
+        if (!visitor.isDynamicAccess())  {
+            closureClassNode.setNodeMetaData(META_DATA_OLD_VARIABLE_NAMES, visitor.getOldVariableNames());
+            closureClassNode.setNodeMetaData(META_DATA_SIZE_ONLY_OLD_VARIABLE_NAMES, visitor.getSizeOnlyOldVariableNames());
+        }
+    }
+
+    /**
+     * @param annotationNodes postcondition annotations
+     * @return the names of all <tt>old</tt> variables referenced by the given annotations, or <tt>null</tt> if
+     * at least one of them might refer to any <tt>old</tt> variable
+     */
+    public static Set<String> getOldVariableNames(final List<AnnotationNode> annotationNodes)  {
+        final Set<String> result = new LinkedHashSet<String>();
+        for (AnnotationNode annotationNode : annotationNodes)  {
+            final Expression closureExpression = annotationNode.getMember(BaseVisitor.CLOSURE_ATTRIBUTE_NAME);
+            if (!(closureExpression instanceof ClassExpression)) return null;
+
+            // annotation closures compiled separately have not been analysed
+            final Set<String> oldVariableNames = closureExpression.getType().getNodeMetaData(META_DATA_OLD_VARIABLE_NAMES);
+            if (oldVariableNames == null) return null;
+
+            result.addAll(oldVariableNames);
+        }
+
+        return result;
+    }
+
+    /**
+     * @param annotationNodes postcondition annotations, all of them referring to known <tt>old</tt> variables
+     * @return the names of the <tt>old</tt> variables the given annotations only call <tt>size()</tt> or
+     * <tt>isEmpty()</tt> on
+     */
+    public static Set<String> getSizeOnlyOldVariableNames(final List<AnnotationNode> annotationNodes)  {
+        final Set<String> result = new LinkedHashSet<String>();
+        final Set<String> otherOldVariableNames = new HashSet<String>();
+
+        for (AnnotationNode annotationNode : annotationNodes)  {
+            final ClassNode closureClassNode = annotationNode.getMember(BaseVisitor.CLOSURE_ATTRIBUTE_NAME).getType();
+            final Set<String> oldVariableNames = closureClassNode.getNodeMetaData(META_DATA_OLD_VARIABLE_NAMES);
+            final Set<String> sizeOnlyOldVariableNames = closureClassNode.getNodeMetaData(META_DATA_SIZE_ONLY_OLD_VARIABLE_NAMES);
+
+            for (String oldVariableName : oldVariableNames)  {
+                if (sizeOnlyOldVariableNames != null && sizeOnlyOldVariableNames.contains(oldVariableName))  {
+                    result.add(oldVariableName);
+                } else {
+                    otherOldVariableNames.add(oldVariableName);
+                }
+            }
+        }
+
+        result.removeAll(otherOldVariableNames);
+        return result;
+    }
+
+    private static void addOldVariable(final MapExpression oldVariablesMap, final FieldNode fieldNode)  {
+        final Expression value = getOldVariableValue(fieldNode);
+        if (value != null) oldVariablesMap.addMapEntryExpression(new MapEntryExpression(new ConstantExpression(fieldNode.getName()), value));
+    }
+
+    private static boolean isCollectionOrMap(final FieldNode fieldNode)  {
+        final ClassNode fieldType = fieldNode.getType();
+        return fieldType.getName().startsWith("java.util") && getOldVariableValue(fieldNode) != null &&
+                (fieldType.implementsInterface(ClassHelper.makeWithoutCaching(Collection.class)) || fieldType.implementsInterface(ClassHelper.MAP_TYPE) ||
+                        fieldType.equals(ClassHelper.makeWithoutCaching(Collection.class)) || fieldType.equals(ClassHelper.MAP_TYPE));
+    }
+
+    /**
+     * Postconditions which only call <tt>size()</tt> or <tt>isEmpty()</tt> on an <tt>old</tt> collection do not
+     * need a copy of the collection, its size is sufficient.
+     */
+    private static Expression getSizeSnapshot(final FieldNode fieldNode)  {
+        final ClassNode sizeSnapshotClassNode = ClassHelper.makeWithoutCaching(SizeSnapshot.class);
+
+        final MethodCallExpression sizeSnapshot = new MethodCallExpression(new ClassExpression(sizeSnapshotClassNode), "of", new ArgumentListExpression(new FieldExpression(fieldNode)));
+        sizeSnapshot.setMethodTarget(sizeSnapshotClassNode.getMethod("of", new Parameter[] { new Parameter(ClassHelper.OBJECT_TYPE, "value") }));
+
+        return sizeSnapshot;
+    }
+
+    private static Expression getOldVariableValue(final FieldNode fieldNode)  {
+        if (fieldNode.getName().startsWith("$")) return null;
+
+        final ClassNode fieldType = ClassHelper.getWrapper(fieldNode.getType());
+
+        if (fieldType.getName().startsWith("java.lang") || ClassHelper.isPrimitiveType(fieldType) || fieldType.getName().startsWith("java.math") ||
+                fieldType.getName().startsWith("java.util") ||
+                fieldType.getName().startsWith("java.sql") ||
+                fieldType.getName().equals("groovy.lang.GString")  ||
+                fieldType.getName().equals("java.lang.String"))  {
+
+            MethodNode cloneMethod = fieldType.getMethod("clone", Parameter.EMPTY_ARRAY);
+            // if a clone classNode is available, the value is cloned
+            if (cloneMethod != null && fieldType.implementsInterface(ClassHelper.make("java.lang.Cloneable")))  {
+                final MethodCallExpression methodCall = new MethodCallExpression(new FieldExpression(fieldNode), "clone", ArgumentListExpression.EMPTY_ARGUMENTS);
+                // return null if field is null
+                methodCall.setSafe(true);
+
+                return new CastExpression(fieldNode.getType().getPlainNodeReference(), methodCall);
+
+            } else if (ClassHelper.isPrimitiveType(fieldType)
+                    || ClassHelper.isNumberType(fieldType)
+                    || fieldType.getName().startsWith("java.math")
+                    || fieldType.getName().equals("groovy.lang.GString")
+                    || fieldType.getName().equals("java.lang.String")) {
+
+                return new FieldExpression(fieldNode);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Creates a holder class for the given fields of <tt>classNode</tt>, or returns the one created before.
+     * The holder keeps the field values in typed fields, primitive values are not boxed. Postconditions
+     * read them through direct calls of the generated <tt>$_gc_&lt;name&gt;</tt> methods.
+     */
+    private static ClassNode getOldVariablesClass(final ClassNode classNode, final List<FieldNode> fieldNodes, final ArgumentListExpression values)  {
+        Map<List<String>, ClassNode> oldVariablesClasses = classNode.getNodeMetaData(META_DATA_OLD_VARIABLES_CLASSES);
+        if (oldVariablesClasses == null)  {
+            oldVariablesClasses = new HashMap<List<String>, ClassNode>();
+            classNode.setNodeMetaData(META_DATA_OLD_VARIABLES_CLASSES, oldVariablesClasses);
+        }
+
+        final List<String> names = new ArrayList<String>();
+        final List<ClassNode> types = new ArrayList<ClassNode>();
+        for (int i = 0; i < fieldNodes.size(); i++)  {
+            final Expression value = values.getExpression(i);
+            final boolean isSizeSnapshot = value instanceof MethodCallExpression && ((MethodCallExpression) value).getMethodTarget() != null &&
+                    ((MethodCallExpression) value).getMethodTarget().getDeclaringClass().getName().equals(SizeSnapshot.class.getName());
+
+            names.add(isSizeSnapshot ? fieldNodes.get(i).getName() + "#size" : fieldNodes.get(i).getName());
+            types.add(isSizeSnapshot ? ClassHelper.makeWithoutCaching(SizeSnapshot.class) : fieldNodes.get(i).getType().getPlainNodeReference());
+        }
+
+        ClassNode oldVariablesClassNode = oldVariablesClasses.get(names);
+        if (oldVariablesClassNode != null) return oldVariablesClassNode;
+
+        oldVariablesClassNode = new ClassNode(classNode.getName() + OLD_VARIABLES_CLASS_SUFFIX + (oldVariablesClasses.size() + 1), Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SYNTHETIC, ClassHelper.makeWithoutCaching(OldVariables.class));
+        oldVariablesClassNode.setSynthetic(true);
+
+        final List<Expression> keys = new ArrayList<Expression>();
+        final List<Parameter> parameters = new ArrayList<Parameter>();
+        final BlockStatement fillBlockStatement = new BlockStatement();
+        final BlockStatement valueBlockStatement = new BlockStatement();
+        final Parameter index = new Parameter(ClassHelper.int_TYPE, "index");
+
+        for (FieldNode fieldNode : fieldNodes)  {
+            final ClassNode type = types.get(keys.size());
+            final FieldNode oldVariableField = oldVariablesClassNode.addField(fieldNode.getName(), Opcodes.ACC_PRIVATE | Opcodes.ACC_SYNTHETIC, type, null);
+            final Parameter parameter = new Parameter(type, fieldNode.getName());
+
+            fillBlockStatement.addStatement(new ExpressionStatement(
+                    new BinaryExpression(new FieldExpression(oldVariableField), Token.newSymbol(Types.ASSIGN, -1, -1), new VariableExpression(parameter))));
+
+            valueBlockStatement.addStatement(new IfStatement(
+                    new BooleanExpression(new BinaryExpression(new VariableExpression(index), Token.newSymbol(Types.COMPARE_EQUAL, -1, -1), new ConstantExpression(keys.size()))),
+                    new ReturnStatement(new FieldExpression(oldVariableField)),
+                    EmptyStatement.INSTANCE));
+
+            addMethod(oldVariablesClassNode, GETTER_PREFIX + fieldNode.getName(), Opcodes.ACC_PUBLIC, type, Parameter.EMPTY_ARRAY, new ReturnStatement(new FieldExpression(oldVariableField)));
+
+            keys.add(new ConstantExpression(fieldNode.getName()));
+            parameters.add(parameter);
+        }
+        valueBlockStatement.addStatement(new ReturnStatement(ConstantExpression.NULL));
+
+        final FieldNode keysField = oldVariablesClassNode.addField("$_gc_keys", Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL | Opcodes.ACC_SYNTHETIC, ClassHelper.STRING_TYPE.makeArray(), new ArrayExpression(ClassHelper.STRING_TYPE, keys));
+        final FieldNode prototypeField = oldVariablesClassNode.addField("$_gc_prototype", Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL | Opcodes.ACC_SYNTHETIC, oldVariablesClassNode, new ConstructorCallExpression(oldVariablesClassNode, ArgumentListExpression.EMPTY_ARGUMENTS));
+
+        addMethod(oldVariablesClassNode, "keys", Opcodes.ACC_PROTECTED, ClassHelper.STRING_TYPE.makeArray(), Parameter.EMPTY_ARRAY, new ReturnStatement(new FieldExpression(keysField)));
+        addMethod(oldVariablesClassNode, "value", Opcodes.ACC_PROTECTED, ClassHelper.OBJECT_TYPE, new Parameter[] { index }, valueBlockStatement);
+
+        fillBlockStatement.addStatement(new ReturnStatement(VariableExpression.THIS_EXPRESSION));
+        final MethodNode fillMethod = addMethod(oldVariablesClassNode, "$_gc_fill", Opcodes.ACC_PUBLIC, oldVariablesClassNode, parameters.toArray(new Parameter[parameters.size()]), fillBlockStatement);
+
+        // copies the prototype instead of calling the constructor dynamically
+        final MethodCallExpression copy = new MethodCallExpression(new FieldExpression(prototypeField), "copy", ArgumentListExpression.EMPTY_ARGUMENTS);
+        copy.setMethodTarget(ClassHelper.makeWithoutCaching(OldVariables.class).getMethod("copy", Parameter.EMPTY_ARRAY));
+
+        final ArgumentListExpression fillArguments = new ArgumentListExpression();
+        final Parameter[] createParameters = new Parameter[parameters.size()];
+        for (int i = 0; i < createParameters.length; i++)  {
+            createParameters[i] = new Parameter(parameters.get(i).getType(), parameters.get(i).getName());
+            fillArguments.addExpression(new VariableExpression(createParameters[i]));
+        }
+
+        final MethodCallExpression fill = new MethodCallExpression(copy, fillMethod.getName(), fillArguments);
+        fill.setMethodTarget(fillMethod);
+
+        addMethod(oldVariablesClassNode, CREATE_METHOD, Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, oldVariablesClassNode, createParameters, new ReturnStatement(fill));
+
+        oldVariablesClassNode.setSourcePosition(classNode);
+        // during parallel transformation, generated classes are added to the module later on
+        final List<ClassNode> pendingClassNodes = classNode.getNodeMetaData(META_DATA_PENDING_CLASSES);
+        if (pendingClassNodes != null) pendingClassNodes.add(oldVariablesClassNode);
+        else classNode.getModule().addClass(oldVariablesClassNode);
+        oldVariablesClasses.put(names, oldVariablesClassNode);
+
+        return oldVariablesClassNode;
+    }
+
+    private static MethodNode addMethod(final ClassNode classNode, final String name, final int modifiers, final ClassNode returnType, final Parameter[] parameters, final Statement code)  {
+        final MethodNode methodNode = classNode.addMethod(name, modifiers | Opcodes.ACC_SYNTHETIC, returnType, parameters, ClassNode.EMPTY_ARRAY, code);
+        methodNode.setSynthetic(true);
+        return methodNode;
+    }
+
+    /**
+     * Replaces <tt>old.name</tt> accesses in the postconditions declared on <tt>methodNode</tt> with direct calls of
+     * the typed getters of the given holder. The map access is kept for any other <tt>old</tt> value, e.g. when the
+     * annotation closure is evaluated by an heir.
+     */
+    private static void rewriteOldVariableAccess(final ClassNode oldVariablesClassNode, final MethodNode methodNode)  {
+        final ClassNode postconditionClassNode = ClassHelper.makeWithoutCaching(Postcondition.class);
+        final OldVariableAccessTransformer transformer = new OldVariableAccessTransformer(oldVariablesClassNode);
+
+        for (AnnotationNode annotationNode : methodNode.getAnnotations())  {
+            if (annotationNode.getClassNode().getAnnotations(postconditionClassNode).isEmpty()) continue;
+
+            final Expression closureExpression = annotationNode.getMember(BaseVisitor.CLOSURE_ATTRIBUTE_NAME);
+            if (!(closureExpression instanceof ClassExpression)) continue;
+
+            final ClassNode closureClassNode = closureExpression.getType();
+            if (!closureClassNode.isPrimaryClassNode() || closureClassNode.getNodeMetaData(META_DATA_OLD_VARIABLES_CLASS) != null) continue;
+            closureClassNode.setNodeMetaData(META_DATA_OLD_VARIABLES_CLASS, oldVariablesClassNode);
+
+            for (MethodNode doCall : closureClassNode.getDeclaredMethods("doCall"))  {
+                if (doCall.getCode() != null) doCall.getCode().visit(transformer);
+            }
+
+            final MethodNode contractBodyMethod = StaticContractGenerationUtility.getContractBodyMethod(closureClassNode);
+            if (contractBodyMethod != null) contractBodyMethod.getCode().visit(transformer);
+
+            final BlockStatement inlineBlockStatement = closureExpression.getNodeMetaData(AnnotationClosureVisitor.META_DATA_ORIGINAL_TRY_CATCH_BLOCK);
+            if (inlineBlockStatement != null) inlineBlockStatement.visit(transformer);
+        }
+    }
+
+    private static String getOldVariableName(final Expression expression)  {
+        Expression objectExpression = null;
+        Expression key = null;
+
+        if (expression instanceof PropertyExpression)  {
+            objectExpression = ((PropertyExpression) expression).getObjectExpression();
+            key = ((PropertyExpression) expression).getProperty();
+        } else if (expression instanceof BinaryExpression && ((BinaryExpression) expression).getOperation().getType() == Types.LEFT_SQUARE_BRACKET)  {
+            objectExpression = ((BinaryExpression) expression).getLeftExpression();
+            key = ((BinaryExpression) expression).getRightExpression();
+        } else if (expression instanceof MethodCallExpression && "get".equals(((MethodCallExpression) expression).getMethodAsString())
+                && ((MethodCallExpression) expression).getArguments() instanceof TupleExpression)  {
+            final List<Expression> arguments = ((TupleExpression) ((MethodCallExpression) expression).getArguments()).getExpressions();
+            if (arguments.size() != 1) return null;
+
+            objectExpression = ((MethodCallExpression) expression).getObjectExpression();
+            key = arguments.get(0);
+        }
+
+        if (!isOldVariable(objectExpression)) return null;
+        if (!(key instanceof ConstantExpression) || !(((ConstantExpression) key).getValue() instanceof String)) return null;
+
+        return (String) ((ConstantExpression) key).getValue();
+    }
+
+    private static String getSizeOnlyOldVariableName(final MethodCallExpression call)  {
+        if (!"size".equals(call.getMethodAsString()) && !"isEmpty".equals(call.getMethodAsString())) return null;
+        if (!(call.getArguments() instanceof TupleExpression) || !((TupleExpression) call.getArguments()).getExpressions().isEmpty()) return null;
+
+        return getOldVariableName(call.getObjectExpression());
+    }
+
+    private static boolean isOldVariable(final Expression expression)  {
+        return expression instanceof VariableExpression && "old".equals(((VariableExpression) expression).getName());
+    }
+
+    /**
+     * Replaces <tt>old.name</tt> with <tt>old instanceof Holder ? old.$_gc_name() : old.name</tt>.
+     */
+    private static class OldVariableAccessTransformer extends ClassCodeExpressionTransformer {
+
+        private final ClassNode oldVariablesClassNode;
+
+        public OldVariableAccessTransformer(final ClassNode oldVariablesClassNode)  {
+            this.oldVariablesClassNode = oldVariablesClassNode;
+        }
+
+        @Override
+        protected SourceUnit getSourceUnit() {
+            return null;
+        }
+
+        @Override
+        public Expression transform(Expression expression) {
+            if (expression == null) return null;
+
+            final String oldVariableName = getOldVariableName(expression);
+            final List<MethodNode> getters = oldVariableName != null ? oldVariablesClassNode.getDeclaredMethods(GETTER_PREFIX + oldVariableName) : Collections.<MethodNode>emptyList();
+            if (getters.isEmpty()) return expression.transformExpression(this);
+
+            final VariableExpression oldVariable = copyOldVariable(expression);
+            oldVariable.setSourcePosition(getOldVariable(expression));
+
+            final MethodCallExpression getter = new MethodCallExpression(oldVariable, getters.get(0).getName(), ArgumentListExpression.EMPTY_ARGUMENTS);
+            getter.setImplicitThis(false);
+            getter.setMethodTarget(getters.get(0));
+            // power assertions render the value of the getter call where the map access has been
+            getter.getMethod().setSourcePosition(expression instanceof PropertyExpression ? ((PropertyExpression) expression).getProperty() : expression instanceof MethodCallExpression ? ((MethodCallExpression) expression).getMethod() : expression);
+
+            final TernaryExpression ternaryExpression = new TernaryExpression(
+                    new BooleanExpression(new BinaryExpression(copyOldVariable(expression), Token.newSymbol(Types.KEYWORD_INSTANCEOF, -1, -1), new ClassExpression(oldVariablesClassNode))),
+                    getter,
+                    expression);
+            ternaryExpression.setSourcePosition(expression);
+
+            return ternaryExpression;
+        }
+
+        private VariableExpression getOldVariable(final Expression expression)  {
+            return (VariableExpression) (expression instanceof BinaryExpression ? ((BinaryExpression) expression).getLeftExpression() : expression instanceof PropertyExpression ? ((PropertyExpression) expression).getObjectExpression() : ((MethodCallExpression) expression).getObjectExpression());
+        }
+
+        private VariableExpression copyOldVariable(final Expression expression)  {
+            final VariableExpression oldVariable = getOldVariable(expression);
+
+            final VariableExpression result = new VariableExpression(oldVariable.getName(), oldVariable.getOriginType());
+            result.setAccessedVariable(oldVariable.getAccessedVariable());
+            result.setClosureSharedVariable(oldVariable.isClosureSharedVariable());
+            return result;
+        }
+    }
+
+    /**
+     * Collects constant keys of <tt>old.name</tt>, <tt>old['name']</tt> and <tt>old.get('name')</tt> expressions.
+     */
+    private static class OldVariableNamesVisitor extends CodeVisitorSupport {
+
+        private final Set<String> oldVariableNames = new LinkedHashSet<String>();
+        private final Set<String> sizeOnlyOldVariableNames = new LinkedHashSet<String>();
+        private boolean dynamicAccess = false;
+
+        @Override
+        public void visitPropertyExpression(PropertyExpression expression) {
+            if (!addOldVariableName(expression)) super.visitPropertyExpression(expression);
+        }
+
+        @Override
+        public void visitBinaryExpression(BinaryExpression expression) {
+            if (!addOldVariableName(expression)) super.visitBinaryExpression(expression);
+        }
+
+        @Override
+        public void visitMethodCallExpression(MethodCallExpression call) {
+            final String oldVariableName = getSizeOnlyOldVariableName(call);
+            if (oldVariableName != null)  {
+                sizeOnlyOldVariableNames.add(oldVariableName);
+                return;
+            }
+
+            if (!addOldVariableName(call)) super.visitMethodCallExpression(call);
+        }
+
+        @Override
+        public void visitVariableExpression(VariableExpression expression) {
+            if (isOldVariable(expression)) dynamicAccess = true;
+        }
+
+        private boolean addOldVariableName(Expression expression)  {
+            final String oldVariableName = getOldVariableName(expression);
+            if (oldVariableName == null) return false;
+
+            oldVariableNames.add(oldVariableName);
+            return true;
+        }
+
+        public Set<String> getOldVariableNames() {
+            final Set<String> result = new LinkedHashSet<String>(oldVariableNames);
+            result.addAll(sizeOnlyOldVariableNames);
+            return result;
+        }
+
+        public Set<String> getSizeOnlyOldVariableNames() {
+            final Set<String> result = new LinkedHashSet<String>(sizeOnlyOldVariableNames);
+            result.removeAll(oldVariableNames);
+            return result;
+        }
+
+        public boolean isDynamicAccess() {
+            return dynamicAccess;
+        }
+    }
 }
@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2013, Andre Steingress
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1.) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 2.) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 3.) Neither the name of Andre Steingress nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.gcontracts.generation;
+
+import java.util.*;
+
+/**
+ * <p>Base class of the generated <tt>old</tt> variable holders. A holder keeps the values of the fields a
+ * postcondition refers to in typed fields, the {@link java.util.Map} view is only used by
+ * postconditions accessing <tt>old</tt> dynamically.</p>
+ *
+ * @see OldVariableGenerationUtility
+ *
+ * @author ast
+ */
+public abstract class OldVariables extends AbstractMap<String, Object> implements Cloneable {
+
+    /**
+     * @return the names of the fields kept by this holder
+     */
+    protected abstract String[] keys();
+
+    /**
+     * @param index the index of a name returned by {@link #keys()}
+     * @return the (boxed) value of the field with the given index
+     */
+    protected abstract Object value(int index);
+
+    /**
+     * Creates a shallow copy of this holder, generated holders copy a prototype instead of
+     * calling a constructor dynamically.
+     *
+     * @return a copy of this holder
+     */
+    public OldVariables copy()  {
+        try {
+            return (OldVariables) super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public Object get(Object key) {
+        final String[] keys = keys();
+        for (int i = 0; i < keys.length; i++)  {
+            if (keys[i].equals(key)) return value(i);
+        }
+
+        return null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return Arrays.asList(keys()).contains(key);
+    }
+
+    @Override
+    public int size() {
+        return keys().length;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        final String[] keys = keys();
+
+        final Map<String, Object> values = new LinkedHashMap<String, Object>();
+        for (int i = 0; i < keys.length; i++)  {
+            values.put(keys[i], value(i));
+        }
+
+        return Collections.unmodifiableMap(values).entrySet();
+    }
+}
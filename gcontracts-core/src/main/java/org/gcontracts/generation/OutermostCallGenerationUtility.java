@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2013, Andre Steingress
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1.) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 2.) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 3.) Neither the name of Andre Steingress nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.gcontracts.generation;
+
+import org.codehaus.groovy.ast.ClassHelper;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.MethodNode;
+import org.codehaus.groovy.ast.Parameter;
+import org.codehaus.groovy.ast.VariableScope;
+import org.codehaus.groovy.ast.expr.*;
+import org.codehaus.groovy.ast.stmt.BlockStatement;
+import org.codehaus.groovy.ast.stmt.ExpressionStatement;
+import org.codehaus.groovy.ast.stmt.Statement;
+import org.codehaus.groovy.ast.stmt.TryCatchStatement;
+import org.codehaus.groovy.syntax.Token;
+import org.codehaus.groovy.syntax.Types;
+
+import java.util.Arrays;
+
+/**
+ * <p>Restricts contract checks to the outermost call into an object, see {@link OutermostCallTracker}.</p>
+ *
+ * <p>Methods are marked before contracts are injected. Contract guards of marked methods additionally check the
+ * <tt>$_gc_outermost</tt> local variable, after all contracts have been injected it is declared in every method
+ * using it and the method code is wrapped with calls to {@link OutermostCallTracker}.</p>
+ *
+ * @author ast
+ */
+public final class OutermostCallGenerationUtility {
+
+    public static final String OUTERMOST_VARIABLE_NAME = "$_gc_outermost";
+
+    public static final String META_DATA_OUTERMOST_CALL = "org.gcontracts.OUTERMOST_CALL";
+
+    private OutermostCallGenerationUtility() {}
+
+    /**
+     * Marks all methods of the given <tt>type</tt> whose contracts should only be checked by outermost calls.
+     *
+     * @param type the {@link org.codehaus.groovy.ast.ClassNode} whose methods are marked
+     */
+    public static void markMethods(final ClassNode type)  {
+        for (MethodNode methodNode : type.getMethods())  {
+            if (methodNode.getCode() == null || !CandidateChecks.isPreconditionCandidate(type, methodNode)) continue;
+
+            methodNode.putNodeMetaData(META_DATA_OUTERMOST_CALL, Boolean.FALSE);
+        }
+    }
+
+    /**
+     * @param methodNode the {@link org.codehaus.groovy.ast.MethodNode} a contract check is generated for
+     *
+     * @return a reference to the <tt>$_gc_outermost</tt> variable or <tt>null</tt> if the given <tt>methodNode</tt>
+     * checks its contracts at every call
+     */
+    public static VariableExpression getOutermostCall(final MethodNode methodNode)  {
+        if (methodNode.getNodeMetaData(META_DATA_OUTERMOST_CALL) == null) return null;
+        methodNode.putNodeMetaData(META_DATA_OUTERMOST_CALL, Boolean.TRUE);
+
+        final VariableExpression outermostCall = new VariableExpression(OUTERMOST_VARIABLE_NAME, ClassHelper.boolean_TYPE);
+        outermostCall.setAccessedVariable(outermostCall);
+
+        return outermostCall;
+    }
+
+    /**
+     * Wraps all methods of the given <tt>type</tt> whose contract checks refer to <tt>$_gc_outermost</tt> with calls
+     * to {@link OutermostCallTracker}.
+     *
+     * @param type the {@link org.codehaus.groovy.ast.ClassNode} whose methods are wrapped
+     */
+    public static void addCallTracking(final ClassNode type)  {
+        for (MethodNode methodNode : type.getMethods())  {
+            final Boolean used = methodNode.getNodeMetaData(META_DATA_OUTERMOST_CALL);
+            if (used == null) continue;
+
+            methodNode.removeNodeMetaData(META_DATA_OUTERMOST_CALL);
+            if (!used) continue;
+
+            final Expression trackedObject = methodNode.isStatic() ? new ClassExpression(type) : VariableExpression.THIS_EXPRESSION;
+
+            final VariableExpression outermostCall = new VariableExpression(OUTERMOST_VARIABLE_NAME, ClassHelper.boolean_TYPE);
+            outermostCall.setAccessedVariable(outermostCall);
+
+            final BlockStatement code = new BlockStatement();
+            code.addStatement(new ExpressionStatement(new DeclarationExpression(outermostCall, Token.newSymbol(Types.ASSIGN, -1, -1), callOutermostCallTracker("enter", trackedObject))));
+            code.addStatement(new TryCatchStatement(methodNode.getCode(), new BlockStatement(Arrays.<Statement>asList(
+                    new ExpressionStatement(callOutermostCallTracker("exit", trackedObject))
+            ), new VariableScope())));
+            code.setSourcePosition(methodNode.getCode());
+
+            methodNode.setCode(code);
+        }
+    }
+
+    private static MethodCallExpression callOutermostCallTracker(final String methodName, final Expression trackedObject)  {
+        final ClassNode outermostCallTrackerClassNode = ClassHelper.makeWithoutCaching(OutermostCallTracker.class);
+
+        final MethodCallExpression methodCallExpression = new MethodCallExpression(new ClassExpression(outermostCallTrackerClassNode), methodName, new ArgumentListExpression(trackedObject));
+        methodCallExpression.setMethodTarget(outermostCallTrackerClassNode.getMethod(methodName, new Parameter[] { new Parameter(ClassHelper.OBJECT_TYPE, "object") }));
+
+        return methodCallExpression;
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) 2013, Andre Steingress
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1.) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 2.) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 3.) Neither the name of Andre Steingress nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.gcontracts.generation;
+
+import java.util.Arrays;
+
+/**
+ * <p>Keeps track of the objects a thread is currently executing contracted methods of.</p>
+ *
+ * <p>If classes are compiled with the <tt>gcontracts.compile.outermost</tt> property, contracted methods enter their
+ * instance, or their class for static methods, before anything else is evaluated and exit it when they complete.
+ * Preconditions, postconditions and class invariants are only checked by the outermost call into an object, calls
+ * of the object to itself and recursive calls skip them, as in Eiffel.</p>
+ *
+ * @author ast
+ */
+public final class OutermostCallTracker {
+
+    /**
+     * Per-thread stack of the entered objects and their call depth. The stack holds one entry per object and is
+     * usually very small, it is searched by identity from the top.
+     */
+    static final class CallDepths {
+
+        private Object[] objects = new Object[8];
+        private int[] depths = new int[8];
+        private int size;
+
+        boolean enter(Object object)  {
+            for (int i = size - 1; i >= 0; i--)  {
+                if (objects[i] == object)  {
+                    depths[i]++;
+                    return false;
+                }
+            }
+
+            if (size == objects.length)  {
+                objects = Arrays.copyOf(objects, size << 1);
+                depths = Arrays.copyOf(depths, size << 1);
+            }
+
+            objects[size] = object;
+            depths[size] = 1;
+            size++;
+
+            return true;
+        }
+
+        void exit(Object object)  {
+            for (int i = size - 1; i >= 0; i--)  {
+                if (objects[i] != object) continue;
+                if (--depths[i] > 0) return;
+
+                size--;
+                System.arraycopy(objects, i + 1, objects, i, size - i);
+                System.arraycopy(depths, i + 1, depths, i, size - i);
+                objects[size] = null;
+
+                return;
+            }
+        }
+    }
+
+    static class CallDepthsThreadLocal extends ThreadLocal<CallDepths> {
+
+        @Override
+        protected CallDepths initialValue() {
+            return new CallDepths();
+        }
+    }
+
+    private static final ThreadLocal<CallDepths> callDepths = new CallDepthsThreadLocal();
+
+    private OutermostCallTracker() {}
+
+    /**
+     * Used within generated code when a contracted method is entered.
+     *
+     * @param object the instance the method is called on, or its class for static methods
+     * @return whether this is the outermost call into the given object on the current thread
+     */
+    public static boolean enter(Object object)  {
+        return callDepths.get().enter(object);
+    }
+
+    /**
+     * Used within generated code when a contracted method completes, normally or abruptly.
+     *
+     * @param object the object given to {@link #enter(Object)}
+     */
+    public static void exit(Object object)  {
+        callDepths.get().exit(object);
+    }
+}
@@ -30,8 +30,8 @@ import org.codehaus.groovy.syntax.Token;
 import org.codehaus.groovy.syntax.Types;
 import org.gcontracts.annotations.meta.Postcondition;
 import org.gcontracts.ast.visitor.AnnotationClosureVisitor;
-import org.gcontracts.ast.visitor.BaseVisitor;
 import org.gcontracts.util.AnnotationUtils;
+import org.gcontracts.util.ExpressionUtils;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -46,6 +46,9 @@ import java.util.Map;
  */
 public class PostconditionGenerator extends BaseGenerator {
 
+    public static final String META_DATA_SAMPLED_VARIABLE = "org.gcontracts.SAMPLED_VARIABLE";
+    public static final String SAMPLED_VARIABLE_NAME = "$_gc_sampled";
+
     public PostconditionGenerator(final ReaderSource source) {
         super(source);
     }
@@ -69,8 +72,9 @@ public class PostconditionGenerator extends BaseGenerator {
      */
     public void generatePostconditionAssertionStatement(MethodNode method, org.gcontracts.domain.Postcondition postcondition)  {
 
-        final BooleanExpression postconditionBooleanExpression = addCallsToSuperMethodNodeAnnotationClosure(method.getDeclaringClass(), method, Postcondition.class, postcondition.booleanExpression(), true);
-
+        final BooleanExpression postconditionBooleanExpression = ExpressionUtils.fold(addCallsToSuperMethodNodeAnnotationClosure(method.getDeclaringClass(), method, Postcondition.class, postcondition.booleanExpression(), true));
+        // a postcondition folding to true never fails, neither old values nor the result need to be kept
+        if (ExpressionUtils.isConstant(postconditionBooleanExpression, true)) return;
 
         BlockStatement blockStatement;
         final BlockStatement originalBlockStatement = postcondition.originalBlockStatement();
@@ -79,7 +83,7 @@ public class PostconditionGenerator extends BaseGenerator {
         final boolean useExecutionTracker = originalBlockStatement == null || Boolean.TRUE.equals(originalBlockStatement.getNodeMetaData(AnnotationClosureVisitor.META_DATA_USE_EXECUTION_TRACKER));
 
         if (!useExecutionTracker && Boolean.TRUE.equals(method.getNodeMetaData(META_DATA_USE_INLINE_MODE)))  {
-            blockStatement = getInlineModeBlockStatement(originalBlockStatement);
+            blockStatement = getInlineModeBlockStatement(method.getDeclaringClass(), method, originalBlockStatement, "postcondition");
         } else {
             blockStatement = wrapAssertionBooleanExpression(method.getDeclaringClass(), method, postconditionBooleanExpression, "postcondition");
         }
@@ -102,21 +106,60 @@ public class PostconditionGenerator extends BaseGenerator {
 
         // if another post-condition is available we need to add a default expression of TRUE
         // since post-conditions are usually connected with a logical AND
-        final BooleanExpression postconditionBooleanExpression = addCallsToSuperMethodNodeAnnotationClosure(method.getDeclaringClass(), method, Postcondition.class, new BooleanExpression(ConstantExpression.TRUE), true);
-        if (postconditionBooleanExpression.getExpression() == ConstantExpression.TRUE) return;
+        final BooleanExpression postconditionBooleanExpression = ExpressionUtils.fold(addCallsToSuperMethodNodeAnnotationClosure(method.getDeclaringClass(), method, Postcondition.class, new BooleanExpression(ConstantExpression.TRUE), true));
+        if (ExpressionUtils.isConstant(postconditionBooleanExpression, true)) return;
 
         final BlockStatement blockStatement = wrapAssertionBooleanExpression(type, method, postconditionBooleanExpression, "postcondition");
         addPostcondition(method, blockStatement);
     }
 
+    /**
+     * Postconditions are sampled once, before the method body is executed, and the result is kept in a local
+     * variable. Old values are only stored if the postcondition is going to be evaluated.
+     */
+    @Override
+    protected Expression getContractGuard(final ClassNode type, final MethodNode methodNode, final String assertionType)  {
+        // statements must not be inserted in front of the super constructor call
+        if (methodNode instanceof ConstructorNode) return super.getContractGuard(type, methodNode, assertionType);
+
+        VariableExpression sampledVariableExpression = methodNode.getNodeMetaData(META_DATA_SAMPLED_VARIABLE);
+        if (sampledVariableExpression == null)  {
+            sampledVariableExpression = new VariableExpression(SAMPLED_VARIABLE_NAME, ClassHelper.boolean_TYPE);
+            sampledVariableExpression.setAccessedVariable(sampledVariableExpression);
+            methodNode.setNodeMetaData(META_DATA_SAMPLED_VARIABLE, sampledVariableExpression);
+        }
+
+        final VariableExpression result = new VariableExpression(SAMPLED_VARIABLE_NAME, ClassHelper.boolean_TYPE);
+        result.setAccessedVariable(sampledVariableExpression);
+
+        return result;
+    }
+
+    private List<AnnotationNode> getPostconditionAnnotations(final MethodNode method)  {
+        final ClassNode postconditionClassNode = ClassHelper.makeWithoutCaching(Postcondition.class);
+
+        final List<AnnotationNode> result = new ArrayList<AnnotationNode>();
+        for (AnnotationNode annotation : method.getAnnotations())  {
+            if (annotation.getClassNode().getAnnotations(postconditionClassNode).size() > 0) result.add(annotation);
+        }
+
+        if (method.getDeclaringClass().getSuperClass() != null)  {
+            result.addAll(AnnotationUtils.getAnnotationNodeInHierarchyWithMetaAnnotation(method.getDeclaringClass().getSuperClass(), method, postconditionClassNode));
+        }
+
+        return result;
+    }
+
     private void addPostcondition(MethodNode method, BlockStatement postconditionBlockStatement) {
         final BlockStatement methodCode = ((BlockStatement) method.getCode());
 
         // if return type is not void, than a "result" variable is provided in the postcondition expression
         final List<Statement> statements = methodCode.getStatements();
         if (statements.size() > 0)  {
-            VariableExpression enabledVariableExpression = new VariableExpression(BaseVisitor.GCONTRACTS_ENABLED_VAR, ClassHelper.boolean_TYPE);
-            enabledVariableExpression.setAccessedVariable(enabledVariableExpression);
+            // only the fields referred to by old.<name> in the evaluated postconditions are snapshot
+            final Expression oldVariablesExpression = OldVariableGenerationUtility.createOldVariablesExpression(method.getDeclaringClass(), method, getPostconditionAnnotations(method));
+
+            final Expression enabledVariableExpression = getContractGuard(method.getDeclaringClass(), method, "postcondition");
 
             if (method.getReturnType() != ClassHelper.VOID_TYPE)  {
                 List<ReturnStatement> returnStatements = AssertStatementCreationUtility.getReturnStatements(method);
@@ -145,13 +188,16 @@ public class PostconditionGenerator extends BaseGenerator {
                 ExpressionStatement oldVariabeStatement = new ExpressionStatement(
                         new BinaryExpression(oldVariableExpression,
                                 Token.newSymbol(Types.ASSIGN, -1, -1),
-                                new MethodCallExpression(VariableExpression.THIS_EXPRESSION, OldVariableGenerationUtility.OLD_VARIABLES_METHOD, ArgumentListExpression.EMPTY_ARGUMENTS)));
-
-                final BlockStatement oldVariableIfBlock = new BlockStatement();
-                oldVariableIfBlock.addStatement(oldVariabeStatement);
+                                oldVariablesExpression));
 
                 methodCode.getStatements().add(0, new ExpressionStatement(new DeclarationExpression(oldVariableExpression, Token.newSymbol(Types.ASSIGN, -1, -1), ConstantExpression.NULL)));
-                methodCode.getStatements().add(1, new IfStatement(new BooleanExpression(enabledVariableExpression), oldVariableIfBlock, new BlockStatement()));
+
+                if (oldVariablesExpression != null)  {
+                    final BlockStatement oldVariableIfBlock = new BlockStatement();
+                    oldVariableIfBlock.addStatement(oldVariabeStatement);
+
+                    methodCode.getStatements().add(1, new IfStatement(new BooleanExpression(enabledVariableExpression), oldVariableIfBlock, new BlockStatement()));
+                }
 
             } else if (method instanceof ConstructorNode) {
                 methodCode.addStatements(postconditionBlockStatement.getStatements());
@@ -164,16 +210,23 @@ public class PostconditionGenerator extends BaseGenerator {
                 ExpressionStatement oldVariabeStatement = new ExpressionStatement(
                         new BinaryExpression(oldVariableExpression,
                                 Token.newSymbol(Types.ASSIGN, -1, -1),
-                                new MethodCallExpression(VariableExpression.THIS_EXPRESSION, OldVariableGenerationUtility.OLD_VARIABLES_METHOD, ArgumentListExpression.EMPTY_ARGUMENTS)));
+                                oldVariablesExpression));
 
-                final BlockStatement oldVariableIfBlock = new BlockStatement();
-                oldVariableIfBlock.addStatement(oldVariabeStatement);
+                if (oldVariablesExpression != null)  {
+                    final BlockStatement oldVariableIfBlock = new BlockStatement();
+                    oldVariableIfBlock.addStatement(oldVariabeStatement);
 
-                methodCode.getStatements().add(0, new IfStatement(new BooleanExpression(enabledVariableExpression), oldVariableIfBlock, new BlockStatement()));
+                    methodCode.getStatements().add(0, new IfStatement(new BooleanExpression(enabledVariableExpression), oldVariableIfBlock, new BlockStatement()));
+                }
                 methodCode.getStatements().add(0, new ExpressionStatement(new DeclarationExpression(oldVariableExpression, Token.newSymbol(Types.ASSIGN, -1, -1), ConstantExpression.NULL)));
 
                 methodCode.addStatements(postconditionBlockStatement.getStatements());
             }
+
+            final VariableExpression sampledVariableExpression = method.getNodeMetaData(META_DATA_SAMPLED_VARIABLE);
+            if (sampledVariableExpression != null && !(method instanceof ConstructorNode))  {
+                methodCode.getStatements().add(0, new ExpressionStatement(new DeclarationExpression(sampledVariableExpression, Token.newSymbol(Types.ASSIGN, -1, -1), super.getContractGuard(method.getDeclaringClass(), method, "postcondition"))));
+            }
         }
     }
 }
@@ -0,0 +1,225 @@
+/**
+ * Copyright (c) 2013, Andre Steingress
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1.) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 2.) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 3.) Neither the name of Andre Steingress nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.gcontracts.generation;
+
+import org.codehaus.groovy.ast.*;
+import org.codehaus.groovy.ast.expr.*;
+import org.codehaus.groovy.ast.stmt.BlockStatement;
+import org.codehaus.groovy.ast.stmt.ExpressionStatement;
+import org.codehaus.groovy.ast.stmt.ReturnStatement;
+import org.codehaus.groovy.ast.stmt.Statement;
+import org.gcontracts.annotations.PurePrecondition;
+import org.gcontracts.util.AnnotationUtils;
+import org.objectweb.asm.Opcodes;
+
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * <p>Generates the methods which allow callers to check a precondition once instead of on every call, see
+ * {@link org.gcontracts.annotations.PurePrecondition}.</p>
+ *
+ * <p>A precondition qualifies if all its annotation closures only refer to parameters and final fields, and if
+ * the method cannot be overridden. Otherwise an heir could weaken the precondition or replace the method body
+ * behind the back of a caller using the generated methods.</p>
+ *
+ * @author ast
+ */
+public final class PreconditionCheckGenerationUtility {
+
+    public static final String CHECK_METHOD_SUFFIX = "$pre";
+    public static final String UNCHECKED_METHOD_SUFFIX = "$unchecked";
+
+    /**
+     * Node meta-data key of the {@link Dependencies} of a precondition annotation closure class.
+     */
+    public static final String META_DATA_DEPENDENCIES = "org.gcontracts.PRECONDITION_DEPENDENCIES";
+
+    /**
+     * Node meta-data key marking the statements a precondition has been injected with.
+     */
+    public static final String META_DATA_PRECONDITION_STATEMENT = "org.gcontracts.PRECONDITION_STATEMENT";
+
+    private static final String META_DATA_CHECK_METHOD = "org.gcontracts.PRECONDITION_CHECK_METHOD";
+
+    /**
+     * The parameters and final fields a precondition depends on.
+     */
+    public static final class Dependencies {
+
+        private final Set<String> parameters;
+        private final Set<String> fields;
+
+        public Dependencies(final Set<String> parameters, final Set<String> fields)  {
+            this.parameters = Collections.unmodifiableSet(new LinkedHashSet<String>(parameters));
+            this.fields = Collections.unmodifiableSet(new LinkedHashSet<String>(fields));
+        }
+
+        public Set<String> parameters() { return parameters; }
+        public Set<String> fields() { return fields; }
+    }
+
+    private PreconditionCheckGenerationUtility() {}
+
+    /**
+     * @param type the {@link org.codehaus.groovy.ast.ClassNode} declaring the given <tt>methodNode</tt>
+     * @param methodNode the contracted {@link org.codehaus.groovy.ast.MethodNode}
+     *
+     * @return whether check methods may be generated for the given <tt>methodNode</tt>
+     */
+    public static boolean isCheckMethodCandidate(final ClassNode type, final MethodNode methodNode)  {
+        if (methodNode instanceof ConstructorNode || methodNode.isAbstract() || !methodNode.isPublic()) return false;
+        if (!(methodNode.isStatic() || methodNode.isFinal() || Modifier.isFinal(type.getModifiers()))) return false;
+        if (!(methodNode.getCode() instanceof BlockStatement)) return false;
+
+        return type.getDeclaredMethod(methodNode.getName() + CHECK_METHOD_SUFFIX, methodNode.getParameters()) == null &&
+                type.getDeclaredMethod(methodNode.getName() + UNCHECKED_METHOD_SUFFIX, methodNode.getParameters()) == null;
+    }
+
+    /**
+     * Collects the dependencies of the given precondition expression.
+     *
+     * @param booleanExpression the precondition, including inherited preconditions
+     *
+     * @return the {@link Dependencies} of all annotation closures called by the precondition, or <tt>null</tt> if
+     * the precondition calls any other method or any of its annotation closures is not pure
+     */
+    public static Dependencies getDependencies(final Expression booleanExpression)  {
+        final Set<String> parameters = new LinkedHashSet<String>();
+        final Set<String> fields = new LinkedHashSet<String>();
+
+        final Deque<Expression> expressions = new ArrayDeque<Expression>();
+        expressions.push(booleanExpression);
+
+        while (!expressions.isEmpty())  {
+            final Expression expression = expressions.pop();
+
+            if (expression instanceof BooleanExpression)  {
+                expressions.push(((BooleanExpression) expression).getExpression());
+            } else if (expression instanceof BinaryExpression)  {
+                expressions.push(((BinaryExpression) expression).getLeftExpression());
+                expressions.push(((BinaryExpression) expression).getRightExpression());
+            } else if (expression instanceof MethodCallExpression)  {
+                final MethodNode target = ((MethodCallExpression) expression).getMethodTarget();
+                final Dependencies dependencies = target == null ? null : target.getNodeMetaData(META_DATA_DEPENDENCIES) != null ? target.<Dependencies>getNodeMetaData(META_DATA_DEPENDENCIES) : target.getDeclaringClass().<Dependencies>getNodeMetaData(META_DATA_DEPENDENCIES);
+                if (dependencies == null) return null;
+
+                parameters.addAll(dependencies.parameters());
+                fields.addAll(dependencies.fields());
+            } else if (!(expression instanceof ConstantExpression))  {
+                return null;
+            }
+        }
+
+        return new Dependencies(parameters, fields);
+    }
+
+    /**
+     * Adds the <tt>&lt;method&gt;$pre</tt> check method for the given <tt>methodNode</tt> and marks it with
+     * {@link PurePrecondition}. The body of the unchecked method is split off later on, when all assertions
+     * have been injected, see {@link #addUncheckedMethods(org.codehaus.groovy.ast.ClassNode)}.
+     *
+     * @param type the {@link org.codehaus.groovy.ast.ClassNode} declaring the given <tt>methodNode</tt>
+     * @param methodNode the contracted {@link org.codehaus.groovy.ast.MethodNode}
+     * @param dependencies the {@link Dependencies} of the precondition
+     * @param checkBlockStatement the precondition check
+     */
+    public static void addCheckMethod(final ClassNode type, final MethodNode methodNode, final Dependencies dependencies, final BlockStatement checkBlockStatement)  {
+        final MethodNode checkMethod = type.addMethod(methodNode.getName() + CHECK_METHOD_SUFFIX, methodNode.getModifiers() & (Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC), ClassHelper.VOID_TYPE, copyParameters(methodNode), ClassNode.EMPTY_ARRAY, checkBlockStatement);
+        checkMethod.setGenericsTypes(methodNode.getGenericsTypes());
+        // generated methods are no contract candidates, the modifiers keep them visible to Java callers
+        checkMethod.setSynthetic(true);
+
+        final AnnotationNode marker = new AnnotationNode(ClassHelper.makeWithoutCaching(PurePrecondition.class));
+        marker.setMember("parameters", constants(dependencies.parameters()));
+        marker.setMember("fields", constants(dependencies.fields()));
+        marker.setRuntimeRetention(true);
+        marker.setSourceRetention(false);
+
+        methodNode.addAnnotation(marker);
+        methodNode.setNodeMetaData(META_DATA_CHECK_METHOD, checkMethod);
+        AnnotationUtils.annotationsChanged(type);
+    }
+
+    /**
+     * Moves everything but the precondition of methods with check methods into <tt>&lt;method&gt;$unchecked</tt>,
+     * the original method checks its precondition and delegates to the unchecked method.
+     *
+     * @param type the {@link org.codehaus.groovy.ast.ClassNode} whose methods are split
+     */
+    public static void addUncheckedMethods(final ClassNode type)  {
+        for (MethodNode methodNode : new ArrayList<MethodNode>(type.getMethods()))  {
+            if (methodNode.getNodeMetaData(META_DATA_CHECK_METHOD) == null) continue;
+
+            final BlockStatement code = (BlockStatement) methodNode.getCode();
+
+            final List<Statement> preconditionStatements = new ArrayList<Statement>();
+            final List<Statement> statements = new ArrayList<Statement>();
+            for (Statement statement : code.getStatements())  {
+                if (statement.getNodeMetaData(META_DATA_PRECONDITION_STATEMENT) != null)  {
+                    preconditionStatements.add(statement);
+                } else {
+                    statements.add(statement);
+                }
+            }
+
+            final MethodNode uncheckedMethod = type.addMethod(methodNode.getName() + UNCHECKED_METHOD_SUFFIX, methodNode.getModifiers(), methodNode.getReturnType(), copyParameters(methodNode), methodNode.getExceptions(), new BlockStatement(statements, code.getVariableScope()));
+            uncheckedMethod.setGenericsTypes(methodNode.getGenericsTypes());
+            uncheckedMethod.setSynthetic(true);
+
+            final ArgumentListExpression arguments = new ArgumentListExpression();
+            for (Parameter parameter : methodNode.getParameters())  {
+                arguments.addExpression(new VariableExpression(parameter));
+            }
+
+            final MethodCallExpression uncheckedMethodCall = new MethodCallExpression(methodNode.isStatic() ? new ClassExpression(type) : VariableExpression.THIS_EXPRESSION, uncheckedMethod.getName(), arguments);
+            uncheckedMethodCall.setImplicitThis(false);
+            uncheckedMethodCall.setMethodTarget(uncheckedMethod);
+
+            preconditionStatements.add(methodNode.isVoidMethod() ? new ExpressionStatement(uncheckedMethodCall) : new ReturnStatement(uncheckedMethodCall));
+            methodNode.setCode(new BlockStatement(preconditionStatements, new VariableScope()));
+            methodNode.removeNodeMetaData(META_DATA_CHECK_METHOD);
+        }
+    }
+
+    private static Parameter[] copyParameters(final MethodNode methodNode)  {
+        final Parameter[] parameters = new Parameter[methodNode.getParameters().length];
+        for (int i = 0; i < parameters.length; i++)  {
+            final Parameter parameter = methodNode.getParameters()[i];
+
+            parameters[i] = new Parameter(parameter.getType(), parameter.getName());
+            parameters[i].setClosureSharedVariable(parameter.isClosureSharedVariable());
+        }
+
+        return parameters;
+    }
+
+    private static ListExpression constants(final Set<String> values)  {
+        final ListExpression listExpression = new ListExpression();
+        for (String value : values)  {
+            listExpression.addExpression(new ConstantExpression(value));
+        }
+
+        return listExpression;
+    }
+}
@@ -36,6 +36,7 @@ import org.codehaus.groovy.control.io.ReaderSource;
 import org.gcontracts.annotations.meta.Precondition;
 import org.gcontracts.ast.visitor.AnnotationClosureVisitor;
 import org.gcontracts.util.AnnotationUtils;
+import org.gcontracts.util.ExpressionUtils;
 
 /**
  * Code generator for preconditions.
@@ -56,7 +57,9 @@ public class PreconditionGenerator extends BaseGenerator {
      * @param precondition the {@link org.gcontracts.domain.Precondition} the assertion statement should be generated from
      */
     public void generatePreconditionAssertionStatement(final MethodNode method, final org.gcontracts.domain.Precondition precondition)  {
-        final BooleanExpression preconditionBooleanExpression = addCallsToSuperMethodNodeAnnotationClosure(method.getDeclaringClass(), method, Precondition.class, precondition.booleanExpression(), false);
+        final BooleanExpression preconditionBooleanExpression = ExpressionUtils.fold(addCallsToSuperMethodNodeAnnotationClosure(method.getDeclaringClass(), method, Precondition.class, precondition.booleanExpression(), false));
+        // a precondition folding to true never fails, no need to check it at all
+        if (ExpressionUtils.isConstant(preconditionBooleanExpression, true)) return;
 
         BlockStatement blockStatement;
 
@@ -66,7 +69,7 @@ public class PreconditionGenerator extends BaseGenerator {
         final boolean useExecutionTracker = originalBlockStatement == null || Boolean.TRUE.equals(originalBlockStatement.getNodeMetaData(AnnotationClosureVisitor.META_DATA_USE_EXECUTION_TRACKER));
 
         if (!useExecutionTracker && Boolean.TRUE.equals(method.getNodeMetaData(META_DATA_USE_INLINE_MODE)))  {
-            blockStatement = getInlineModeBlockStatement(precondition.originalBlockStatement());
+            blockStatement = getInlineModeBlockStatement(method.getDeclaringClass(), method, precondition.originalBlockStatement(), "precondition");
         } else {
             blockStatement = wrapAssertionBooleanExpression(method.getDeclaringClass(), method, preconditionBooleanExpression, "precondition");
         }
@@ -74,6 +77,25 @@ public class PreconditionGenerator extends BaseGenerator {
         addPrecondition(method, blockStatement);
     }
 
+    /**
+     * Generates the <tt>&lt;method&gt;$pre</tt> check method for the given <tt>method</tt> if its precondition only
+     * depends on parameters and final fields, see {@link org.gcontracts.annotations.PurePrecondition}.
+     *
+     * @param method the {@link org.codehaus.groovy.ast.MethodNode} the precondition has been injected into
+     * @param precondition the {@link org.gcontracts.domain.Precondition} of the given <tt>method</tt>
+     */
+    public void generatePreconditionCheckMethod(final MethodNode method, final org.gcontracts.domain.Precondition precondition)  {
+        if (!PreconditionCheckGenerationUtility.isCheckMethodCandidate(method.getDeclaringClass(), method)) return;
+
+        final BooleanExpression preconditionBooleanExpression = ExpressionUtils.fold(addCallsToSuperMethodNodeAnnotationClosure(method.getDeclaringClass(), method, Precondition.class, precondition.booleanExpression(), false));
+        if (ExpressionUtils.isConstant(preconditionBooleanExpression, true)) return;
+
+        final PreconditionCheckGenerationUtility.Dependencies dependencies = PreconditionCheckGenerationUtility.getDependencies(preconditionBooleanExpression);
+        if (dependencies == null) return;
+
+        PreconditionCheckGenerationUtility.addCheckMethod(method.getDeclaringClass(), method, dependencies, wrapAssertionBooleanExpression(method.getDeclaringClass(), method, preconditionBooleanExpression, "precondition"));
+    }
+
     /**
      * Generates the default precondition statement for {@link org.codehaus.groovy.ast.MethodNode} instances with
      * the {@link org.gcontracts.annotations.meta.Precondition} annotation.
@@ -95,6 +117,9 @@ public class PreconditionGenerator extends BaseGenerator {
         if (preconditionBooleanExpression.getExpression() == ConstantExpression.FALSE)
             return;
 
+        preconditionBooleanExpression = ExpressionUtils.fold(preconditionBooleanExpression);
+        if (ExpressionUtils.isConstant(preconditionBooleanExpression, true)) return;
+
         final BlockStatement blockStatement = wrapAssertionBooleanExpression(type,  methodNode, preconditionBooleanExpression, "precondition");
         
         addPrecondition(methodNode, blockStatement);
@@ -102,6 +127,9 @@ public class PreconditionGenerator extends BaseGenerator {
 
     private void addPrecondition(MethodNode method, BlockStatement blockStatement) {
         final BlockStatement modifiedMethodCode = new BlockStatement();
+        for (Statement statement : blockStatement.getStatements())  {
+            statement.putNodeMetaData(PreconditionCheckGenerationUtility.META_DATA_PRECONDITION_STATEMENT, Boolean.TRUE);
+        }
         modifiedMethodCode.addStatements(blockStatement.getStatements());
 
         if (method.getCode() instanceof BlockStatement)  {
@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) 2013, Andre Steingress
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1.) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 2.) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 3.) Neither the name of Andre Steingress nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.gcontracts.generation;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * <p>Snapshot of the size of a {@link java.util.Collection} or {@link java.util.Map} field. Used as <tt>old</tt>
+ * value when postconditions only call <tt>size()</tt> or <tt>isEmpty()</tt> on it, instead of cloning
+ * the whole collection.</p>
+ *
+ * @see OldVariableGenerationUtility
+ *
+ * @author ast
+ */
+public final class SizeSnapshot {
+
+    private final int size;
+
+    private SizeSnapshot(int size)  {
+        this.size = size;
+    }
+
+    /**
+     * @param value a {@link java.util.Collection} or {@link java.util.Map}, might be <tt>null</tt>
+     * @return the size snapshot of the given <tt>value</tt> or <tt>null</tt> if <tt>value</tt> is <tt>null</tt>
+     */
+    public static SizeSnapshot of(Object value)  {
+        if (value == null) return null;
+        if (value instanceof Map) return new SizeSnapshot(((Map) value).size());
+
+        return new SizeSnapshot(((Collection) value).size());
+    }
+
+    public int size()  {
+        return size;
+    }
+
+    public boolean isEmpty()  {
+        return size == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "[size: " + size + "]";
+    }
+}
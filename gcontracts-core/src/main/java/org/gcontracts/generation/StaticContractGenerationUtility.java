@@ -0,0 +1,264 @@
+/**
+ * Copyright (c) 2013, Andre Steingress
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1.) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 2.) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 3.) Neither the name of Andre Steingress nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.gcontracts.generation;
+
+import org.codehaus.groovy.ast.*;
+import org.codehaus.groovy.ast.expr.*;
+import org.codehaus.groovy.ast.stmt.ReturnStatement;
+import org.codehaus.groovy.ast.stmt.Statement;
+import org.codehaus.groovy.control.SourceUnit;
+import org.gcontracts.util.FieldValues;
+import org.objectweb.asm.Opcodes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Moves the code of annotation closures declared in statically compiled classes into synthetic contract body
+ * methods of the declaring class.</p>
+ *
+ * <p>Annotation closure classes are compiled as dynamic Groovy. If the class declaring the contract is annotated
+ * with <tt>@CompileStatic</tt>, the contract body method is type checked and statically compiled together with the
+ * class and contracts evaluated in the class or its heirs call the body method directly. The annotation closure
+ * class is kept for separately compiled heirs, its <tt>doCall</tt> method delegates to the body method.</p>
+ *
+ * @author ast
+ */
+public final class StaticContractGenerationUtility {
+
+    public static final String CONTRACT_BODY_METHOD_PREFIX = "$_gc_contract_";
+
+    public static final String META_DATA_CONTRACT_BODY_METHOD = "org.gcontracts.CONTRACT_BODY_METHOD";
+
+    private static final String COMPILE_STATIC = "groovy.transform.CompileStatic";
+
+    private StaticContractGenerationUtility() {}
+
+    /**
+     * @param type the {@link org.codehaus.groovy.ast.ClassNode} declaring the contract
+     * @param methodNode the {@link org.codehaus.groovy.ast.MethodNode} declaring the contract, <tt>null</tt> for
+     *                   class invariants
+     *
+     * @return whether the contract is declared in statically compiled code
+     */
+    public static boolean isStaticallyCompiled(final ClassNode type, final MethodNode methodNode)  {
+        if (type.isInterface()) return false;
+
+        if (methodNode != null)  {
+            final Boolean methodStaticCompilation = getStaticCompilation(methodNode);
+            if (methodStaticCompilation != null) return methodStaticCompilation && isStaticallyCompiled(type);
+        }
+
+        return isStaticallyCompiled(type);
+    }
+
+    /**
+     * Moves the <tt>doCall</tt> code of the given annotation closure class into a contract body method of the given
+     * <tt>type</tt>, if the contract is declared in statically compiled code.
+     *
+     * @param type the {@link org.codehaus.groovy.ast.ClassNode} declaring the contract
+     * @param methodNode the {@link org.codehaus.groovy.ast.MethodNode} declaring the contract, <tt>null</tt> for
+     *                   class invariants
+     * @param closureClassNode the annotation closure class generated for the contract
+     */
+    public static void addContractBodyMethod(final ClassNode type, final MethodNode methodNode, final ClassNode closureClassNode)  {
+        if (!isStaticallyCompiled(type, methodNode)) return;
+
+        final MethodNode doCall = closureClassNode.getDeclaredMethods("doCall").get(0);
+        if (!isMovable(type, doCall.getCode())) return;
+
+        final List<Parameter> parameters = new ArrayList<Parameter>();
+        for (Parameter parameter : doCall.getParameters())  {
+            parameters.add(new Parameter(parameter.getType().getPlainNodeReference(), parameter.getName()));
+        }
+
+        final Statement code = doCall.getCode();
+        code.visit(new ContractBodyTransformer(type, parameters));
+
+        final boolean isStatic = methodNode != null && methodNode.isStatic();
+        final int modifiers = Opcodes.ACC_PROTECTED | Opcodes.ACC_SYNTHETIC | (isStatic ? Opcodes.ACC_STATIC : 0);
+
+        final MethodNode contractBodyMethod = type.addMethod(getContractBodyMethodName(type), modifiers, ClassHelper.Boolean_TYPE, parameters.toArray(new Parameter[parameters.size()]), ClassNode.EMPTY_ARRAY, code);
+        contractBodyMethod.setSynthetic(true);
+        contractBodyMethod.setSourcePosition(doCall);
+        contractBodyMethod.setVariableScope(doCall.getVariableScope());
+
+        closureClassNode.setNodeMetaData(META_DATA_CONTRACT_BODY_METHOD, contractBodyMethod);
+
+        // the closure class is still called by separately compiled heirs
+        final ArgumentListExpression arguments = new ArgumentListExpression();
+        for (Parameter parameter : doCall.getParameters())  {
+            arguments.addExpression(new VariableExpression(parameter));
+        }
+
+        final MethodCallExpression getOwner = new MethodCallExpression(VariableExpression.THIS_EXPRESSION, "getOwner", ArgumentListExpression.EMPTY_ARGUMENTS);
+        getOwner.setImplicitThis(false);
+
+        final MethodCallExpression callContractBodyMethod = new MethodCallExpression(getOwner, contractBodyMethod.getName(), arguments);
+        callContractBodyMethod.setImplicitThis(false);
+
+        doCall.setCode(new ReturnStatement(callContractBodyMethod));
+        doCall.setVariableScope(new VariableScope());
+    }
+
+    /**
+     * @param closureClassNode an annotation closure class
+     *
+     * @return the contract body method the given annotation closure class delegates to, or <tt>null</tt>
+     */
+    public static MethodNode getContractBodyMethod(final ClassNode closureClassNode)  {
+        return closureClassNode.getNodeMetaData(META_DATA_CONTRACT_BODY_METHOD);
+    }
+
+    private static boolean isStaticallyCompiled(ClassNode type)  {
+        while (type != null)  {
+            final Boolean staticCompilation = getStaticCompilation(type);
+            if (staticCompilation != null) return staticCompilation;
+
+            type = type instanceof InnerClassNode ? type.getOuterClass() : null;
+        }
+
+        return false;
+    }
+
+    private static Boolean getStaticCompilation(final AnnotatedNode annotatedNode)  {
+        for (AnnotationNode annotationNode : annotatedNode.getAnnotations())  {
+            if (!annotationNode.getClassNode().getName().equals(COMPILE_STATIC)) continue;
+
+            final Expression value = annotationNode.getMember("value");
+            return value == null || !value.getText().endsWith("SKIP");
+        }
+
+        return null;
+    }
+
+    /**
+     * Nested closures are shared with the inlined assertions and cannot be moved. Private fields read by
+     * {@link FieldValues} must be declared in the given <tt>type</tt>.
+     */
+    private static boolean isMovable(final ClassNode type, final Statement code)  {
+        final boolean[] result = new boolean[] { true };
+        code.visit(new CodeVisitorSupport() {
+            @Override
+            public void visitClosureExpression(ClosureExpression expression) {
+                result[0] = false;
+            }
+
+            @Override
+            public void visitStaticMethodCallExpression(StaticMethodCallExpression call) {
+                if (isFieldValueCall(call) && getFieldValueField(type, call) == null) result[0] = false;
+                super.visitStaticMethodCallExpression(call);
+            }
+        });
+
+        return result[0];
+    }
+
+    private static boolean isFieldValueCall(final StaticMethodCallExpression call)  {
+        return call.getOwnerType().getName().equals(FieldValues.class.getName()) && "fieldValue".equals(call.getMethod());
+    }
+
+    private static FieldNode getFieldValueField(final ClassNode type, final StaticMethodCallExpression call)  {
+        final List<Expression> arguments = ((TupleExpression) call.getArguments()).getExpressions();
+        if (arguments.size() != 3 || !(arguments.get(1) instanceof ConstantExpression)) return null;
+
+        return type.getDeclaredField(String.valueOf(((ConstantExpression) arguments.get(1)).getValue()));
+    }
+
+    private static String getContractBodyMethodName(final ClassNode type)  {
+        int count = 0;
+        while (!type.getMethods(CONTRACT_BODY_METHOD_PREFIX + count).isEmpty()) count++;
+
+        return CONTRACT_BODY_METHOD_PREFIX + count;
+    }
+
+    /**
+     * Copies the expressions of the contract body, they are shared with the inlined assertions of the contracted
+     * method. Variables are bound to the parameters of the contract body method and <tt>old</tt> values of fields
+     * are cast to the field type, as the <tt>old</tt> map is not typed.
+     */
+    private static class ContractBodyTransformer extends ClassCodeExpressionTransformer {
+
+        private final ClassNode type;
+        private final List<Parameter> parameters;
+
+        public ContractBodyTransformer(final ClassNode type, final List<Parameter> parameters)  {
+            this.type = type;
+            this.parameters = parameters;
+        }
+
+        @Override
+        protected SourceUnit getSourceUnit() {
+            return null;
+        }
+
+        @Override
+        public Expression transform(Expression expression) {
+            if (expression == null) return null;
+
+            if (expression instanceof VariableExpression)  {
+                final VariableExpression variableExpression = (VariableExpression) expression;
+                // local variables of the contract body and this/super are not shared
+                if (variableExpression.isThisExpression() || variableExpression.isSuperExpression() || variableExpression.getAccessedVariable() instanceof VariableExpression)  {
+                    return variableExpression;
+                }
+
+                Variable accessedVariable = variableExpression.getAccessedVariable();
+                for (Parameter parameter : parameters)  {
+                    if (parameter.getName().equals(variableExpression.getName())) accessedVariable = parameter;
+                }
+
+                final VariableExpression copy = new VariableExpression(variableExpression.getName(), variableExpression.getOriginType());
+                copy.setAccessedVariable(accessedVariable);
+                copy.setModifiers(variableExpression.getModifiers());
+                copy.setSourcePosition(variableExpression);
+
+                return copy;
+            }
+
+            // private fields are read directly instead of by reflection on the closure's owner
+            if (expression instanceof StaticMethodCallExpression && isFieldValueCall((StaticMethodCallExpression) expression))  {
+                final FieldExpression fieldExpression = new FieldExpression(getFieldValueField(type, (StaticMethodCallExpression) expression));
+                fieldExpression.setSourcePosition(expression);
+
+                return fieldExpression;
+            }
+
+            if (expression instanceof PropertyExpression && isOldVariable(((PropertyExpression) expression).getObjectExpression()))  {
+                final FieldNode fieldNode = type.getField(((PropertyExpression) expression).getPropertyAsString());
+                if (fieldNode != null && !fieldNode.isStatic())  {
+                    final CastExpression castExpression = new CastExpression(fieldNode.getOriginType().getPlainNodeReference(), expression.transformExpression(this));
+                    castExpression.setSourcePosition(expression);
+
+                    return castExpression;
+                }
+            }
+
+            return expression.transformExpression(this);
+        }
+
+        private boolean isOldVariable(final Expression expression)  {
+            return expression instanceof VariableExpression && "old".equals(((VariableExpression) expression).getName());
+        }
+    }
+}
@@ -0,0 +1,260 @@
+/**
+ * Copyright (c) 2013, Andre Steingress
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1.) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 2.) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 3.) Neither the name of Andre Steingress nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.gcontracts.generation;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+import java.util.*;
+
+/**
+ * <p>Enables and disables contract elements at runtime, per package, per class and per assertion kind.</p>
+ *
+ * <p>Every contracted class holds a <tt>static final</tt> {@link java.lang.invoke.MethodHandle} per assertion kind,
+ * the dynamic invoker of a {@link java.lang.invoke.MutableCallSite} returning a constant. The JIT compiler folds
+ * the check to this constant, a change of the switchboard only causes a single deoptimization of the dependent
+ * code.</p>
+ *
+ * <p>Initially, the {@link Configurator} decides whether contract elements of a class are enabled.</p>
+ *
+ * <pre>
+ *     Switchboard.disable("org.example...", Switchboard.POSTCONDITION)
+ *     Switchboard.enable("org.example.Account")
+ * </pre>
+ *
+ * @author ast
+ */
+public final class Switchboard {
+
+    public static final String PRECONDITION = "precondition";
+    public static final String POSTCONDITION = "postcondition";
+    public static final String CLASS_INVARIANT = "invariant";
+
+    private static final MethodType SWITCH_TYPE = MethodType.methodType(boolean.class);
+    private static final MethodHandle ENABLED = MethodHandles.constant(boolean.class, true);
+    private static final MethodHandle DISABLED = MethodHandles.constant(boolean.class, false);
+
+    private static final class Switch {
+        final String className;
+        final String kind;
+        final MutableCallSite callSite;
+        final MethodHandle invoker;
+        boolean enabled;
+
+        Switch(String className, String kind, boolean enabled)  {
+            this.className = className;
+            this.kind = kind;
+            this.enabled = enabled;
+            this.callSite = new MutableCallSite(enabled ? ENABLED : DISABLED);
+            this.invoker = callSite.dynamicInvoker();
+        }
+    }
+
+    private static final class Rule {
+        final String name;
+        final String kind;
+        final boolean enabled;
+
+        Rule(String name, String kind, boolean enabled)  {
+            this.name = name;
+            this.kind = kind;
+            this.enabled = enabled;
+        }
+
+        boolean matches(String className, String kind)  {
+            if (this.kind != null && !this.kind.equals(kind)) return false;
+            if (name == null) return true;
+
+            if (name.endsWith(Configurator.PACKAGE_POSTFIX))  {
+                final String packageName = name.substring(0, name.length() - Configurator.PACKAGE_POSTFIX.length());
+                return className.startsWith(packageName) && (className.length() == packageName.length() || className.charAt(packageName.length()) == '.');
+            }
+
+            return className.equals(name);
+        }
+
+        /**
+         * @return whether this rule applies to every class and kind the given rule applies to
+         */
+        boolean covers(Rule other)  {
+            if (kind != null && !kind.equals(other.kind)) return false;
+            if (name == null) return true;
+            if (other.name == null) return false;
+
+            if (other.name.endsWith(Configurator.PACKAGE_POSTFIX))  {
+                if (!name.endsWith(Configurator.PACKAGE_POSTFIX)) return false;
+                return matches(other.name.substring(0, other.name.length() - Configurator.PACKAGE_POSTFIX.length()), other.kind);
+            }
+
+            return matches(other.name, other.kind);
+        }
+    }
+
+    private static final Map<String, Switch> switches = new HashMap<String, Switch>();
+    private static final List<Rule> rules = new ArrayList<Rule>();
+
+    private Switchboard() {}
+
+    /**
+     * Used within generated code to initialize the switch of the given class and assertion kind.
+     *
+     * @param className the name of the contracted class
+     * @param kind the assertion kind, e.g. {@link #PRECONDITION}
+     * @return a {@link java.lang.invoke.MethodHandle} of type <tt>()boolean</tt>
+     */
+    public static synchronized MethodHandle register(final String className, final String kind)  {
+        final String key = className + ' ' + kind;
+
+        Switch result = switches.get(key);
+        if (result == null)  {
+            result = new Switch(className, kind, isEnabledByRules(className, kind));
+            switches.put(key, result);
+        }
+
+        return result.invoker;
+    }
+
+    /**
+     * Used within generated code to check whether the contract elements guarded by the given switch are enabled.
+     *
+     * @param switchHandle a {@link java.lang.invoke.MethodHandle} returned by {@link #register(String, String)}
+     * @return whether assertion checking is enabled or not
+     */
+    public static boolean isEnabled(final MethodHandle switchHandle)  {
+        // the switch field has not been initialized yet
+        if (switchHandle == null) return false;
+
+        try {
+            return (boolean) switchHandle.invokeExact();
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    /**
+     * @param className the name of a contracted class
+     * @param kind the assertion kind, e.g. {@link #PRECONDITION}
+     * @return whether assertion checking is enabled or not
+     */
+    public static synchronized boolean isEnabled(final String className, final String kind)  {
+        final Switch aSwitch = switches.get(className + ' ' + kind);
+        return aSwitch != null ? aSwitch.enabled : isEnabledByRules(className, kind);
+    }
+
+    /**
+     * Enables all contract elements of the given class or package, packages are given with a <tt>...</tt> postfix.
+     *
+     * @param name a class name, package name with <tt>...</tt> postfix or <tt>null</tt> for all classes
+     */
+    public static void enable(final String name)  {
+        set(name, null, true);
+    }
+
+    /**
+     * Disables all contract elements of the given class or package, packages are given with a <tt>...</tt> postfix.
+     *
+     * @param name a class name, package name with <tt>...</tt> postfix or <tt>null</tt> for all classes
+     */
+    public static void disable(final String name)  {
+        set(name, null, false);
+    }
+
+    /**
+     * @param name a class name, package name with <tt>...</tt> postfix or <tt>null</tt> for all classes
+     * @param kind the assertion kind, e.g. {@link #POSTCONDITION}, or <tt>null</tt> for all kinds
+     */
+    public static void enable(final String name, final String kind)  {
+        set(name, kind, true);
+    }
+
+    /**
+     * @param name a class name, package name with <tt>...</tt> postfix or <tt>null</tt> for all classes
+     * @param kind the assertion kind, e.g. {@link #POSTCONDITION}, or <tt>null</tt> for all kinds
+     */
+    public static void disable(final String name, final String kind)  {
+        set(name, kind, false);
+    }
+
+    /**
+     * Removes all runtime changes, the {@link Configurator} decides again.
+     */
+    public static synchronized void reset()  {
+        rules.clear();
+        update();
+    }
+
+    private static synchronized void set(final String name, final String kind, final boolean enabled)  {
+        final Rule rule = new Rule(name, kind, enabled);
+
+        // the last matching rule wins, earlier rules covered by the new one never match again
+        for (Iterator<Rule> iterator = rules.iterator(); iterator.hasNext(); )  {
+            if (rule.covers(iterator.next())) iterator.remove();
+        }
+        rules.add(rule);
+
+        final List<MutableCallSite> changed = new ArrayList<MutableCallSite>();
+
+        for (Switch aSwitch : switches.values())  {
+            if (aSwitch.enabled == enabled || !rule.matches(aSwitch.className, aSwitch.kind)) continue;
+
+            setEnabled(aSwitch, enabled, changed);
+        }
+
+        syncAll(changed);
+    }
+
+    private static boolean isEnabledByRules(final String className, final String kind)  {
+        boolean enabled = Configurator.checkAssertionsEnabled(className, kind);
+
+        // the last matching rule wins
+        for (Rule rule : rules)  {
+            if (rule.matches(className, kind)) enabled = rule.enabled;
+        }
+
+        return enabled;
+    }
+
+    private static void update()  {
+        final List<MutableCallSite> changed = new ArrayList<MutableCallSite>();
+
+        for (Switch aSwitch : switches.values())  {
+            final boolean enabled = isEnabledByRules(aSwitch.className, aSwitch.kind);
+            if (enabled == aSwitch.enabled) continue;
+
+            setEnabled(aSwitch, enabled, changed);
+        }
+
+        syncAll(changed);
+    }
+
+    private static void setEnabled(final Switch aSwitch, final boolean enabled, final List<MutableCallSite> changed)  {
+        aSwitch.enabled = enabled;
+        aSwitch.callSite.setTarget(enabled ? ENABLED : DISABLED);
+        changed.add(aSwitch.callSite);
+    }
+
+    private static void syncAll(final List<MutableCallSite> changed)  {
+        if (!changed.isEmpty()) MutableCallSite.syncAll(changed.toArray(new MutableCallSite[changed.size()]));
+    }
+}
@@ -25,16 +25,109 @@ package org.gcontracts.util;
 import org.codehaus.groovy.ast.*;
 import org.gcontracts.generation.CandidateChecks;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * <p>Helper methods for reading/getting {@link org.codehaus.groovy.ast.AnnotationNode} instances.</p>
  *
+ * <p>Contract annotations found in the inheritance line and meta-annotation checks are memoized per
+ * {@link org.codehaus.groovy.ast.CompileUnit} in the meta-data of its first module, every class and method of a hierarchy is only looked at once per
+ * meta-annotation. Whenever annotations are added during the transformation, {@link #annotationsChanged(ClassNode)}
+ * has to be called, it invalidates the lookups of the changed class and its heirs only.</p>
+ *
  * @author ast
  */
 public class AnnotationUtils {
 
+    /**
+     * The annotated method found in the inheritance line and its annotations.
+     */
+    private static final class ResolvedAnnotations {
+        static final ResolvedAnnotations NONE = new ResolvedAnnotations(null, Collections.<AnnotationNode>emptyList());
+
+        final MethodNode methodNode;
+        final List<AnnotationNode> annotations;
+
+        ResolvedAnnotations(MethodNode methodNode, List<AnnotationNode> annotations)  {
+            this.methodNode = methodNode;
+            this.annotations = annotations;
+        }
+    }
+
+    private static final class AnnotationCache {
+        // lookups per class name
+        final ConcurrentMap<String, Map<String, ResolvedAnnotations>> hierarchy = new ConcurrentHashMap<String, Map<String, ResolvedAnnotations>>();
+        // names of the direct heirs with memoized lookups per class name
+        final ConcurrentMap<String, Set<String>> heirs = new ConcurrentHashMap<String, Set<String>>();
+        final Map<String, Boolean> metaAnnotations = new ConcurrentHashMap<String, Boolean>();
+
+        ResolvedAnnotations get(ClassNode type, String key)  {
+            final Map<String, ResolvedAnnotations> lookups = hierarchy.get(type.getName());
+            return lookups != null ? lookups.get(key) : null;
+        }
+
+        void put(ClassNode type, String key, ResolvedAnnotations result)  {
+            getOrCreate(hierarchy, type.getName(), new ConcurrentHashMap<String, ResolvedAnnotations>()).put(key, result);
+
+            // results of heirs are resolved from the results of their super class
+            final ClassNode superClass = type.getSuperClass();
+            if (superClass != null) getOrCreate(heirs, superClass.getName(), Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>())).add(type.getName());
+        }
+
+        void invalidate(String className)  {
+            hierarchy.remove(className);
+
+            final Set<String> classNames = heirs.remove(className);
+            if (classNames == null) return;
+
+            for (String heir : classNames)  {
+                invalidate(heir);
+            }
+        }
+
+        private static <T> T getOrCreate(ConcurrentMap<String, T> map, String key, T value)  {
+            final T result = map.putIfAbsent(key, value);
+            return result != null ? result : value;
+        }
+    }
+
+    private static final String META_DATA_ANNOTATION_CACHE = "org.gcontracts.ANNOTATION_CACHE";
+
+    private static AnnotationCache getCache(ClassNode type)  {
+        final CompileUnit compileUnit = type != null ? type.getCompileUnit() : null;
+        if (compileUnit == null) return null;
+
+        // kept by the first module, the cache is released together with its compile unit
+        synchronized (compileUnit)  {
+            final List<ModuleNode> moduleNodes = compileUnit.getModules();
+            if (moduleNodes.isEmpty()) return null;
+
+            final ModuleNode moduleNode = moduleNodes.get(0);
+            AnnotationCache cache = moduleNode.getNodeMetaData(META_DATA_ANNOTATION_CACHE);
+            if (cache == null)  {
+                cache = new AnnotationCache();
+                moduleNode.setNodeMetaData(META_DATA_ANNOTATION_CACHE, cache);
+            }
+
+            return cache;
+        }
+    }
+
+    /**
+     * Invalidates the memoized annotation lookups of the given {@link ClassNode} and its heirs, must be called
+     * after annotations have been added to classes or methods.
+     *
+     * @param type the {@link ClassNode} whose annotations or method annotations have been changed
+     */
+    public static void annotationsChanged(ClassNode type)  {
+        final AnnotationCache cache = getCache(type);
+        if (cache == null) return;
+
+        cache.invalidate(type.getName());
+    }
+
     /**
      * Checks whether the given {@link org.codehaus.groovy.ast.ClassNode} is annotated
      * with an annotations of the given package or full annotatedNode name.
@@ -62,18 +155,27 @@ public class AnnotationUtils {
      * @return the next {@link org.codehaus.groovy.ast.AnnotationNode} in the inheritance line, or <tt>null</tt>
      */
     public static List<AnnotationNode> getAnnotationNodeInHierarchyWithMetaAnnotation(ClassNode type, ClassNode anno)  {
-        List<AnnotationNode> result = new ArrayList<AnnotationNode>();
+        return new ArrayList<AnnotationNode>(resolve(getCache(type), type, anno).annotations);
+    }
+
+    private static ResolvedAnnotations resolve(AnnotationCache cache, ClassNode type, ClassNode anno)  {
+        if (type == null) return ResolvedAnnotations.NONE;
+
+        final String key = type.getName() + '@' + anno.getName();
+        ResolvedAnnotations result = cache != null ? cache.get(type, key) : null;
+        if (result != null) return result;
+
+        List<AnnotationNode> annotations = new ArrayList<AnnotationNode>();
         for (AnnotationNode annotation : type.getAnnotations())  {
             if (annotation.getClassNode().getAnnotations(anno).size() > 0)  {
-                result.add(annotation);
+                annotations.add(annotation);
             }
         }
 
-        if (result.isEmpty() && type.getSuperClass() != null)  {
-           return getAnnotationNodeInHierarchyWithMetaAnnotation(type.getSuperClass(), anno);
-        } else  {
-           return result;
-        }
+        result = annotations.isEmpty() ? resolve(cache, type.getSuperClass(), anno) : new ResolvedAnnotations(null, annotations);
+        if (cache != null) cache.put(type, key, result);
+
+        return result;
     }
 
     /**
@@ -87,26 +189,57 @@ public class AnnotationUtils {
      * @return a list of {@link AnnotationNode} all annotated with <tt>metaAnnotationClassNode</tt>
      */
     public static List<AnnotationNode> getAnnotationNodeInHierarchyWithMetaAnnotation(ClassNode type, MethodNode originMethodNode, ClassNode metaAnnotationClassNode)  {
-        List<AnnotationNode> result = new ArrayList<AnnotationNode>();
-
-        while (type != null)  {
-            MethodNode methodNode = type.getMethod(originMethodNode.getName(), originMethodNode.getParameters());
-            if (methodNode != null) {
-                for (AnnotationNode annotation : methodNode.getAnnotations())  {
-                    if (annotation.getClassNode().getAnnotations(metaAnnotationClassNode).size() > 0)  {
-                        result.add(annotation);
-                    }
-                }
+        return new ArrayList<AnnotationNode>(resolve(getCache(type), type, originMethodNode, getMethodKey(originMethodNode), metaAnnotationClassNode).annotations);
+    }
 
-                if (result.size() > 0) return result;
-            }
+    /**
+     * <p>Finds the next {@link MethodNode} up the inheritance tree which has an annotation annotated with
+     * <tt>metaAnnotationClassNode</tt>. This is the {@link MethodNode} the annotations returned by
+     * {@link #getAnnotationNodeInHierarchyWithMetaAnnotation(ClassNode, MethodNode, ClassNode)} are declared on.</p>
+     *
+     * @param type the origin {@link ClassNode}
+     * @param originMethodNode the origin {@link MethodNode}
+     * @param metaAnnotationClassNode the {@link ClassNode} of the meta-annotation
+     *
+     * @return the annotated {@link MethodNode} or <tt>null</tt>
+     */
+    public static MethodNode getMethodNodeInHierarchyWithMetaAnnotation(ClassNode type, MethodNode originMethodNode, ClassNode metaAnnotationClassNode)  {
+        return resolve(getCache(type), type, originMethodNode, getMethodKey(originMethodNode), metaAnnotationClassNode).methodNode;
+    }
+
+    private static ResolvedAnnotations resolve(AnnotationCache cache, ClassNode type, MethodNode originMethodNode, String methodKey, ClassNode metaAnnotationClassNode)  {
+        if (type == null) return ResolvedAnnotations.NONE;
+
+        final String key = type.getName() + '#' + methodKey + '@' + metaAnnotationClassNode.getName();
+        ResolvedAnnotations result = cache != null ? cache.get(type, key) : null;
+        if (result != null) return result;
+
+        final MethodNode methodNode = type.getMethod(originMethodNode.getName(), originMethodNode.getParameters());
 
-            type = type.getSuperClass();
+        final List<AnnotationNode> annotations = new ArrayList<AnnotationNode>();
+        if (methodNode != null) {
+            for (AnnotationNode annotation : methodNode.getAnnotations())  {
+                if (annotation.getClassNode().getAnnotations(metaAnnotationClassNode).size() > 0)  {
+                    annotations.add(annotation);
+                }
+            }
         }
 
+        result = annotations.isEmpty() ? resolve(cache, type.getSuperClass(), originMethodNode, methodKey, metaAnnotationClassNode) : new ResolvedAnnotations(methodNode, annotations);
+        if (cache != null) cache.put(type, key, result);
+
         return result;
     }
 
+    private static String getMethodKey(MethodNode methodNode)  {
+        final StringBuilder result = new StringBuilder(methodNode.getName()).append('(');
+        for (Parameter parameter : methodNode.getParameters())  {
+            result.append(parameter.getType().getName()).append(',');
+        }
+
+        return result.append(')').toString();
+    }
+
     /**
      * Loads all annotation nodes of the given {@link org.codehaus.groovy.ast.AnnotatedNode} instance which are marked
      * with the annotation <tt>metaAnnotationClassName</tt>.
@@ -116,20 +249,35 @@ public class AnnotationUtils {
      * @return a list of {@link AnnotationNode} instances which implement the given <tt>metaAnnotationClass</tt>
      */
     public static List<AnnotationNode> hasMetaAnnotations(AnnotatedNode annotatedNode, String metaAnnotationClassName)  {
+        final ClassNode type = annotatedNode instanceof ClassNode ? (ClassNode) annotatedNode : annotatedNode.getDeclaringClass();
+
+        return hasMetaAnnotations(getCache(type), annotatedNode, metaAnnotationClassName);
+    }
+
+    private static List<AnnotationNode> hasMetaAnnotations(AnnotationCache cache, AnnotatedNode annotatedNode, String metaAnnotationClassName)  {
 
         ArrayList<AnnotationNode> result = new ArrayList<AnnotationNode>();
 
         for (AnnotationNode annotationNode : annotatedNode.getAnnotations())  {
-            if (CandidateChecks.isRuntimeClass(annotationNode.getClassNode())) continue;
+            if (isMetaAnnotated(cache, annotationNode.getClassNode(), metaAnnotationClassName)) result.add(annotationNode);
+        }
+        return result;
+    }
 
-            // is the annotation marked with the given meta annotation?
-            List<AnnotationNode> metaAnnotations = annotationNode.getClassNode().getAnnotations(ClassHelper.makeWithoutCaching(metaAnnotationClassName));
-            if (metaAnnotations.isEmpty())  {
-                metaAnnotations = hasMetaAnnotations(annotationNode.getClassNode(), metaAnnotationClassName);
-            }
+    private static boolean isMetaAnnotated(AnnotationCache cache, ClassNode annotationClassNode, String metaAnnotationClassName)  {
+        if (CandidateChecks.isRuntimeClass(annotationClassNode)) return false;
+
+        final String key = annotationClassNode.getName() + '@' + metaAnnotationClassName;
+
+        Boolean result = cache != null ? cache.metaAnnotations.get(key) : null;
+        if (result != null) return result;
+
+        // is the annotation marked with the given meta annotation?
+        result = !annotationClassNode.getAnnotations(ClassHelper.makeWithoutCaching(metaAnnotationClassName)).isEmpty()
+                || !hasMetaAnnotations(cache, annotationClassNode, metaAnnotationClassName).isEmpty();
+
+        if (cache != null) cache.metaAnnotations.put(key, result);
 
-            if (metaAnnotations.size() > 0) result.add(annotationNode);
-        }
         return result;
     }
 }
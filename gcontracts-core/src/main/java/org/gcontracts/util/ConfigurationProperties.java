@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) 2013, Andre Steingress
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1.) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 2.) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 3.) Neither the name of Andre Steingress nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.gcontracts.util;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * <p>Reads GContracts configuration properties. A system property always overrides the value given in the
+ * configuration file.</p>
+ *
+ * <p>The configuration file is either given by the <tt>gcontracts.configuration</tt> system property or found as
+ * <tt>gcontracts.properties</tt> resource in the class path. It is read once, on first access.</p>
+ *
+ * @author ast
+ */
+public final class ConfigurationProperties {
+
+    public static final String CONFIGURATION_PROPERTY = "gcontracts.configuration";
+    public static final String CONFIGURATION_RESOURCE = "gcontracts.properties";
+
+    private static final class FileHolder {
+        static final Properties INSTANCE = load();
+    }
+
+    private ConfigurationProperties() {}
+
+    /**
+     * @param key the property key, e.g. <tt>gcontracts.postconditions</tt>
+     * @return the value of the given property or <tt>null</tt> if it is neither set as system property nor in the
+     * configuration file
+     */
+    public static String getProperty(final String key)  {
+        Validate.notNull(key);
+
+        final String value = System.getProperty(key);
+        if (value != null) return value;
+
+        return FileHolder.INSTANCE.getProperty(key);
+    }
+
+    /**
+     * @param key the property key, e.g. <tt>gcontracts.postconditions</tt>
+     * @param defaultValue the value to be used if the property is not set at all
+     * @return the boolean value of the given property
+     */
+    public static boolean getBoolean(final String key, final boolean defaultValue)  {
+        final String value = getProperty(key);
+        if (value == null || value.trim().length() == 0) return defaultValue;
+
+        return Boolean.parseBoolean(value.trim());
+    }
+
+    private static Properties load()  {
+        final Properties properties = new Properties();
+
+        InputStream inputStream = null;
+        try {
+            final String fileName = System.getProperty(CONFIGURATION_PROPERTY);
+            if (fileName != null)  {
+                inputStream = new FileInputStream(fileName);
+            } else {
+                ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+                if (classLoader == null) classLoader = ConfigurationProperties.class.getClassLoader();
+                if (classLoader != null) inputStream = classLoader.getResourceAsStream(CONFIGURATION_RESOURCE);
+            }
+
+            if (inputStream != null) properties.load(inputStream);
+
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read GContracts configuration", e);
+        } finally {
+            if (inputStream != null) try { inputStream.close(); } catch (IOException ignore) {}
+        }
+
+        return properties;
+    }
+}
@@ -47,6 +47,12 @@ import java.util.List;
  */
 public class ExpressionUtils {
 
+    /**
+     * Node meta-data key marking annotation closure classes, or calls to them, whose result is known at
+     * compile-time. The value is the constant {@link Boolean} the closure evaluates to.
+     */
+    public static final String META_DATA_CONSTANT_VALUE = "org.gcontracts.CONSTANT_VALUE";
+
     /**
      * Returns all {@link BooleanExpression} instances found in the given {@link ClosureExpression}.
      */
@@ -117,6 +123,107 @@ public class ExpressionUtils {
         return result;
     }
 
+    /**
+     * Returns {@link Boolean#TRUE} if all given {@link BooleanExpression} instances are the constant <tt>true</tt>,
+     * <tt>null</tt> otherwise.
+     */
+    public static Boolean getConstantValue(List<BooleanExpression> booleanExpressions)  {
+        if (booleanExpressions == null || booleanExpressions.isEmpty()) return null;
+
+        for (BooleanExpression booleanExpression : booleanExpressions)  {
+            if (!isConstant(fold(booleanExpression), true)) return null;
+        }
+
+        return Boolean.TRUE;
+    }
+
+    /**
+     * Checks whether the given expression is the boolean constant <tt>value</tt>.
+     */
+    public static boolean isConstant(Expression expression, boolean value)  {
+        while (expression instanceof BooleanExpression && !(expression instanceof NotExpression))  {
+            expression = ((BooleanExpression) expression).getExpression();
+        }
+
+        return expression instanceof ConstantExpression && Boolean.valueOf(value).equals(((ConstantExpression) expression).getValue());
+    }
+
+    /**
+     * <p>Simplifies <tt>&amp;&amp;</tt> and <tt>||</tt> chains in the given expression whose operands are boolean
+     * constants or calls to annotation closures marked with {@link #META_DATA_CONSTANT_VALUE}.</p>
+     *
+     * <p>Only identities not changing the outcome of the evaluated operands are applied, e.g.
+     * <tt>true &amp;&amp; x</tt> becomes <tt>x</tt> and <tt>false || x</tt> becomes <tt>x</tt>.</p>
+     *
+     * @param expression the {@link Expression} to simplify
+     * @return the simplified expression, or the given <tt>expression</tt> if nothing could be simplified
+     */
+    public static Expression fold(Expression expression)  {
+        if (expression instanceof NotExpression)  {
+            final Expression operand = fold(((NotExpression) expression).getExpression());
+            if (isConstant(operand, true)) return ConstantExpression.FALSE;
+            if (isConstant(operand, false)) return ConstantExpression.TRUE;
+
+            return expression;
+        }
+
+        if (expression instanceof BooleanExpression)  {
+            final Expression operand = ((BooleanExpression) expression).getExpression();
+            final Expression folded = fold(operand);
+            if (folded == operand) return expression;
+            if (folded instanceof ConstantExpression) return folded;
+
+            final BooleanExpression result = new BooleanExpression(folded);
+            result.setSourcePosition(expression);
+            return result;
+        }
+
+        if (expression instanceof MethodCallExpression && Boolean.TRUE.equals(expression.getNodeMetaData(META_DATA_CONSTANT_VALUE)))  {
+            return ConstantExpression.TRUE;
+        }
+
+        if (expression instanceof BinaryExpression)  {
+            final BinaryExpression binaryExpression = (BinaryExpression) expression;
+            final int operation = binaryExpression.getOperation().getType();
+            if (operation != Types.LOGICAL_AND && operation != Types.LOGICAL_OR) return expression;
+
+            final Expression left = fold(binaryExpression.getLeftExpression());
+            final Expression right = fold(binaryExpression.getRightExpression());
+
+            if (operation == Types.LOGICAL_AND)  {
+                if (isConstant(left, false)) return ConstantExpression.FALSE;
+                if (isConstant(left, true)) return right;
+                if (isConstant(right, true)) return left;
+            } else {
+                if (isConstant(left, true)) return ConstantExpression.TRUE;
+                if (isConstant(left, false)) return right;
+                if (isConstant(right, false)) return left;
+            }
+
+            if (left == binaryExpression.getLeftExpression() && right == binaryExpression.getRightExpression()) return expression;
+
+            final BinaryExpression result = new BinaryExpression(left, binaryExpression.getOperation(), right);
+            result.setSourcePosition(expression);
+            return result;
+        }
+
+        return expression;
+    }
+
+    /**
+     * Applies {@link #fold(Expression)} to the given {@link BooleanExpression}, always returning a
+     * {@link BooleanExpression}.
+     */
+    public static BooleanExpression fold(BooleanExpression booleanExpression)  {
+        final Expression folded = fold((Expression) booleanExpression);
+        if (folded == booleanExpression) return booleanExpression;
+        if (folded instanceof BooleanExpression) return (BooleanExpression) folded;
+
+        final BooleanExpression result = new BooleanExpression(folded);
+        result.setSourcePosition(booleanExpression);
+        return result;
+    }
+
     static class AssertStatementCollector extends ClassCodeVisitorSupport implements Opcodes {
 
         public List<AssertStatement> assertStatements = new ArrayList<AssertStatement>();
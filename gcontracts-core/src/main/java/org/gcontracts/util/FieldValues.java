@@ -1,15 +1,28 @@
 package org.gcontracts.util;
 
+import groovy.lang.Closure;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 
 /**
  * This utility is ment to be used to replace direct calls to private
  * field variables in class invariants.
  *
+ * Annotation closure classes resolve a getter once per field with {@link #getter(Class, String)}
+ * and keep it in a <tt>static final</tt> field, reads are done with {@link #fieldValue(MethodHandle, Closure)}.
+ *
  * @author me@andresteingress.com
  */
 public class FieldValues {
 
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    /**
+     * Kept for annotation closure classes compiled by earlier versions, looks up the field on every call.
+     */
     @SuppressWarnings("unchecked")
     public static <T> T fieldValue(Object obj, String fieldName, Class<T> type) throws IllegalAccessException {
         Validate.notNull(obj);
@@ -27,5 +40,33 @@ public class FieldValues {
 
         return (T) f.get(target);
     }
-    
+
+    /**
+     * Used within generated code to resolve the getter of a private field.
+     *
+     * @param type the class declaring the field or one of its heirs
+     * @param fieldName the name of the field
+     * @return a {@link java.lang.invoke.MethodHandle} of type <tt>(Object)Object</tt>
+     */
+    public static MethodHandle getter(Class<?> type, String fieldName) throws IllegalAccessException {
+        Validate.notNull(type);
+        Validate.notNull(fieldName);
+
+        Field f = ReflectionUtils.findField(type, fieldName);
+        if (f == null) throw new IllegalArgumentException("Field " + fieldName + " could not be found!");
+        f.setAccessible(true);
+
+        return MethodHandles.lookup().unreflectGetter(f).asType(GETTER_TYPE);
+    }
+
+    /**
+     * Used within generated code to read a private field of the object the given annotation closure is evaluated for.
+     *
+     * @param getter the getter resolved by {@link #getter(Class, String)}
+     * @param closure the annotation closure
+     * @return the field value
+     */
+    public static Object fieldValue(MethodHandle getter, Closure<?> closure) throws Throwable {
+        return (Object) getter.invokeExact(closure.getThisObject());
+    }
 }
@@ -26,12 +26,17 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.lang.ref.SoftReference;
 import java.net.URL;
 import java.util.*;
 
 /**
  * <p>Finds and loads implementation classes of interface {@link org.gcontracts.common.spi.Lifecycle}.</p>
  *
+ * <p>{@link #loadCached(Class, ClassLoader)} shares the loaded implementations across visitors and compilation
+ * units. The cache refers to class loaders weakly and to the implementations softly, it neither keeps class loaders
+ * nor the implementation classes they have loaded alive.</p>
+ *
  * @author ast
  **/
 public final class LifecycleImplementationLoader<S>
@@ -40,6 +45,8 @@ public final class LifecycleImplementationLoader<S>
 
     private static final String PREFIX = "META-INF/services/";
 
+    private static final Map<ClassLoader, Map<Class<?>, SoftReference<List<?>>>> cache = new WeakHashMap<ClassLoader, Map<Class<?>, SoftReference<List<?>>>>();
+
     private Class<S> service;
     private ClassLoader loader;
     private LinkedHashMap<String,S> providers = new LinkedHashMap<String,S>();
@@ -230,4 +237,46 @@ public final class LifecycleImplementationLoader<S>
     {
         return new LifecycleImplementationLoader<S>(service, loader);
     }
+
+    /**
+     * Returns the implementations of the given type found by the given class loader. The configuration files
+     * are only scanned and the implementations only instantiated once per class loader, implementations must
+     * therefore be stateless.
+     *
+     * @param service the implemented interface, e.g. {@link org.gcontracts.common.spi.Lifecycle}
+     * @param loader the class loader used to find and load implementations
+     * @return the unmodifiable list of implementations
+     */
+    @SuppressWarnings("unchecked")
+    public static <S> List<S> loadCached(Class<S> service, ClassLoader loader)  {
+        synchronized (cache)  {
+            Map<Class<?>, SoftReference<List<?>>> implementations = cache.get(loader);
+            if (implementations == null)  {
+                implementations = new HashMap<Class<?>, SoftReference<List<?>>>();
+                cache.put(loader, implementations);
+            }
+
+            final SoftReference<List<?>> reference = implementations.get(service);
+            List<S> result = reference != null ? (List<S>) reference.get() : null;
+
+            if (result == null)  {
+                final List<S> loaded = new ArrayList<S>();
+                for (S implementation : load(service, loader)) loaded.add(implementation);
+
+                result = Collections.unmodifiableList(loaded);
+                implementations.put(service, new SoftReference<List<?>>(result));
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * Clears all cached implementations, e.g. after configuration files have been changed.
+     */
+    public static void clearCache()  {
+        synchronized (cache)  {
+            cache.clear();
+        }
+    }
 }
@@ -0,0 +1,99 @@
+package org.gcontracts
+
+import org.junit.Test
+
+/**
+ * @author ast
+ */
+class ViolationTrackerTests {
+
+    @Test void violations_outside_of_scope_are_ignored() {
+        new PreconditionViolation('outside')
+
+        def mark = ViolationTracker.begin()
+        try {
+            assert !ViolationTracker.violationsOccured(mark)
+        } finally {
+            ViolationTracker.end(mark)
+        }
+    }
+
+    @Test void violations_are_kept_in_chronological_order() {
+        def mark = ViolationTracker.begin()
+        try {
+            def first = new PreconditionViolation('first')
+            new PostconditionViolation('second')
+
+            assert ViolationTracker.violationsOccured(mark)
+
+            try {
+                ViolationTracker.rethrowFirst(mark)
+                assert false
+            } catch (AssertionViolation violation) {
+                assert violation.is(first)
+            }
+        } finally {
+            ViolationTracker.end(mark)
+        }
+    }
+
+    @Test void nested_scope_does_not_discard_outer_violations() {
+        def outer = ViolationTracker.begin()
+        try {
+            def first = new PreconditionViolation('outer')
+
+            def inner = ViolationTracker.begin()
+            try {
+                new PreconditionViolation('inner')
+                assert ViolationTracker.violationsOccured(inner)
+            } finally {
+                ViolationTracker.end(inner)
+            }
+
+            assert ViolationTracker.INSTANCE.get().last().is(first)
+        } finally {
+            ViolationTracker.end(outer)
+        }
+
+        assert !ViolationTracker.INSTANCE.get().hasViolations()
+    }
+
+    @Test void legacy_scopes_nest_with_scopes() {
+        def outer = ViolationTracker.begin()
+        try {
+            def first = new PreconditionViolation('outer')
+
+            ViolationTracker.init()
+            try {
+                assert !ViolationTracker.violationsOccured()
+
+                def legacy = new PreconditionViolation('legacy')
+                assert ViolationTracker.violationsOccured()
+
+                try {
+                    ViolationTracker.rethrowFirst()
+                    assert false
+                } catch (AssertionViolation violation) {
+                    assert violation.is(legacy)
+                }
+            } finally {
+                ViolationTracker.deinit()
+            }
+
+            assert ViolationTracker.INSTANCE.get().last().is(first)
+        } finally {
+            ViolationTracker.end(outer)
+        }
+
+        def mark = ViolationTracker.begin()
+        try {
+            new PreconditionViolation('later')
+            assert ViolationTracker.violationsOccured(mark)
+        } finally {
+            ViolationTracker.end(mark)
+        }
+
+        ViolationTracker.deinit()
+        assert !ViolationTracker.INSTANCE.get().hasViolations()
+    }
+}
@@ -0,0 +1,84 @@
+package org.gcontracts.common.impl
+
+import org.gcontracts.generation.ContractExecutionTracker
+import org.junit.Test
+
+import javax.management.ObjectName
+import java.lang.management.ManagementFactory
+
+import static org.gcontracts.common.impl.DefaultContractMetrics.LatencyHistogram.*
+
+/**
+ * @author ast
+ */
+class DefaultContractMetricsTests {
+
+    @Test void histogram_buckets() {
+        assert bucket(-1) == 0
+        assert (0..3).collect { bucket(it) } == [0, 1, 2, 3]
+        assert (4..16).collect { bucket(it) } == [4, 5, 6, 7, 8, 8, 9, 9, 10, 10, 11, 11, 12]
+        assert bucket(Long.MAX_VALUE) == BUCKETS - 1
+
+        (0..<BUCKETS).each { int i ->
+            assert bucket(lowerBound(i)) == i
+            assert bucket(upperBound(i)) == i
+        }
+    }
+
+    @Test void histogram_percentiles() {
+        def histogram = new DefaultContractMetrics.LatencyHistogram()
+        98.times { histogram.record(100) }
+        histogram.record(1000)
+        histogram.record(100000)
+
+        def counts = histogram.counts()
+
+        assert percentile(counts, 0.5) in 100..(100 * 1.25)
+        assert percentile(counts, 0.99) in 1000..(1000 * 1.25)
+        assert max(counts) in 100000..(100000 * 1.25)
+    }
+
+    @Test void metrics_per_site() {
+        def precondition = ContractExecutionTracker.register('tests.Account', 'void deposit(int)', 'precondition', false)
+        def invariant = ContractExecutionTracker.register('tests.Account', 'void invariant_tests_Account()', 'invariant', false)
+
+        def metrics = new DefaultContractMetrics()
+        metrics.evaluated(precondition, 'precondition', 100, true)
+        metrics.evaluated(precondition, 'precondition', 200, false)
+        metrics.evaluated(invariant, 'invariant', 50, true)
+
+        assert metrics.evaluations == 3
+        assert metrics.violations == 1
+
+        def site = metrics.sites.find { it.siteId == precondition }
+        assert site.className == 'tests.Account'
+        assert site.methodIdentifier == 'void deposit(int)'
+        assert site.assertionType == 'precondition'
+        assert site.evaluations == 2
+        assert site.violations == 1
+        assert site.totalNanos == 300
+
+        metrics.reset()
+
+        assert metrics.evaluations == 0
+        assert metrics.sites.empty
+    }
+
+    @Test void jmx_export() {
+        def server = ManagementFactory.platformMBeanServer
+        def name = new ObjectName(DefaultContractMetrics.OBJECT_NAME)
+        if (server.isRegistered(name)) server.unregisterMBean(name)
+
+        def metrics = new DefaultContractMetrics()
+        metrics.registerMBean()
+        try {
+            def siteId = ContractExecutionTracker.register('tests.Account', 'void withdraw(int)', 'postcondition', false)
+            metrics.evaluated(siteId, 'postcondition', 100, true)
+
+            assert server.getAttribute(name, 'Evaluations') == 1
+            assert server.getAttribute(name, 'Sites')[0].get('methodIdentifier') == 'void withdraw(int)'
+        } finally {
+            server.unregisterMBean(name)
+        }
+    }
+}
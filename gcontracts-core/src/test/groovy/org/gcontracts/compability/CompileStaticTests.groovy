@@ -80,5 +80,79 @@ class CompileStaticTests extends GroovyShellTestCase {
             new A()
         """
     }
-    
+
+    void testContractBodiesAreStaticallyCompiled()  {
+        def methods = evaluate """
+            import org.gcontracts.annotations.*
+
+            @groovy.transform.CompileStatic
+            @Invariant({ valid() })
+            class A {
+                private int speed = 1
+
+                boolean valid() { speed >= 0 }
+
+                @Requires({ by > 0 && valid() })
+                @Ensures({ speed == old.speed + by })
+                void accelerate(int by) { speed += by }
+            }
+
+            def a = new A()
+            a.accelerate(2)
+            A.declaredMethods*.name.findAll { it.startsWith('\$_gc_contract_') }
+        """
+
+        assert methods.size() == 3
+    }
+
+    void testStaticallyCompiledContractViolation()  {
+        shouldFail PreconditionViolation.class, {
+            evaluate """
+                import org.gcontracts.annotations.*
+
+                @groovy.transform.CompileStatic
+                class A {
+                    boolean valid(String param) { param.length() > 0 }
+
+                    @Requires({ valid(param) })
+                    void someOperation(String param) { }
+                }
+                new A().someOperation('')
+            """
+        }
+    }
+
+    void testStaticallyCompiledContractsAreTypeChecked()  {
+        shouldFail org.codehaus.groovy.control.MultipleCompilationErrorsException.class, {
+            evaluate """
+                import org.gcontracts.annotations.*
+
+                @groovy.transform.CompileStatic
+                class A {
+                    boolean valid() { true }
+
+                    @Requires({ valid() && param.undefined() })
+                    void someOperation(String param) { }
+                }
+                new A()
+            """
+        }
+    }
+
+    void testSkippedMethodsKeepDynamicContracts()  {
+        evaluate """
+            import org.gcontracts.annotations.*
+            import groovy.transform.*
+
+            @CompileStatic
+            class A {
+                boolean valid() { true }
+
+                @CompileStatic(TypeCheckingMode.SKIP)
+                @Requires({ valid() && param.undefined == null })
+                void someOperation(def param) { }
+            }
+            new A().someOperation([:])
+        """
+    }
 }
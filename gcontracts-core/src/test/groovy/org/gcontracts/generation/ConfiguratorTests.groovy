@@ -0,0 +1,65 @@
+package org.gcontracts.generation
+
+import org.junit.Test
+
+/**
+ * @author ast
+ */
+class ConfiguratorTests {
+
+    @Test void enabled_per_default() {
+        def configuration = Configurator.parse([])
+
+        assert configuration.isEnabled('org.example.Account')
+        assert configuration.isEnabled('Account')
+    }
+
+    @Test void disable_all() {
+        def configuration = Configurator.parse(['-Xmx512m', '-da'])
+
+        assert !configuration.isEnabled('org.example.Account')
+    }
+
+    @Test void deepest_package_wins() {
+        def configuration = Configurator.parse(['-da:org.example...', '-ea:org.example.bank...'])
+
+        assert !configuration.isEnabled('org.example.Account')
+        assert configuration.isEnabled('org.example.bank.Account')
+        assert configuration.isEnabled('org.example.bank.internal.Account')
+        assert configuration.isEnabled('org.other.Account')
+        assert configuration.isEnabled('org.examples.Account')
+    }
+
+    @Test void class_configuration() {
+        def configuration = Configurator.parse(['-da:org.example...', '-ea:org.example.Account'])
+
+        assert configuration.isEnabled('org.example.Account')
+        assert !configuration.isEnabled('org.example.Account$Inner')
+        assert !configuration.isEnabled('org.example.Customer')
+    }
+
+    @Test void later_arguments_override_earlier_ones() {
+        def configuration = Configurator.parse(['-ea:org.example...', '-da:org.example...'])
+
+        assert !configuration.isEnabled('org.example.Account')
+    }
+
+    @Test void check_assertions_enabled() {
+        assert Configurator.checkAssertionsEnabled('org.example.Account')
+        assert !Configurator.checkAssertionsEnabled('')
+        assert !Configurator.checkAssertionsEnabled(null)
+    }
+
+    @Test void disable_assertion_kind() {
+        System.setProperty(Configurator.POSTCONDITIONS_PROPERTY, 'false')
+        try {
+            assert Configurator.checkAssertionsEnabled('org.example.Account', Switchboard.PRECONDITION)
+            assert !Configurator.checkAssertionsEnabled('org.example.Account', Switchboard.POSTCONDITION)
+            assert Configurator.checkAssertionsEnabled('org.example.Account', Switchboard.CLASS_INVARIANT)
+        } finally {
+            System.clearProperty(Configurator.POSTCONDITIONS_PROPERTY)
+        }
+
+        assert Configurator.checkAssertionsEnabled('org.example.Account', Switchboard.POSTCONDITION)
+    }
+}
@@ -43,4 +43,28 @@ class ContractExecutionTrackerTests {
         ContractExecutionTracker.clear('Dummy', 'method 1', 'pre', true)
     }
 
+    @Test void register_returns_same_id_for_same_site() {
+
+        def siteId = ContractExecutionTracker.register('Dummy', 'method 3', 'pre', false)
+
+        assert ContractExecutionTracker.register('Dummy', 'method 3', 'pre', false) == siteId
+        assert ContractExecutionTracker.register('Dummy', 'method 3', 'pre', true) != siteId
+        assert ContractExecutionTracker.register('Dummy', 'method 3', 'post', false) != siteId
+    }
+
+    @Test void track_site_id() {
+
+        def siteId = ContractExecutionTracker.register('Dummy', 'method 4', 'pre', false)
+        ContractExecutionTracker.clear(siteId)
+
+        assert ContractExecutionTracker.track(siteId)
+        assert ContractExecutionTracker.track(siteId) == false
+        assert ContractExecutionTracker.track('Dummy', 'method 4', 'pre', false) == false
+
+        ContractExecutionTracker.clear(siteId)
+
+        assert ContractExecutionTracker.track('Dummy', 'method 4', 'pre', false)
+
+        ContractExecutionTracker.clear(siteId)
+    }
 }
@@ -0,0 +1,181 @@
+package org.gcontracts.tests.inv
+
+import org.gcontracts.ClassInvariantViolation
+import org.gcontracts.common.spi.ProcessingContextInformation
+import org.gcontracts.generation.DirtyInvariantGenerationUtility
+import org.gcontracts.tests.basic.BaseTestClass
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+/**
+ * @author ast
+ */
+class DirtyInvariantTests extends BaseTestClass {
+
+    def source = '''
+@Contracted
+package tests
+
+import org.gcontracts.annotations.*
+
+@Invariant({ balance >= 0 && limit > 0 })
+class Account {
+
+  BigDecimal balance = 0
+  private BigDecimal limit = 100
+  private List log = []
+
+  void deposit(BigDecimal amount) { balance += amount }
+
+  void read() { log << balance }
+
+  void overdraw() { [1].each { balance = -1 } }
+
+  void breakLimit() { reset() }
+
+  private void reset() { limit = 0 }
+}
+'''
+
+    @Before void enable()  {
+        System.setProperty(ProcessingContextInformation.COMPILE_DIRTY_INVARIANTS_PROPERTY, 'true')
+    }
+
+    @After void clear()  {
+        System.clearProperty(ProcessingContextInformation.COMPILE_DIRTY_INVARIANTS_PROPERTY)
+    }
+
+    @Test void methods_without_writes_leave_the_object_clean()  {
+        def account = create_instance_of(source)
+        assert !account.@$_gc_invariant_dirty
+
+        account.read()
+        assert !account.@$_gc_invariant_dirty
+
+        account.deposit(10)
+        assert account.balance == 10
+        assert !account.@$_gc_invariant_dirty
+    }
+
+    @Test void writes_in_methods_closures_and_setters_are_checked()  {
+        def clazz = add_class_to_classpath(source)
+
+        shouldFail ClassInvariantViolation, {
+            clazz.newInstance().deposit(-1)
+        }
+
+        shouldFail ClassInvariantViolation, {
+            clazz.newInstance().overdraw()
+        }
+
+        shouldFail ClassInvariantViolation, {
+            clazz.newInstance().breakLimit()
+        }
+
+        shouldFail ClassInvariantViolation, {
+            clazz.newInstance().balance = -1
+        }
+    }
+
+    @Test void invariants_depending_on_method_calls_are_not_tracked()  {
+        def clazz = add_class_to_classpath '''
+@Contracted
+package tests
+
+import org.gcontracts.annotations.*
+
+@Invariant({ items.size() < 3 })
+class Basket {
+
+  private List items = []
+
+  void add(def item) { items.add(item) }
+}
+'''
+
+        assert !clazz.declaredFields*.name.contains(DirtyInvariantGenerationUtility.DIRTY_FIELD_NAME)
+
+        def basket = clazz.newInstance()
+        basket.add(1)
+        basket.add(2)
+
+        shouldFail ClassInvariantViolation, {
+            basket.add(3)
+        }
+    }
+
+    @Test void dirty_tracking_is_opt_in()  {
+        System.clearProperty(ProcessingContextInformation.COMPILE_DIRTY_INVARIANTS_PROPERTY)
+
+        def clazz = add_class_to_classpath(source)
+
+        assert !clazz.declaredFields*.name.contains(DirtyInvariantGenerationUtility.DIRTY_FIELD_NAME)
+    }
+
+    def counterSource = '''
+@Contracted
+package tests
+
+import org.gcontracts.annotations.*
+
+@Invariant({ value >= 0 && elements[0] >= 0 })
+class Counter {
+
+  private int value = 0
+  private int[] elements = [0] as int[]
+  private int calls = 0
+
+  void call() { calls++ }
+
+  void callAndBreak() { call(); value = -1 }
+
+  void breakElement() { elements[0] = -1 }
+
+  int element() { elements[0] }
+}
+'''
+
+    @Test void writes_after_nested_checks_are_checked()  {
+        def clazz = add_class_to_classpath(counterSource)
+        assert clazz.declaredFields*.name.contains(DirtyInvariantGenerationUtility.DIRTY_FIELD_NAME)
+
+        shouldFail ClassInvariantViolation, {
+            clazz.newInstance().callAndBreak()
+        }
+    }
+
+    @Test void element_writes_of_tracked_arrays_are_checked()  {
+        def counter = create_instance_of(counterSource)
+
+        assert counter.element() == 0
+        assert !counter.@$_gc_invariant_dirty
+
+        shouldFail ClassInvariantViolation, {
+            counter.breakElement()
+        }
+    }
+
+    @Test void escaping_arrays_are_not_tracked()  {
+        def clazz = add_class_to_classpath '''
+@Contracted
+package tests
+
+import org.gcontracts.annotations.*
+
+@Invariant({ elements[0] >= 0 })
+class Elements {
+
+  private int[] elements = [0] as int[]
+
+  void fill(int value) { Arrays.fill(elements, value) }
+}
+'''
+
+        assert !clazz.declaredFields*.name.contains(DirtyInvariantGenerationUtility.DIRTY_FIELD_NAME)
+
+        shouldFail ClassInvariantViolation, {
+            clazz.newInstance().fill(-1)
+        }
+    }
+}
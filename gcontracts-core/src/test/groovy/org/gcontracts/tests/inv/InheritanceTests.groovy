@@ -388,4 +388,88 @@ class Account {
         
         c.newInstance()
     }
+
+    @Test void all_ancestor_invariants_are_checked()  {
+        def c = add_class_to_classpath """
+            @Contracted
+            package tests
+
+            import org.gcontracts.annotations.*
+
+            @Invariant({ a >= 0 })
+            class Root {
+                protected int a = 0
+
+                protected void breakRoot() { a = -1 }
+            }
+
+            @Invariant({ b >= 0 })
+            class Mid extends Root {
+                protected int b = 0
+            }
+
+            @Invariant({ c >= 0 })
+            class Leaf extends Mid {
+                protected int c = 0
+
+                void op() { breakRoot() }
+            }
+            """
+
+        def leaf = c.classLoader.loadClass('tests.Leaf').newInstance()
+
+        def message = shouldFail ClassInvariantViolation, {
+            leaf.op()
+        }
+
+        assert message.contains('tests.Root')
+    }
+
+    @Test void all_precompiled_ancestor_invariants_are_checked()  {
+        add_class_to_classpath """
+            @Contracted
+            package tests
+
+            import org.gcontracts.annotations.*
+
+            @Invariant({ a >= 0 })
+            class Root {
+                protected int a = 0
+
+                protected void breakRoot() { a = -1 }
+            }
+            """
+
+        add_class_to_classpath """
+            @Contracted
+            package tests
+
+            import org.gcontracts.annotations.*
+
+            @Invariant({ b >= 0 })
+            class Mid extends Root {
+                protected int b = 0
+            }
+            """
+
+        def leaf = create_instance_of """
+            @Contracted
+            package tests
+
+            import org.gcontracts.annotations.*
+
+            @Invariant({ c >= 0 })
+            class Leaf extends Mid {
+                protected int c = 0
+
+                void op() { breakRoot() }
+            }
+            """
+
+        def message = shouldFail ClassInvariantViolation, {
+            leaf.op()
+        }
+
+        assert message.contains('tests.Root')
+    }
 }
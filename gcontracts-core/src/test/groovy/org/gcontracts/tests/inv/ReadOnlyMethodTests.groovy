@@ -0,0 +1,154 @@
+package org.gcontracts.tests.inv
+
+import org.gcontracts.ClassInvariantViolation
+import org.gcontracts.common.spi.ProcessingContextInformation
+import org.gcontracts.tests.basic.BaseTestClass
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+/**
+ * @author ast
+ */
+class ReadOnlyMethodTests extends BaseTestClass {
+
+    def source = '''
+@Contracted
+package tests
+
+import org.gcontracts.annotations.*
+
+@Invariant({ checked() && balance >= 0 })
+class Account {
+
+  static int checks = 0
+
+  BigDecimal balance = 0
+  private List log = []
+
+  boolean checked() { checks++; true }
+
+  BigDecimal available() { balance + 100 }
+
+  int entries() { log.size() }
+
+  void deposit(BigDecimal amount) { balance += amount }
+
+  void record() { log << balance }
+
+  void overdraw() { reset() }
+
+  void overdrawLater() { [1].each { reset() } }
+
+  void register(List accounts) { accounts.add(this) }
+
+  private void reset() { balance = -1 }
+
+  @ReadOnly
+  BigDecimal cached() { log.add(1); balance }
+
+  @ReadOnly(false)
+  BigDecimal audited() { balance }
+}
+'''
+
+    def nestedSource = '''
+@Contracted
+package tests
+
+import org.gcontracts.annotations.*
+
+@Invariant({ address.city != null && items.size() < 2 })
+class Customer {
+
+  Address address = new Address()
+  List items = []
+
+  void clearCity() { address.city = null }
+
+  void clearOwnCity() { this.address.city = null }
+
+  void addItems() { def l = items; l.add(1); l.add(2) }
+
+  void addItemsLater() { [items].each { l -> l << 1 << 2 } }
+
+  String city() { def a = address; a.city }
+}
+
+class Address {
+  String city = 'Vienna'
+}
+'''
+
+    @Before void enable()  {
+        System.setProperty(ProcessingContextInformation.COMPILE_READ_ONLY_METHODS_PROPERTY, 'true')
+    }
+
+    @After void clear()  {
+        System.clearProperty(ProcessingContextInformation.COMPILE_READ_ONLY_METHODS_PROPERTY)
+    }
+
+    @Test void read_only_methods_skip_the_invariant()  {
+        def account = create_instance_of(source)
+        account.class.checks = 0
+
+        assert account.available() == 100
+        assert account.entries() == 0
+        assert account.hashCode() == account.hashCode()
+        assert account.cached() == 0
+
+        assert account.class.checks == 0
+    }
+
+    @Test void writing_methods_check_the_invariant()  {
+        def account = create_instance_of(source)
+        account.class.checks = 0
+
+        account.deposit(1)
+        account.record()
+        account.register([])
+        account.audited()
+
+        assert account.class.checks == 4
+
+        shouldFail ClassInvariantViolation, {
+            account.overdraw()
+        }
+
+        shouldFail ClassInvariantViolation, {
+            create_instance_of(source).overdrawLater()
+        }
+    }
+
+    @Test void writes_below_fields_check_the_invariant()  {
+        shouldFail ClassInvariantViolation, {
+            create_instance_of(nestedSource).clearCity()
+        }
+
+        shouldFail ClassInvariantViolation, {
+            create_instance_of(nestedSource).clearOwnCity()
+        }
+
+        shouldFail ClassInvariantViolation, {
+            create_instance_of(nestedSource).addItems()
+        }
+
+        shouldFail ClassInvariantViolation, {
+            create_instance_of(nestedSource).addItemsLater()
+        }
+
+        assert create_instance_of(nestedSource).city() == 'Vienna'
+    }
+
+    @Test void read_only_analysis_is_opt_in()  {
+        System.clearProperty(ProcessingContextInformation.COMPILE_READ_ONLY_METHODS_PROPERTY)
+
+        def account = create_instance_of(source)
+        account.class.checks = 0
+
+        account.available()
+        account.cached()
+
+        assert account.class.checks == 1
+    }
+}
@@ -277,4 +277,31 @@ class Rocket {
             betterRocket.increase()
         }
     }
+
+    @Test void private_fields_are_read_by_cached_getters()  {
+
+        def c = add_class_to_classpath """
+                    import org.gcontracts.annotations.*
+
+                    @Invariant({ speed >= 0.0 && speed <= limit })
+                    class Glider {
+                        private double speed = 0.0
+                        private double limit = 10.0
+
+                        def accelerate(double delta) {
+                            this.speed += delta
+                        }
+                    }
+                    """
+
+        def invariantClosure = c.classLoader.loadClass(c.name + '$_gc_closure1')
+        assert invariantClosure.declaredFields*.name.findAll { it.startsWith('$_gc_field_') }.sort() == ['$_gc_field_limit', '$_gc_field_speed']
+
+        def glider = c.newInstance()
+        glider.accelerate(5.0)
+
+        shouldFail ClassInvariantViolation, {
+            glider.accelerate(10.0)
+        }
+    }
 }
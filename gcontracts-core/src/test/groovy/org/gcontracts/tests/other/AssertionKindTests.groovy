@@ -0,0 +1,84 @@
+package org.gcontracts.tests.other
+
+import org.gcontracts.ClassInvariantViolation
+import org.gcontracts.PostconditionViolation
+import org.gcontracts.PreconditionViolation
+import org.gcontracts.common.spi.ProcessingContextInformation
+import org.gcontracts.generation.Configurator
+import org.gcontracts.generation.Switchboard
+import org.gcontracts.tests.basic.BaseTestClass
+import org.junit.After
+import org.junit.Test
+
+/**
+ * @author ast
+ */
+class AssertionKindTests extends BaseTestClass {
+
+    def source = '''
+@Contracted
+package tests
+
+import org.gcontracts.annotations.*
+
+@Invariant({ value < 100 })
+class Account {
+
+  int value
+
+  @Requires({ amount > 0 })
+  @Ensures({ value == old.value - amount })
+  void add(int amount) { value += amount }
+}
+'''
+
+    @After void clear()  {
+        [ProcessingContextInformation.COMPILE_PRECONDITIONS_PROPERTY,
+         ProcessingContextInformation.COMPILE_POSTCONDITIONS_PROPERTY,
+         ProcessingContextInformation.COMPILE_CLASS_INVARIANTS_PROPERTY,
+         Configurator.POSTCONDITIONS_PROPERTY].each { System.clearProperty(it) }
+
+        Switchboard.reset()
+    }
+
+    @Test void all_kinds_enabled()  {
+        def account = create_instance_of(source)
+
+        shouldFail PreconditionViolation, { account.add(-1) }
+        shouldFail PostconditionViolation, { account.add(1) }
+    }
+
+    @Test void compile_preconditions_only()  {
+        System.setProperty(ProcessingContextInformation.COMPILE_POSTCONDITIONS_PROPERTY, 'false')
+        System.setProperty(ProcessingContextInformation.COMPILE_CLASS_INVARIANTS_PROPERTY, 'false')
+
+        def account = create_instance_of(source)
+
+        shouldFail PreconditionViolation, { account.add(-1) }
+
+        account.add(200)
+        assert account.value == 200
+        assert !account.class.declaredMethods*.name.any { it.startsWith('$_gc_computeOldVariables') }
+    }
+
+    @Test void compile_without_preconditions()  {
+        System.setProperty(ProcessingContextInformation.COMPILE_PRECONDITIONS_PROPERTY, 'false')
+
+        def account = create_instance_of(source)
+
+        shouldFail PostconditionViolation, { account.add(-1) }
+    }
+
+    @Test void disable_postconditions_at_runtime()  {
+        System.setProperty(Configurator.POSTCONDITIONS_PROPERTY, 'false')
+        // switches of classes already loaded are only updated on changes of the switchboard
+        Switchboard.reset()
+
+        def account = create_instance_of(source)
+
+        shouldFail PreconditionViolation, { account.add(-1) }
+        account.add(1)
+
+        shouldFail ClassInvariantViolation, { account.add(200) }
+    }
+}
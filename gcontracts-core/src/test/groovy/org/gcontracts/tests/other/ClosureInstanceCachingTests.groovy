@@ -0,0 +1,84 @@
+package org.gcontracts.tests.other
+
+import org.gcontracts.PreconditionViolation
+import org.gcontracts.tests.basic.BaseTestClass
+import org.junit.Test
+
+import java.lang.reflect.Modifier
+
+/**
+ * @author ast
+ */
+class ClosureInstanceCachingTests extends BaseTestClass {
+
+    def source = '''
+@Contracted
+package tests
+
+import org.gcontracts.annotations.*
+
+class A {
+
+  @Requires({ value > 0 && isValid(value) })
+  def instanceMethod(def value) { value }
+
+  @Requires({ value > 0 && isPositive(value) })
+  static def staticMethod(def value) { value }
+
+  boolean isValid(def value) { true }
+
+  static boolean isPositive(def value) { value > 0 }
+}
+'''
+
+    @Test void closure_instance_is_created_once_per_instance()  {
+        def a = create_instance_of(source)
+
+        a.instanceMethod(1)
+        def closure = closureInstances(a.getClass(), false).collect { it.get(a) }.find { it != null }
+        assert closure != null
+
+        a.instanceMethod(2)
+        assert closureInstances(a.getClass(), false).collect { it.get(a) }.find { it != null }.is(closure)
+
+        shouldFail PreconditionViolation, {
+            a.instanceMethod(-1)
+        }
+    }
+
+    @Test void closure_instance_of_static_method_is_created_once_per_class()  {
+        def clazz = add_class_to_classpath(source)
+
+        clazz.staticMethod(1)
+        def closure = closureInstances(clazz, true).collect { it.get(null) }.find { it != null }
+        assert closure != null
+
+        clazz.staticMethod(2)
+        assert closureInstances(clazz, true).collect { it.get(null) }.find { it != null }.is(closure)
+
+        shouldFail PreconditionViolation, {
+            clazz.staticMethod(-1)
+        }
+    }
+
+    @Test void inlined_contracts_do_not_need_closure_instances()  {
+        def clazz = add_class_to_classpath '''
+@Contracted
+package tests
+
+import org.gcontracts.annotations.*
+
+class B {
+
+  @Requires({ value > 0 })
+  def instanceMethod(def value) { value }
+}
+'''
+
+        assert closureInstances(clazz, false).isEmpty()
+    }
+
+    private static def closureInstances(Class clazz, boolean isStatic)  {
+        clazz.declaredFields.findAll { it.name.startsWith('$_gc_closure_') && it.synthetic && Modifier.isStatic(it.modifiers) == isStatic }.each { it.accessible = true }
+    }
+}
@@ -0,0 +1,134 @@
+package org.gcontracts.tests.other
+
+import org.gcontracts.ClassInvariantViolation
+import org.gcontracts.PostconditionViolation
+import org.gcontracts.PreconditionViolation
+import org.gcontracts.tests.basic.BaseTestClass
+import org.junit.Test
+
+/**
+ * @author ast
+ */
+class ConstantFoldingTests extends BaseTestClass {
+
+    @Test void trivially_true_contracts_are_not_injected()  {
+        def clazz = add_class_to_classpath '''
+@Contracted
+package tests
+
+import org.gcontracts.annotations.*
+
+@Invariant({ true })
+class A {
+
+  @Requires({ true })
+  @Ensures({ true && true })
+  def method(def value) { value }
+}
+'''
+
+        assert clazz.newInstance().method(42) == 42
+        assert contractMembers(clazz).isEmpty()
+    }
+
+    @Test void default_contracts_of_trivially_true_parents_are_not_injected()  {
+        def clazz = add_class_to_classpath '''
+@Contracted
+package tests
+
+import org.gcontracts.annotations.*
+
+class Parent {
+
+  @Requires({ true })
+  @Ensures({ true })
+  def method(def value) { value }
+}
+
+class Child extends Parent {
+
+  def method(def value) { value }
+}
+'''
+
+        def child = clazz.classLoader.loadClass('tests.Child')
+        assert child.newInstance().method(42) == 42
+        assert contractMembers(child).isEmpty()
+    }
+
+    @Test void trivially_true_operands_are_removed()  {
+        add_class_to_classpath '''
+@Contracted
+package tests
+
+import org.gcontracts.annotations.*
+
+class Base {
+
+  @Ensures({ true })
+  def method(def value) { value }
+}
+'''
+
+        def clazz = add_class_to_classpath '''
+@Contracted
+package tests
+
+import org.gcontracts.annotations.*
+
+class B extends Base {
+
+  @Ensures({ result > 0 })
+  def method(def value) { value }
+}
+'''
+
+        def b = clazz.newInstance()
+        assert b.method(1) == 1
+
+        shouldFail PostconditionViolation, {
+            b.method(-1)
+        }
+    }
+
+    @Test void constant_false_contracts_are_still_checked()  {
+        def clazz = add_class_to_classpath '''
+@Contracted
+package tests
+
+import org.gcontracts.annotations.*
+
+@Invariant({ false })
+class C {
+
+  @Requires({ false })
+  def method(def value) { value }
+}
+'''
+
+        shouldFail ClassInvariantViolation, {
+            clazz.newInstance()
+        }
+
+        def other = add_class_to_classpath '''
+@Contracted
+package tests
+
+import org.gcontracts.annotations.*
+
+class D {
+
+  @Requires({ false })
+  def method(def value) { value }
+}
+'''
+
+        shouldFail PreconditionViolation, {
+            other.newInstance().method(1)
+        }
+    }
+
+    private static def contractMembers(Class clazz)  {
+        (clazz.declaredFields*.name + clazz.declaredMethods*.name).findAll { it.startsWith('$_gc_switch_') || it.startsWith('$_gc_closure_') || it.startsWith('invariant_') }
+    }
+}
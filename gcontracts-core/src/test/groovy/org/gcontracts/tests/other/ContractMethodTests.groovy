@@ -0,0 +1,120 @@
+package org.gcontracts.tests.other
+
+import org.gcontracts.PostconditionViolation
+import org.gcontracts.PreconditionViolation
+import org.gcontracts.tests.basic.BaseTestClass
+import org.junit.Test
+
+/**
+ * @author ast
+ */
+class ContractMethodTests extends BaseTestClass {
+
+    def source = '''
+@Contracted
+package tests
+
+import org.gcontracts.annotations.*
+
+class C extends B {
+  def deposit(def amount) { balance += amount; balance }
+}
+
+class B extends A {
+  @Ensures({ result >= 0 })
+  def deposit(def amount) { balance += amount; balance }
+}
+
+class A {
+  def balance = 0
+
+  @Requires({ amount > 0 })
+  @Ensures({ balance >= old.balance })
+  def deposit(def amount) { balance += amount; balance }
+}
+'''
+
+    @Test void heirs_use_contract_methods_of_ancestor()  {
+        def c = add_class_to_classpath(source)
+
+        def a = c.classLoader.loadClass('tests.A')
+        def b = c.classLoader.loadClass('tests.B')
+
+        assert a.declaredMethods.find { it.name == '$_gc_precondition_deposit' && it.synthetic }
+        assert a.declaredMethods.find { it.name == '$_gc_postcondition_deposit' && it.synthetic }
+        assert b.declaredMethods.find { it.name == '$_gc_postcondition_deposit' && it.synthetic }
+    }
+
+    @Test void inherited_precondition()  {
+        def c = add_class_to_classpath(source).newInstance()
+
+        assert c.deposit(10) == 10
+
+        shouldFail PreconditionViolation, {
+            c.deposit(0)
+        }
+    }
+
+    @Test void inherited_postcondition()  {
+        def c = add_class_to_classpath(source).newInstance()
+
+        c.balance = -100
+
+        shouldFail PostconditionViolation, {
+            c.deposit(5)
+        }
+    }
+
+    @Test void inherited_static_precondition()  {
+        def e = add_class_to_classpath '''
+@Contracted
+package tests
+
+import org.gcontracts.annotations.*
+
+class E extends D {
+  static def create(def value) { value }
+}
+
+class D {
+  @Requires({ value != null })
+  static def create(def value) { value }
+}
+'''
+
+        assert e.create(1) == 1
+
+        shouldFail PreconditionViolation, {
+            e.create(null)
+        }
+    }
+
+    @Test void ancestor_compiled_separately()  {
+        add_class_to_classpath '''
+@Contracted
+package tests
+
+import org.gcontracts.annotations.*
+
+class F {
+  @Requires({ value > 0 })
+  def method(def value) { value }
+}
+'''
+        def g = create_instance_of '''
+@Contracted
+package tests
+
+import org.gcontracts.annotations.*
+
+class G extends F {
+  def method(def value) { value }
+}
+'''
+        assert g.method(1) == 1
+
+        shouldFail PreconditionViolation, {
+            g.method(0)
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package org.gcontracts.tests.other
+
+import org.gcontracts.PostconditionViolation
+import org.gcontracts.PreconditionViolation
+import org.gcontracts.tests.basic.BaseTestClass
+import org.junit.Test
+
+/**
+ * @author ast
+ */
+class ElementContractTests extends BaseTestClass {
+
+    def source = '''
+@Contracted
+package tests
+
+import org.gcontracts.annotations.*
+
+class Stats {
+
+  final int[] weights = [1, 2, 3] as int[]
+
+  @RequiresEach(of = 'values', value = { it > 0 })
+  def sum(int[] values) { values?.sum() }
+
+  @RequiresEach(of = 'values', value = { Integer value -> value < limit })
+  int max(List<Integer> values, int limit) { values.max() }
+
+  @RequiresEach(of = 'values', value = { it >= 0 }, parallelThreshold = 2)
+  static int count(long[] values) { values.length }
+
+  @RequiresEach(of = 'weights', value = { it > min })
+  void check(int min) {}
+
+  @EnsuresEach(of = 'result', value = { it != null })
+  List<String> names(int n) { n < 0 ? ['a', null] : ['a', 'b'] }
+}
+'''
+
+    @Test void array_elements_are_checked()  {
+        def stats = create_instance_of(source)
+
+        assert stats.sum([1, 2] as int[]) == 3
+        assert stats.sum(null) == null
+
+        shouldFail PreconditionViolation, {
+            stats.sum([1, -2] as int[])
+        }
+    }
+
+    @Test void list_elements_are_checked_with_method_parameters()  {
+        def stats = create_instance_of(source)
+
+        assert stats.max([1, 2], 5) == 2
+
+        shouldFail PreconditionViolation, {
+            stats.max([1, 7], 5)
+        }
+    }
+
+    @Test void field_elements_are_checked()  {
+        def stats = create_instance_of(source)
+
+        stats.check(0)
+
+        shouldFail PreconditionViolation, {
+            stats.check(2)
+        }
+    }
+
+    @Test void result_elements_are_checked()  {
+        def stats = create_instance_of(source)
+
+        assert stats.names(1) == ['a', 'b']
+
+        shouldFail PostconditionViolation, {
+            stats.names(-1)
+        }
+    }
+
+    @Test void large_arrays_are_checked_in_parallel()  {
+        def clazz = add_class_to_classpath(source)
+
+        def values = new long[5000]
+        assert clazz.count(values) == 5000
+
+        values[4000] = -1
+        shouldFail PreconditionViolation, {
+            clazz.count(values)
+        }
+    }
+
+    @Test void element_preconditions_are_combined_with_preconditions()  {
+        def clazz = add_class_to_classpath '''
+@Contracted
+package tests
+
+import org.gcontracts.annotations.*
+
+class Orders {
+
+  @Requires({ limit > 0 })
+  @RequiresEach(of = 'amounts', value = { it <= limit })
+  def place(int[] amounts, int limit) { amounts.length }
+}
+'''
+
+        def orders = clazz.newInstance()
+        assert orders.place([1, 2] as int[], 2) == 2
+
+        shouldFail PreconditionViolation, {
+            orders.place([1, 3] as int[], 2)
+        }
+
+        shouldFail PreconditionViolation, {
+            orders.place([] as int[], 0)
+        }
+    }
+}
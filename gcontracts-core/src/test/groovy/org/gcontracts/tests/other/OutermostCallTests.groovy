@@ -0,0 +1,96 @@
+package org.gcontracts.tests.other
+
+import org.gcontracts.ClassInvariantViolation
+import org.gcontracts.PreconditionViolation
+import org.gcontracts.common.spi.ProcessingContextInformation
+import org.gcontracts.tests.basic.BaseTestClass
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+/**
+ * @author ast
+ */
+class OutermostCallTests extends BaseTestClass {
+
+    def source = '''
+@Contracted
+package tests
+
+import org.gcontracts.annotations.*
+
+@Invariant({ checked() && balance >= 0 })
+class Account {
+
+  static int checks = 0
+
+  BigDecimal balance = 0
+
+  boolean checked() { checks++; true }
+
+  @Requires({ amount > 0 })
+  void deposit(BigDecimal amount) { balance += amount }
+
+  void depositAll(List<BigDecimal> amounts) { amounts.each { deposit(it) } }
+
+  void overdraw() { balance = -1; deposit(1); balance = -1 }
+
+  @Requires({ n >= 0 })
+  static int factorial(int n) { n <= 1 ? 1 : n * factorial(n - 1) }
+}
+'''
+
+    @Before void enable()  {
+        System.setProperty(ProcessingContextInformation.COMPILE_OUTERMOST_CALLS_PROPERTY, 'true')
+    }
+
+    @After void clear()  {
+        System.clearProperty(ProcessingContextInformation.COMPILE_OUTERMOST_CALLS_PROPERTY)
+    }
+
+    @Test void inner_calls_skip_the_invariant()  {
+        def account = create_instance_of(source)
+        account.class.checks = 0
+
+        account.depositAll([1, 2, 3])
+
+        assert account.balance == 6
+        assert account.class.checks == 1
+    }
+
+    @Test void outermost_calls_are_checked()  {
+        def account = create_instance_of(source)
+
+        shouldFail PreconditionViolation, {
+            account.deposit(-1)
+        }
+
+        shouldFail ClassInvariantViolation, {
+            account.overdraw()
+        }
+    }
+
+    @Test void recursive_calls_check_the_precondition_once()  {
+        def clazz = add_class_to_classpath(source)
+
+        assert clazz.factorial(5) == 120
+
+        shouldFail PreconditionViolation, {
+            clazz.factorial(-1)
+        }
+
+        // the tracked class is released after the violation
+        assert clazz.factorial(3) == 6
+    }
+
+    @Test void outermost_mode_is_opt_in()  {
+        System.clearProperty(ProcessingContextInformation.COMPILE_OUTERMOST_CALLS_PROPERTY)
+
+        def account = create_instance_of(source)
+        account.class.checks = 0
+
+        account.depositAll([1, 2, 3])
+
+        assert account.class.checks == 4
+    }
+}
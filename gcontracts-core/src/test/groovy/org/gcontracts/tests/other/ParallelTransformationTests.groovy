@@ -0,0 +1,152 @@
+package org.gcontracts.tests.other
+
+import org.codehaus.groovy.ast.ClassNode
+import org.codehaus.groovy.control.CompilationUnit
+import org.codehaus.groovy.control.Phases
+import org.gcontracts.PostconditionViolation
+import org.gcontracts.PreconditionViolation
+import org.gcontracts.ast.GContractsASTTransformation
+import org.gcontracts.tests.basic.BaseTestClass
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+/**
+ * @author ast
+ */
+class ParallelTransformationTests extends BaseTestClass {
+
+    def source = '''
+@Contracted
+package tests
+
+import org.gcontracts.annotations.*
+
+class Account {
+  int balance
+
+  @Requires({ amount > 0 })
+  @Ensures({ balance == old.balance + amount })
+  void deposit(int amount) { balance += amount }
+}
+
+class Savings extends Account {
+  void deposit(int amount) { balance += 2 * amount }
+}
+
+class Counter {
+  int count
+  List<String> names = []
+
+  @Ensures({ count == old.count + 1 && names.size() == old.names.size() })
+  void increment() { count++ }
+}
+
+interface Named {
+  @Requires({ name })
+  void rename(String name)
+}
+
+class Person implements Named {
+  String name
+  void rename(String name) { this.name = name }
+}
+'''
+
+    def baseSource = '''
+@Contracted
+package tests
+
+import org.gcontracts.annotations.*
+
+@Invariant({ balance >= 0 })
+class Base {
+  int balance
+
+  @Requires({ amount > 0 })
+  @Ensures({ balance == old.balance + amount })
+  void deposit(int amount) { balance += amount }
+}
+'''
+
+    def heirsSource = """
+@Contracted
+package tests
+
+import org.gcontracts.annotations.*
+
+${(1..20).collect { i -> """
+class Heir${i} extends Base {
+  void deposit(int amount) { balance += amount }
+}
+""" }.join()}
+"""
+
+    @Before void enableParallelTransformation()  {
+        System.setProperty(GContractsASTTransformation.PARALLEL_PROPERTY, 'true')
+    }
+
+    @After void disableParallelTransformation()  {
+        System.clearProperty(GContractsASTTransformation.PARALLEL_PROPERTY)
+    }
+
+    private Map<String, byte[]> compile(Map<String, String> sources = ['Accounts.groovy': source])  {
+        def compilationUnit = new CompilationUnit(new GroovyClassLoader(getClass().classLoader))
+        sources.each { name, text -> compilationUnit.addSource(name, text) }
+        compilationUnit.compile(Phases.CLASS_GENERATION)
+
+        compilationUnit.classes.collectEntries { [(it.name): it.bytes] }
+    }
+
+    @Test void independent_groups()  {
+        def classNodes = ['A', 'B', 'C', 'D', 'E'].collect { new ClassNode(it, 1, ClassNode.SUPER) }
+        classNodes[3].superClass = classNodes[0]
+        classNodes[4].interfaces = [classNodes[1]] as ClassNode[]
+
+        def groups = GContractsASTTransformation.getIndependentGroups(classNodes)
+
+        assert groups*.name == [['A', 'D'], ['B', 'E'], ['C']]
+    }
+
+    @Test void heirs_of_classes_of_other_modules_are_in_one_group()  {
+        def external = new ClassNode('Base', 1, ClassNode.SUPER)
+        def classNodes = ['A', 'B', 'C'].collect { new ClassNode(it, 1, ClassNode.SUPER) }
+        classNodes[0].superClass = external
+        classNodes[2].superClass = new ClassNode('Middle', 1, external)
+
+        def groups = GContractsASTTransformation.getIndependentGroups(classNodes)
+
+        assert groups*.name == [['A', 'C'], ['B']]
+    }
+
+    @Test void contracts_of_all_groups()  {
+        def account = create_instance_of(source)
+        def savings = add_class_to_classpath(source).classLoader.loadClass('tests.Savings').newInstance()
+
+        account.deposit(10)
+        shouldFail PreconditionViolation, { account.deposit(-1) }
+        shouldFail PreconditionViolation, { savings.deposit(-1) }
+        shouldFail PostconditionViolation, { savings.deposit(1) }
+    }
+
+    @Test void same_output_as_sequential_transformation()  {
+        def parallel = compile()
+
+        System.clearProperty(GContractsASTTransformation.PARALLEL_PROPERTY)
+        def sequential = compile()
+
+        assert parallel.keySet() as List == sequential.keySet() as List
+        parallel.each { name, bytes -> assert Arrays.equals(bytes, sequential[name]), name }
+    }
+
+    @Test void same_output_for_heirs_of_other_modules()  {
+        def sources = ['Heirs.groovy': heirsSource.toString(), 'Base.groovy': baseSource]
+        def parallel = compile(sources)
+
+        System.clearProperty(GContractsASTTransformation.PARALLEL_PROPERTY)
+        def sequential = compile(sources)
+
+        assert parallel.keySet() as List == sequential.keySet() as List
+        parallel.each { name, bytes -> assert Arrays.equals(bytes, sequential[name]), name }
+    }
+}
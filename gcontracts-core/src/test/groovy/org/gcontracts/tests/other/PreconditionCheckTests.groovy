@@ -0,0 +1,121 @@
+package org.gcontracts.tests.other
+
+import org.gcontracts.PostconditionViolation
+import org.gcontracts.PreconditionViolation
+import org.gcontracts.annotations.PurePrecondition
+import org.gcontracts.common.spi.ProcessingContextInformation
+import org.gcontracts.tests.basic.BaseTestClass
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+/**
+ * @author ast
+ */
+class PreconditionCheckTests extends BaseTestClass {
+
+    def source = '''
+@Contracted
+package tests
+
+import org.gcontracts.annotations.*
+
+final class Account {
+
+  final BigDecimal limit = 100
+  BigDecimal balance = 0
+
+  @Requires({ amount > 0 && amount <= limit })
+  @Ensures({ balance == old.balance + amount })
+  void deposit(BigDecimal amount) { balance += amount }
+
+  @Requires({ amount > 0 })
+  @Ensures({ result == balance })
+  BigDecimal withdraw(BigDecimal amount) { balance -= amount; balance * 2 }
+
+  @Requires({ amount > balance })
+  void transfer(BigDecimal amount) {}
+
+  @Requires({ amount.signum() > 0 })
+  void pay(BigDecimal amount) {}
+}
+'''
+
+    @Before void enable()  {
+        System.setProperty(ProcessingContextInformation.COMPILE_PRECONDITION_CHECKS_PROPERTY, 'true')
+    }
+
+    @After void clear()  {
+        System.clearProperty(ProcessingContextInformation.COMPILE_PRECONDITION_CHECKS_PROPERTY)
+    }
+
+    @Test void pure_precondition_is_annotated_with_its_dependencies()  {
+        def clazz = add_class_to_classpath(source)
+
+        def annotation = clazz.getMethod('deposit', BigDecimal).getAnnotation(PurePrecondition)
+        assert annotation.parameters() as List == ['amount']
+        assert annotation.fields() as List == ['limit']
+    }
+
+    @Test void check_method_evaluates_the_precondition()  {
+        def account = create_instance_of(source)
+
+        account.deposit$pre(10)
+
+        shouldFail PreconditionViolation, {
+            account.deposit$pre(1000)
+        }
+
+        assert account.balance == 0
+    }
+
+    @Test void unchecked_method_skips_the_precondition_only()  {
+        def account = create_instance_of(source)
+
+        account.deposit$unchecked(1000)
+        assert account.balance == 1000
+
+        shouldFail PreconditionViolation, {
+            account.deposit(1000)
+        }
+
+        shouldFail PostconditionViolation, {
+            account.withdraw$unchecked(-1)
+        }
+    }
+
+    @Test void impure_preconditions_have_no_check_methods()  {
+        def clazz = add_class_to_classpath(source)
+
+        ['transfer', 'pay'].each { name ->
+            assert clazz.getMethod(name, BigDecimal).getAnnotation(PurePrecondition) == null
+            assert !clazz.declaredMethods.any { it.name.startsWith(name + '$') }
+        }
+    }
+
+    @Test void overridable_methods_have_no_check_methods()  {
+        def clazz = add_class_to_classpath '''
+@Contracted
+package tests
+
+import org.gcontracts.annotations.*
+
+class Savings {
+
+  @Requires({ amount > 0 })
+  void deposit(BigDecimal amount) {}
+}
+'''
+
+        assert clazz.getMethod('deposit', BigDecimal).getAnnotation(PurePrecondition) == null
+        assert !clazz.declaredMethods.any { it.name.startsWith('deposit$') }
+    }
+
+    @Test void check_methods_are_opt_in()  {
+        System.clearProperty(ProcessingContextInformation.COMPILE_PRECONDITION_CHECKS_PROPERTY)
+
+        def clazz = add_class_to_classpath(source)
+
+        assert !clazz.declaredMethods.any { it.name.endsWith('$pre') || it.name.endsWith('$unchecked') }
+    }
+}
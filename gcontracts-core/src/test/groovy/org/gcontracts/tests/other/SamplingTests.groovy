@@ -0,0 +1,87 @@
+package org.gcontracts.tests.other
+
+import org.gcontracts.PostconditionViolation
+import org.gcontracts.PreconditionViolation
+import org.gcontracts.generation.ContractSampler
+import org.gcontracts.tests.basic.BaseTestClass
+import org.junit.After
+import org.junit.Test
+
+/**
+ * @author ast
+ */
+class SamplingTests extends BaseTestClass {
+
+    def source = '''
+@Contracted
+package tests
+
+import org.gcontracts.annotations.*
+
+class Sampled {
+
+  int value
+
+  @Requires({ amount > 0 })
+  void add(int amount) { value += amount }
+
+  @Ensures({ value == old.value + 1 })
+  void increment(int amount) { value += amount }
+
+  @Ensures({ result == old.value })
+  int next() { value++ }
+}
+'''
+
+    @After void reset()  {
+        ContractSampler.sampleAll()
+    }
+
+    private int violations(Class violationType, int calls, Closure call)  {
+        int result = 0
+        calls.times {
+            try {
+                call()
+            } catch (Throwable t) {
+                assert violationType.isInstance(t)
+                result++
+            }
+        }
+
+        result
+    }
+
+    @Test void check_every_call_per_default()  {
+        def sampled = create_instance_of(source)
+
+        assert violations(PreconditionViolation, 10, { sampled.add(-1) }) == 10
+    }
+
+    @Test void check_one_in_n_calls()  {
+        def sampled = create_instance_of(source)
+
+        ContractSampler.sampleOneIn(5)
+
+        assert violations(PreconditionViolation, 10, { sampled.add(-1) }) == 2
+        assert violations(PostconditionViolation, 10, { sampled.increment(2) }) == 2
+        assert violations(PostconditionViolation, 10, { sampled.next() }) == 0
+    }
+
+    @Test void check_at_most_n_calls_per_second()  {
+        def sampled = create_instance_of(source)
+
+        ContractSampler.samplePerSecond(3)
+
+        assert violations(PreconditionViolation, 10, { sampled.add(-1) }) in 3..6
+    }
+
+    @Test void parse_sampling_property()  {
+        assert ContractSampler.parse(null) == null
+        assert ContractSampler.parse('1') == null
+        assert ContractSampler.parse('100').oneIn == 100
+        assert ContractSampler.parse(' 50/s ').perSecond == 50
+
+        shouldFail IllegalArgumentException, { ContractSampler.parse('0') }
+        shouldFail IllegalArgumentException, { ContractSampler.parse('often') }
+    }
+}
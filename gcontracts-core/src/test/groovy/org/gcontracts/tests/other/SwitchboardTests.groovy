@@ -0,0 +1,104 @@
+package org.gcontracts.tests.other
+
+import org.gcontracts.PostconditionViolation
+import org.gcontracts.PreconditionViolation
+import org.gcontracts.generation.Switchboard
+import org.gcontracts.tests.basic.BaseTestClass
+import org.junit.After
+import org.junit.Test
+
+/**
+ * @author ast
+ */
+class SwitchboardTests extends BaseTestClass {
+
+    def source = '''
+@Contracted
+package tests
+
+import org.gcontracts.annotations.*
+
+class Switched {
+
+  int value
+
+  @Requires({ amount > 0 })
+  @Ensures({ value >= 0 })
+  void add(int amount) { value += amount }
+
+  @Requires({ amount > 0 && isValid(amount) })
+  void addChecked(int amount) { value += amount }
+
+  boolean isValid(int amount) { true }
+}
+'''
+
+    @After void reset()  {
+        Switchboard.reset()
+    }
+
+    @Test void disable_class()  {
+        def switched = create_instance_of(source)
+
+        shouldFail PreconditionViolation, { switched.add(-1) }
+        shouldFail PreconditionViolation, { switched.addChecked(-1) }
+
+        Switchboard.disable('tests.Switched')
+
+        switched.add(-1)
+        switched.addChecked(-1)
+        assert !Switchboard.isEnabled('tests.Switched', Switchboard.PRECONDITION)
+
+        Switchboard.enable('tests.Switched')
+
+        shouldFail PreconditionViolation, { switched.add(-1) }
+    }
+
+    @Test void disable_package_and_kind()  {
+        def switched = create_instance_of(source)
+
+        Switchboard.disable('tests...', Switchboard.PRECONDITION)
+
+        switched.addChecked(-1)
+        assert switched.value == -1
+
+        shouldFail PostconditionViolation, { switched.add(-1) }
+
+        Switchboard.disable('test...')
+        assert Switchboard.isEnabled('tests.Switched', Switchboard.POSTCONDITION)
+    }
+
+    @Test void last_rule_wins()  {
+        Switchboard.disable(null)
+        Switchboard.enable('tests...', Switchboard.PRECONDITION)
+
+        assert Switchboard.isEnabled('tests.Switched', Switchboard.PRECONDITION)
+        assert !Switchboard.isEnabled('tests.Switched', Switchboard.POSTCONDITION)
+        assert !Switchboard.isEnabled('other.Switched', Switchboard.PRECONDITION)
+
+        Switchboard.reset()
+
+        assert Switchboard.isEnabled('other.Switched', Switchboard.PRECONDITION)
+    }
+
+    @Test void covered_rules_are_replaced()  {
+        def switched = create_instance_of(source)
+
+        1000.times {
+            Switchboard.disable('tests.Switched', Switchboard.PRECONDITION)
+            Switchboard.enable('tests.Switched', Switchboard.PRECONDITION)
+        }
+        assert Switchboard.rules.size() == 1
+
+        Switchboard.disable('tests.Switched')
+        Switchboard.enable('tests.Other', Switchboard.POSTCONDITION)
+        Switchboard.enable('tests...')
+        assert Switchboard.rules.size() == 1
+
+        Switchboard.disable('tests.Switched', Switchboard.PRECONDITION)
+        assert Switchboard.rules.size() == 2
+
+        switched.addChecked(-1)
+        shouldFail PostconditionViolation, { switched.add(-1) }
+    }
+}
@@ -257,4 +257,32 @@ class BetterRocket extends Rocket {
     }
   }
   
+  @Test void inherited_postcondition_of_the_same_compilation_unit()  {
+
+    def clazz = add_class_to_classpath '''
+@Contracted
+package tests
+
+import org.gcontracts.annotations.*
+
+class Base {
+
+  @Ensures({ result > 1 })
+  int operation() { 2 }
+}
+
+class Heir extends Base {
+
+  @Ensures({ result > 0 })
+  int operation() { 1 }
+}
+'''
+
+    def heir = clazz.classLoader.loadClass('tests.Heir').newInstance()
+
+    shouldFail AssertionError, {
+      heir.operation()
+    }
+  }
+
 }
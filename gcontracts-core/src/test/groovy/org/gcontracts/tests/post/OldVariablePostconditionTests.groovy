@@ -1,5 +1,6 @@
 package org.gcontracts.tests.post
 
+import org.gcontracts.PostconditionViolation
 import org.gcontracts.tests.basic.BaseTestClass
 import org.junit.Test
 
@@ -153,4 +154,178 @@ class OldVariable {
       betterAccount.withdraw (10.0)
 
   }
-}
\ No newline at end of file
+
+  @Test void snapshot_only_referenced_old_variables()  {
+
+    def source = '''
+    package tests
+
+    import org.gcontracts.annotations.*
+
+    class Counter {
+
+      int count
+      int other
+      ArrayList<String> items = []
+
+      @Ensures({ count == old.count + 1 && old['other'] == other })
+      void increment()  {
+        count++
+      }
+
+      @Ensures({ items.size() == old.get('items').size() + 1 })
+      void add(String item)  {
+        items << item
+      }
+
+      @Ensures({ old.size() == 3 && old.count == count })
+      void keep()  {
+        count += 0
+      }
+
+      @Ensures({ count >= 0 })
+      void reset()  {
+        count = 0
+      }
+
+      @Ensures({ old.count < count })
+      void stay()  {
+        count += 0
+      }
+    }
+'''
+
+    def counter = create_instance_of(source)
+    counter.increment()
+    counter.add('item')
+    counter.keep()
+    counter.reset()
+
+    shouldFail PostconditionViolation, {
+      counter.stay()
+    }
+  }
+
+  @Test void snapshot_old_variables_of_super_class()  {
+
+    def source = '''
+    package tests
+
+    import org.gcontracts.annotations.*
+
+    class Derived extends Base {
+      int steps
+
+      @Ensures({ count == old.count + 1 && steps == old.steps + 1 })
+      void increment()  {
+        count += 1
+        steps++
+      }
+
+      @Ensures({ count == old.count + 2 })
+      void twice()  {
+        count += 1
+      }
+    }
+
+    class Base {
+      protected int count
+
+      @Ensures({ count == old.count + 1 })
+      void increment()  {
+        count++
+      }
+    }
+'''
+
+    def derived = create_instance_of(source)
+    derived.increment()
+
+    shouldFail PostconditionViolation, {
+      derived.twice()
+    }
+  }
+
+  @Test void keep_old_variables_in_typed_holder()  {
+
+    def source = '''
+    package tests
+
+    import org.gcontracts.annotations.*
+
+    class Balance {
+
+      long balance
+      BigDecimal rate = 0.5
+
+      @Ensures({ balance == old.balance + amount && old['rate'] == rate })
+      void deposit(long amount)  {
+        balance += amount
+      }
+
+      @Ensures({ balance == old.balance + amount * 2 })
+      void doubleDeposit(long amount)  {
+        balance += amount
+      }
+    }
+'''
+
+    def balance = create_instance_of(source)
+    balance.deposit(10)
+    assert balance.balance == 10
+
+    shouldFail PostconditionViolation, {
+      balance.doubleDeposit(10)
+    }
+
+    def holders = (1..2).collect { balance.class.classLoader.loadClass('tests.Balance$_gc_old' + it) }
+    def holder = holders.find { it.declaredFields*.name.contains('rate') }
+    assert holder.getDeclaredField('balance').type == long
+    assert holder.getDeclaredField('rate').type == BigDecimal
+  }
+
+  @Test void snapshot_size_of_collections()  {
+
+    def source = '''
+    package tests
+
+    import org.gcontracts.annotations.*
+
+    class Items {
+
+      ArrayList<String> items = []
+
+      @Ensures({ items.size() == old.items.size() + 1 && (!old.items.isEmpty() || items.size() == 1) })
+      void add(String item)  {
+        items << item
+      }
+
+      @Ensures({ items.size() == old.items.size() + 2 })
+      void addOnce(String item)  {
+        items << item
+      }
+
+      @Ensures({ !old.items.contains(item) })
+      void addNew(String item)  {
+        items << item
+      }
+    }
+'''
+
+    def items = create_instance_of(source)
+    items.add('a')
+    items.add('b')
+    items.addNew('c')
+
+    shouldFail PostconditionViolation, {
+      items.addOnce('d')
+    }
+
+    shouldFail PostconditionViolation, {
+      items.addNew('a')
+    }
+
+    def holders = (1..2).collect { items.class.classLoader.loadClass('tests.Items$_gc_old' + it) }
+    assert holders.collect { it.getDeclaredField('items').type.simpleName }.sort() == ['ArrayList', 'SizeSnapshot']
+  }
+}
@@ -1,14 +1,20 @@
 package org.gcontracts.util
 
+import org.codehaus.groovy.ast.AnnotationNode
 import org.codehaus.groovy.ast.ClassHelper
 import org.codehaus.groovy.ast.ClassNode
 import org.codehaus.groovy.ast.MethodNode
 import org.codehaus.groovy.ast.Parameter
 import org.codehaus.groovy.ast.builder.AstBuilder
+import org.codehaus.groovy.control.CompilationUnit
 import org.codehaus.groovy.control.CompilePhase
+import org.codehaus.groovy.control.Phases
 import org.gcontracts.annotations.meta.Precondition
 import org.gcontracts.tests.basic.BaseTestClass
 import org.junit.Test
+
+import java.lang.ref.WeakReference
+
 import static org.junit.Assert.assertEquals
 
 /**
@@ -39,4 +45,108 @@ class AnnotationUtilsTests extends BaseTestClass {
         def annotationNodes = AnnotationUtils.hasMetaAnnotations(methodNode, Precondition.class.getName())
         assertEquals(1, annotationNodes.size())
     }
+
+    @Test void memoize_annotations_in_hierarchy() {
+        def astNodes = new AstBuilder().buildFromString(CompilePhase.SEMANTIC_ANALYSIS, false, '''
+    package tests
+
+    import org.gcontracts.annotations.*
+
+    class Base {
+        @Requires({ param != null })
+        def method(def param) {}
+    }
+
+    class Descendant extends Base {
+        def method(def param) {}
+    }''')
+
+        ClassNode descendant = astNodes.find { it instanceof ClassNode && it.name == 'tests.Descendant' }
+        ClassNode base = astNodes.find { it instanceof ClassNode && it.name == 'tests.Base' }
+        MethodNode methodNode = descendant.getDeclaredMethods('method')[0]
+        def precondition = ClassHelper.makeWithoutCaching(Precondition)
+
+        assert AnnotationUtils.getMethodNodeInHierarchyWithMetaAnnotation(descendant, methodNode, precondition).declaringClass == base
+        def annotations = AnnotationUtils.getAnnotationNodeInHierarchyWithMetaAnnotation(descendant, methodNode, precondition)
+        assert annotations.size() == 1
+
+        methodNode.addAnnotation(new AnnotationNode(annotations[0].classNode))
+
+        // memoized until annotation changes are announced
+        assert AnnotationUtils.getMethodNodeInHierarchyWithMetaAnnotation(descendant, methodNode, precondition).declaringClass == base
+
+        AnnotationUtils.annotationsChanged(descendant)
+
+        assert AnnotationUtils.getMethodNodeInHierarchyWithMetaAnnotation(descendant, methodNode, precondition).declaringClass == descendant
+        assert AnnotationUtils.getMethodNodeInHierarchyWithMetaAnnotation(base, methodNode, precondition).declaringClass == base
+    }
+
+    @Test void invalidate_annotations_of_changed_class_and_heirs() {
+        def astNodes = new AstBuilder().buildFromString(CompilePhase.SEMANTIC_ANALYSIS, false, '''
+    package tests
+
+    import org.gcontracts.annotations.*
+
+    class Base {
+        def method(def param) {}
+    }
+
+    class Descendant extends Base {
+        def method(def param) {}
+    }
+
+    class Other {
+        @Requires({ param != null })
+        def method(def param) {}
+    }''')
+
+        ClassNode descendant = astNodes.find { it instanceof ClassNode && it.name == 'tests.Descendant' }
+        ClassNode base = astNodes.find { it instanceof ClassNode && it.name == 'tests.Base' }
+        ClassNode other = astNodes.find { it instanceof ClassNode && it.name == 'tests.Other' }
+        MethodNode methodNode = descendant.getDeclaredMethods('method')[0]
+        def precondition = ClassHelper.makeWithoutCaching(Precondition)
+
+        assert AnnotationUtils.getMethodNodeInHierarchyWithMetaAnnotation(descendant, methodNode, precondition) == null
+        def annotations = AnnotationUtils.getAnnotationNodeInHierarchyWithMetaAnnotation(other, methodNode, precondition)
+
+        base.getDeclaredMethods('method')[0].addAnnotation(new AnnotationNode(annotations[0].classNode))
+
+        // changes of unrelated classes keep the memoized lookups
+        AnnotationUtils.annotationsChanged(other)
+        assert AnnotationUtils.getMethodNodeInHierarchyWithMetaAnnotation(descendant, methodNode, precondition) == null
+
+        AnnotationUtils.annotationsChanged(base)
+        assert AnnotationUtils.getMethodNodeInHierarchyWithMetaAnnotation(descendant, methodNode, precondition).declaringClass == base
+    }
+
+    @Test void release_memoized_annotations_with_compile_unit() {
+        def references = (1..5).collect { i ->
+            def unit = new CompilationUnit(new GroovyClassLoader(getClass().classLoader))
+            unit.addSource("Tester${i}.groovy", """
+    @Contracted
+    package tests
+
+    import org.gcontracts.annotations.*
+
+    class Base${i} {
+        @Requires({ param != null })
+        def method(def param) {}
+    }
+
+    class Descendant${i} extends Base${i} {
+        def method(def param) {}
+    }""")
+            unit.compile(Phases.CLASS_GENERATION)
+
+            assert unit.AST.modules[0].getNodeMetaData('org.gcontracts.ANNOTATION_CACHE') != null
+            new WeakReference(unit.AST)
+        }
+
+        for (int i = 0; i < 50 && references.any { it.get() != null }; i++)  {
+            System.gc()
+            Thread.sleep(20)
+        }
+
+        assert references.every { it.get() == null }
+    }
 }
@@ -19,4 +19,12 @@ class FieldValuesTests extends GroovyTestCase {
         int value = FieldValues.fieldValue(b.c, "i", int)
         assertEquals value, 12
     }
+
+    void testPrivateFieldValueAccessByGetter() {
+        def b = new B()
+        def getter = FieldValues.getter(B, "i")
+
+        assertEquals FieldValues.fieldValue(getter, b.c), 12
+        assertEquals FieldValues.fieldValue(getter, new A().c), 12
+    }
 }
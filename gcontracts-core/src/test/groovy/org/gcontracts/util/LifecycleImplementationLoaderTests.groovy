@@ -0,0 +1,47 @@
+package org.gcontracts.util
+
+import org.gcontracts.common.impl.lc.ClassInvariantLifecycle
+import org.gcontracts.common.impl.lc.PostconditionLifecycle
+import org.gcontracts.common.impl.lc.PreconditionLifecycle
+import org.gcontracts.common.spi.Lifecycle
+import org.junit.After
+import org.junit.Test
+
+import static groovy.test.GroovyAssert.shouldFail
+
+/**
+ * @author ast
+ */
+class LifecycleImplementationLoaderTests {
+
+    @After void clear() {
+        LifecycleImplementationLoader.clearCache()
+    }
+
+    @Test void load_cached_implementations() {
+        def classLoader = getClass().classLoader
+
+        def lifecycles = LifecycleImplementationLoader.loadCached(Lifecycle, classLoader)
+
+        assert lifecycles*.class.containsAll([ClassInvariantLifecycle, PreconditionLifecycle, PostconditionLifecycle])
+        assert LifecycleImplementationLoader.loadCached(Lifecycle, classLoader).is(lifecycles)
+
+        shouldFail(UnsupportedOperationException) { lifecycles.clear() }
+    }
+
+    @Test void cache_per_class_loader() {
+        def classLoader = new URLClassLoader([] as URL[], getClass().classLoader)
+
+        def lifecycles = LifecycleImplementationLoader.loadCached(Lifecycle, getClass().classLoader)
+
+        assert !LifecycleImplementationLoader.loadCached(Lifecycle, classLoader).is(lifecycles)
+    }
+
+    @Test void clear_cache() {
+        def lifecycles = LifecycleImplementationLoader.loadCached(Lifecycle, getClass().classLoader)
+
+        LifecycleImplementationLoader.clearCache()
+
+        assert !LifecycleImplementationLoader.loadCached(Lifecycle, getClass().classLoader).is(lifecycles)
+    }
+}